@@ -0,0 +1,102 @@
+package frc.robot.swerve.drive;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import frc.robot.util.InputRing;
+
+/**
+ * BaseEnclosure.move (convertAngle and shouldReverse) on a fake enclosure, and SwerveUtils.convertEncoderValue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnclosureBenchmark {
+    private static final double GEAR_RATIO = 1024;
+
+    /**
+     * An enclosure without hardware: the encoder reads back a preset value and outputs go to a blackhole.
+     */
+    static class FakeEnclosure extends BaseEnclosure {
+        int encPosition;
+        Blackhole blackhole;
+
+        FakeEnclosure() {
+            super("fake", GEAR_RATIO);
+        }
+
+        @Override
+        public int getEncPosition() {
+            return encPosition;
+        }
+
+        @Override
+        protected void setEncPosition(int encPosition) {
+            this.encPosition = encPosition;
+        }
+
+        @Override
+        protected void setSpeed(double speed) {
+            blackhole.consume(speed);
+        }
+
+        @Override
+        protected void setAngle(double angle) {
+            blackhole.consume(angle);
+        }
+
+        @Override
+        public double getVelocity() {
+            return 0;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    private final FakeEnclosure enclosure = new FakeEnclosure();
+    private final double[] speeds = new double[InputRing.SIZE];
+    private final double[] angles = new double[InputRing.SIZE];
+    private final int[] encPositions = new int[InputRing.SIZE];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        enclosure.blackhole = blackhole;
+
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            speeds[i] = random.nextDouble();
+            angles[i] = random.nextDouble() - 0.5;
+            encPositions[i] = random.nextInt(20 * (int) GEAR_RATIO) - 10 * (int) GEAR_RATIO;
+        }
+    }
+
+    @Benchmark
+    public void move() {
+        int i = inputs.next();
+        enclosure.encPosition = encPositions[i];
+        enclosure.move(speeds[i], angles[i]);
+    }
+
+    @Benchmark
+    public double convertEncoderValue() {
+        int i = inputs.next();
+        return SwerveUtils.convertEncoderValue(encPositions[i], GEAR_RATIO);
+    }
+}
@@ -0,0 +1,102 @@
+package frc.robot.swerve.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.util.InputRing;
+
+/**
+ * Throughput of the batch kinematics in samples per second, against calling SwerveMath.move once per sample.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchKinematicsBenchmark {
+    private static final int SAMPLES = 100_000;
+
+    @Param({ "ROBOT", "FIELD" })
+    public CentricMode centricMode;
+
+    private SwerveMath swerveMath;
+    private BatchKinematics batch;
+    private ForkJoinPool pool;
+
+    private final double[] fwd = new double[SAMPLES];
+    private final double[] str = new double[SAMPLES];
+    private final double[] rcw = new double[SAMPLES];
+    private final double[] heading = new double[SAMPLES];
+    private final double[][] angles = new double[SwerveMath.MODULE_COUNT][SAMPLES];
+    private final double[][] speeds = new double[SwerveMath.MODULE_COUNT][SAMPLES];
+    private final double[] moduleAngles = new double[SwerveMath.MODULE_COUNT];
+    private final double[] moduleSpeeds = new double[SwerveMath.MODULE_COUNT];
+
+    @Setup
+    public void setup() {
+        swerveMath = new SwerveMath(31.18, 18, 25.5, 25.5);
+        swerveMath.setCentricMode(centricMode);
+        batch = new BatchKinematics(swerveMath.getKinematics());
+        pool = ForkJoinPool.commonPool();
+
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < SAMPLES; i++) {
+            fwd[i] = random.nextDouble() * 2 - 1;
+            str[i] = random.nextDouble() * 2 - 1;
+            rcw[i] = random.nextDouble() * 2 - 1;
+            heading[i] = random.nextDouble() * 360;
+        }
+    }
+
+    private double[] headings() {
+        return centricMode == CentricMode.FIELD ? heading : null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] scalarList() {
+        double total = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            total += swerveMath.move(fwd[i], str[i], rcw[i], heading[i]).get(0).getSpeed();
+        }
+        moduleSpeeds[0] = total;
+        return moduleSpeeds;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[] scalarArrays() {
+        for (int i = 0; i < SAMPLES; i++) {
+            swerveMath.move(fwd[i], str[i], rcw[i], heading[i], moduleAngles, moduleSpeeds);
+        }
+        return moduleSpeeds;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[][] batch() {
+        batch.toModuleStates(fwd, str, rcw, headings(), SAMPLES, angles, speeds);
+        return speeds;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[][] batchParallel() {
+        batch.toModuleStatesParallel(fwd, str, rcw, headings(), SAMPLES, angles, speeds, pool);
+        return speeds;
+    }
+}
@@ -0,0 +1,66 @@
+package frc.robot.swerve.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.util.InputRing;
+
+/**
+ * FastMath against the exact java.lang.Math functions it replaces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FastMathBenchmark {
+    private final double[] x = new double[InputRing.SIZE];
+    private final double[] y = new double[InputRing.SIZE];
+    private final double[] radians = new double[InputRing.SIZE];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            x[i] = random.nextDouble() * 2 - 1;
+            y[i] = random.nextDouble() * 2 - 1;
+            radians[i] = (random.nextDouble() * 2 - 1) * 2 * Math.PI;
+        }
+    }
+
+    @Benchmark
+    public double atan2Exact() {
+        int i = inputs.next();
+        return Math.atan2(y[i], x[i]);
+    }
+
+    @Benchmark
+    public double atan2Fast() {
+        int i = inputs.next();
+        return FastMath.atan2(y[i], x[i]);
+    }
+
+    @Benchmark
+    public double sinCosExact() {
+        int i = inputs.next();
+        return Math.sin(radians[i]) + Math.cos(radians[i]);
+    }
+
+    @Benchmark
+    public double sinCosFast() {
+        int i = inputs.next();
+        return FastMath.sin(radians[i]) + FastMath.cos(radians[i]);
+    }
+}
@@ -0,0 +1,62 @@
+package frc.robot.swerve.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Interpolated lookup in the odometry history and the cost of fusing a late measurement (rewind and replay).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoseHistoryBenchmark {
+    private static final double PERIOD = 0.005;
+    private static final int HISTORY = 200;
+
+    // How old the fused measurement is, e.g. 80ms for a typical vision pipeline
+    @Param({ "0.02", "0.08", "0.5" })
+    public double latency;
+
+    private SwerveOdometry odometry;
+    private final double[] pose = new double[SwerveOdometry.POSE_SIZE];
+    private double now;
+
+    @Setup
+    public void setup() {
+        SwerveKinematics kinematics = SwerveKinematics.hexLayout(31.18, 18, 25.5);
+        odometry = new SwerveOdometry(kinematics, HISTORY);
+
+        double[] angles = new double[kinematics.getModuleCount()];
+        double[] speeds = new double[kinematics.getModuleCount()];
+        for (int i = 0; i < HISTORY; i++) {
+            kinematics.toModuleStates(0.5, 0.2, 0.1, angles, speeds);
+            now = i * PERIOD;
+            odometry.update(now, i * 0.2, angles, speeds);
+        }
+    }
+
+    @Benchmark
+    public double[] lookup() {
+        odometry.getPoseAt(now - latency - PERIOD / 3, pose);
+        return pose;
+    }
+
+    @Benchmark
+    public boolean fuseMeasurement() {
+        return odometry.addMeasurement(now - latency - PERIOD / 3, 1.0, 2.0, 30.0, 0.1);
+    }
+}
@@ -0,0 +1,71 @@
+package frc.robot.swerve.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.util.InputRing;
+
+/**
+ * SetpointGenerator.calculate at the drive loop rate: holding a command (nothing to limit), and jumping to a random
+ * command every cycle (every module searched), against the unlimited kinematics alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SetpointGeneratorBenchmark {
+    private SwerveKinematics kinematics;
+    private SetpointGenerator generator;
+    private final double[] fwd = new double[InputRing.SIZE];
+    private final double[] str = new double[InputRing.SIZE];
+    private final double[] rcw = new double[InputRing.SIZE];
+    private final double[] result = new double[3];
+    private final double[] angles = new double[SwerveMath.MODULE_COUNT];
+    private final double[] speeds = new double[SwerveMath.MODULE_COUNT];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        kinematics = SwerveKinematics.hexLayout(31.18, 18, 25.5);
+        generator = new SetpointGenerator(kinematics, 0.005, 2.5, 2.0);
+
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            fwd[i] = random.nextDouble() * 2 - 1;
+            str[i] = random.nextDouble() * 2 - 1;
+            rcw[i] = random.nextDouble() * 2 - 1;
+        }
+    }
+
+    @Benchmark
+    public double[] steady() {
+        generator.calculate(0.5, 0.25, 0.1, result);
+        return result;
+    }
+
+    @Benchmark
+    public double[] jumping() {
+        int i = inputs.next();
+        generator.calculate(fwd[i], str[i], rcw[i], result);
+        return result;
+    }
+
+    @Benchmark
+    public double[] kinematicsOnly() {
+        int i = inputs.next();
+        kinematics.toModuleStates(fwd[i], str[i], rcw[i], angles, speeds);
+        return angles;
+    }
+}
@@ -0,0 +1,72 @@
+package frc.robot.swerve.math;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.util.InputRing;
+
+/**
+ * SwerveMath.move in robot- and field-centric mode, list vs. caller-owned arrays, exact vs. fast trig.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwerveMathBenchmark {
+    @Param({ "ROBOT", "FIELD" })
+    public CentricMode centricMode;
+
+    @Param({ "false", "true" })
+    public boolean fastMath;
+
+    private SwerveMath swerveMath;
+    private final double[] fwd = new double[InputRing.SIZE];
+    private final double[] str = new double[InputRing.SIZE];
+    private final double[] rcw = new double[InputRing.SIZE];
+    private final double[] gyro = new double[InputRing.SIZE];
+    private final double[] angles = new double[SwerveMath.MODULE_COUNT];
+    private final double[] speeds = new double[SwerveMath.MODULE_COUNT];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        swerveMath = new SwerveMath(31.18, 18, 25.5, 25.5);
+        swerveMath.setCentricMode(centricMode);
+        swerveMath.setFastMath(fastMath);
+
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            fwd[i] = random.nextDouble() * 2 - 1;
+            str[i] = random.nextDouble() * 2 - 1;
+            rcw[i] = random.nextDouble() * 2 - 1;
+            gyro[i] = random.nextDouble() * 360;
+        }
+    }
+
+    @Benchmark
+    public List<SwerveDirective> moveList() {
+        int i = inputs.next();
+        return swerveMath.move(fwd[i], str[i], rcw[i], gyro[i]);
+    }
+
+    @Benchmark
+    public double[] moveArrays() {
+        int i = inputs.next();
+        swerveMath.move(fwd[i], str[i], rcw[i], gyro[i], angles, speeds);
+        return angles;
+    }
+}
@@ -0,0 +1,60 @@
+package frc.robot.swerve.sim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.swerve.math.CentricMode;
+import frc.robot.util.InputRing;
+
+/**
+ * One full simulated control cycle (sensor sample, SwerveDrive.move, module models and chassis integration).
+ * Cycles per second of simulated driving is 1e9 divided by the score.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwerveSimulatorBenchmark {
+    @Param({ "ROBOT", "FIELD" })
+    public CentricMode centricMode;
+
+    private SwerveSimulator simulator;
+    private final double[] fwd = new double[InputRing.SIZE];
+    private final double[] str = new double[InputRing.SIZE];
+    private final double[] rcw = new double[InputRing.SIZE];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        simulator = SwerveSimulator.hexDrive(1024, 120, 31.18, 18, 25.5, 25.5, 0.02);
+        simulator.getSwerveDrive().setCentricMode(centricMode);
+
+        // Smoothly varying commands, like a driver's sticks
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            double t = 2 * Math.PI * i / InputRing.SIZE;
+            fwd[i] = 0.8 * Math.sin(t);
+            str[i] = 0.6 * Math.cos(3 * t);
+            rcw[i] = 0.4 * Math.sin(5 * t);
+        }
+    }
+
+    @Benchmark
+    public double step() {
+        int i = inputs.next();
+        simulator.step(fwd[i], str[i], rcw[i]);
+        return simulator.getX();
+    }
+}
@@ -0,0 +1,79 @@
+package frc.robot.swerve.trajectory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.swerve.math.SwerveKinematics;
+import frc.robot.swerve.math.SwerveOdometry;
+import frc.robot.swerve.sim.TrajectoryTracking;
+import frc.robot.util.InputRing;
+
+/**
+ * The per-cycle cost of following a trajectory: sampling it (binary search and interpolation) and one full follower
+ * cycle. Both should allocate nothing. trackInSimulator drives the whole trajectory on the simulated drive, so its
+ * score is the time to check a trajectory's tracking error headless.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrajectoryFollowerBenchmark {
+    private Trajectory trajectory;
+    private TrajectoryFollower follower;
+    private final double[] times = new double[InputRing.SIZE];
+    private final double[] sample = new double[Trajectory.SIZE];
+    private final double[] command = new double[3];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        SwerveKinematics kinematics = SwerveKinematics.hexLayout(31.18, 18, 25.5);
+        TrajectoryGenerator generator = new TrajectoryGenerator(kinematics, 150, TrajectoryGenerator.DEFAULT_PERIOD);
+        trajectory = generator.generate(new double[][] { { 0, 0, 0 }, { 60, 0, 0 }, { 120, 48, 90 } }, 100, 80);
+
+        // Follows a pose that stays a little off the start, so the feedback terms are not zero
+        follower = new TrajectoryFollower(trajectory, pose -> {
+            pose[SwerveOdometry.X] = 1;
+            pose[SwerveOdometry.Y] = -1;
+            pose[SwerveOdometry.HEADING] = 2;
+        }, 150, kinematics.getMaxRadius());
+
+        // Scattered times, so the binary search does not always take the same path
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            times[i] = trajectory.getDuration() * ((i * 0.618034) % 1);
+        }
+    }
+
+    @Benchmark
+    public double sample() {
+        trajectory.sample(times[inputs.next()], sample);
+        return sample[Trajectory.X];
+    }
+
+    @Benchmark
+    public double calculate() {
+        follower.start(0);
+        follower.calculate(times[inputs.next()], command);
+        return command[0];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double trackInSimulator() {
+        TrajectoryTracking tracking = TrajectoryTracking.forRobot(trajectory);
+        return tracking.run().getRmsPositionError();
+    }
+}
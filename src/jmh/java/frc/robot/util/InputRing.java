@@ -0,0 +1,33 @@
+package frc.robot.util;
+
+import java.util.Random;
+
+/**
+ * The inputs of a benchmark: a fixed ring of {@link #SIZE} precomputed values that every call steps through, so the
+ * JIT cannot fold a constant input and the branch predictor cannot learn the sequence, while reading an input costs
+ * one array load. The values come from {@link #random()}, the same seeded generator for every run, so results can be
+ * compared between runs and between benchmarks.
+ *
+ * Fill the input arrays (each {@link #SIZE} long) in the setup, and take the index of every call from {@link #next()}.
+ */
+public final class InputRing {
+    /** The number of inputs; a power of two, so the index wraps with a mask. */
+    public static final int SIZE = 1024;
+    private static final long SEED = 42;
+
+    private int next = 0;
+
+    /**
+     * @return a new generator for the input values, always with the same seed
+     */
+    public static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+     * @return the index of the input for this call, moving on to the next one
+     */
+    public int next() {
+        return next++ & (SIZE - 1);
+    }
+}
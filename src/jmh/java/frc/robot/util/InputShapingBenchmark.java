@@ -0,0 +1,51 @@
+package frc.robot.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The joystick shaping behind OI.deadBand and OI.circularExpDeadBand. OI itself cannot be loaded off the robot
+ * because it creates the controller objects.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputShapingBenchmark {
+    private final double[] x = new double[InputRing.SIZE];
+    private final double[] y = new double[InputRing.SIZE];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            x[i] = random.nextDouble() * 2 - 1;
+            y[i] = random.nextDouble() * 2 - 1;
+        }
+    }
+
+    @Benchmark
+    public double deadBand() {
+        int i = inputs.next();
+        return InputShaping.deadBand(x[i]);
+    }
+
+    @Benchmark
+    public double[] circularExpDeadBand() {
+        int i = inputs.next();
+        return InputShaping.circularExpDeadBand(x[i], y[i]);
+    }
+}
@@ -0,0 +1,53 @@
+package frc.robot.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the instrumentation itself: one histogram record, and a whole profiled loop with three stages (four
+ * nanoTime calls and four records, plus the periodic summary).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoopProfilerBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram(4);
+    private final LoopProfiler profiler = new LoopProfiler(new String[] { "a", "b", "c" }, 0.005, 0.5);
+    private final long[] durations = new long[InputRing.SIZE];
+    private final InputRing inputs = new InputRing();
+
+    @Setup
+    public void setup() {
+        java.util.Random random = InputRing.random();
+        for (int i = 0; i < InputRing.SIZE; i++) {
+            durations[i] = 1000 + random.nextInt(10_000_000);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(durations[inputs.next()]);
+    }
+
+    @Benchmark
+    public void profiledLoop() {
+        long t = profiler.startLoop();
+        t = profiler.record(0, t);
+        t = profiler.record(1, t);
+        profiler.record(2, t);
+        profiler.endLoop();
+    }
+}
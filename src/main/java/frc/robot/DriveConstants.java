@@ -0,0 +1,47 @@
+package frc.robot;
+
+/**
+ * The drivetrain's layout and limits, shared by the {@link frc.robot.subsystems.Drivetrain} and the desktop tools
+ * (simulation, replay, trajectory generation, characterization fits). Nothing here touches WPILib, so the tools can
+ * use it without loading the robot code.
+ */
+public final class DriveConstants {
+	// Module order everywhere: FL, FR, BR, BL, F, B
+	private static final String[] MODULE_NAMES = { "FL", "FR", "BR", "BL", "F", "B" };
+
+	// Steer encoder counts per turn of the wheel
+	public static final double GEAR_RATIO = (1024d);
+	public static final double L_Default = 18;
+	public static final double W_Default = 31.18;
+	public static final double L_Plus = 25.5;
+	public static final double W_Plus = 25.5;
+	// Wheel speed at full output, in inches per second. Used to plan trajectories, and the velocity for full output in
+	// velocity mode.
+	public static final double MAX_SPEED = 150;
+	// The largest wheel acceleration, in inches per second squared: fed forward in velocity mode, and the limit of the
+	// setpoint generator
+	public static final double MAX_DRIVE_ACCELERATION = 300;
+
+	// Voltage compensation of the Talons in velocity mode and with measured steer gains: an output of 1 means this
+	// many volts
+	public static final double NOMINAL_VOLTAGE = 12.0;
+	// Drive control runs on its own thread at this rate
+	public static final double DRIVE_LOOP_PERIOD = 0.005;
+
+	// Steer position loop gains (slot 0, Talon units), until measured
+	public static final double STEER_P = 10.0;
+	public static final double STEER_D = 0.0;
+	// The steer setpoint profile: cruise velocity in rotations per second, acceleration in rotations per second squared
+	public static final double STEER_CRUISE_VELOCITY = 2.5;
+	public static final double STEER_ACCELERATION = 30;
+
+	private DriveConstants() {
+	}
+
+	/**
+	 * @return the module names, in the module order
+	 */
+	public static String[] getModuleNames() {
+		return MODULE_NAMES.clone();
+	}
+}
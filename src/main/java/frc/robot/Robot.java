@@ -8,11 +8,24 @@
 package frc.robot;
 
 //import frc.robot.commands.ResetDrivetrainEncoders;
+import frc.robot.commands.CharacterizeDrivetrain;
+import frc.robot.commands.auto.FollowTrajectory;
 import frc.robot.subsystems.*;
+import frc.robot.swerve.math.CentricMode;
+import frc.robot.swerve.math.SwerveMath;
+import frc.robot.swerve.trajectory.Trajectory;
+import frc.robot.telemetry.Telemetry;
+import frc.robot.util.FixedRateThread;
+import frc.robot.util.LoopProfiler;
 
+import java.io.File;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.Scheduler;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -28,6 +41,27 @@ public class Robot extends TimedRobot {
 	// Other
 	public static OI oi;
 
+	// Timing of the main loop. INPUT is measured inside SCHEDULER (by TeleDrive).
+	public static final int STAGE_SCHEDULER = 0;
+	public static final int STAGE_INPUT = 1;
+	public static final int STAGE_DASHBOARD = 2;
+	private static final double PROFILE_PUBLISH_PERIOD = 0.5;
+	public static final LoopProfiler loopProfiler = new LoopProfiler(
+			new String[] { "scheduler", "input", "dashboard" }, kDefaultPeriod, PROFILE_PUBLISH_PERIOD);
+
+	// Dashboard values go out 10 times a second, and not at all in loops that are already 3/4 through their budget
+	private static final double TELEMETRY_PERIOD = 0.1;
+	private Telemetry telemetry;
+	private final String[] centricLabels = new String[CentricMode.values().length];
+
+	// Autonomous trajectories by name
+	private static final String AUTO_TRAJECTORY = "example";
+	private Map<String, Trajectory> trajectories;
+	private Command autonomousCommand;
+
+	// Drivetrain characterization in Test mode, while the driver holds Y
+	private CharacterizeDrivetrain characterizeCommand;
+
 	/**
 	 * This function is run when the robot is first started up and should be used
 	 * for any initialization code.
@@ -39,6 +73,11 @@ public class Robot extends TimedRobot {
 
 		// Other
 		oi = new OI(this);
+		initTelemetry();
+
+		// Generated at build time, so autonomous never waits on path generation
+		trajectories = Trajectory.mapDirectory(new File(Filesystem.getDeployDirectory(), "paths"));
+		System.out.println("Loaded trajectories: " + trajectories.keySet());
 		// SmartDashboard.putData("Reset Encoders", new
 		// ResetDrivetrainEncoders(drivetrain));
 	}
@@ -50,15 +89,26 @@ public class Robot extends TimedRobot {
 	 */
 	@Override
 	public void disabledInit() {
+		drivetrain.setGyroCalibrating(true);
+		stopCharacterization();
 	}
 	
 	@Override
 	public void disabledPeriodic() {
-		Scheduler.getInstance().run();
+		runScheduler();
 	}
 
 	@Override
 	public void autonomousInit() {
+		drivetrain.setGyroCalibrating(false);
+
+		Trajectory trajectory = trajectories.get(AUTO_TRAJECTORY);
+		if (trajectory == null) {
+			System.out.println("No trajectory '" + AUTO_TRAJECTORY + "', not driving in autonomous");
+			return;
+		}
+		autonomousCommand = new FollowTrajectory(drivetrain, trajectory);
+		autonomousCommand.start();
 	}
 
 	/**
@@ -66,11 +116,16 @@ public class Robot extends TimedRobot {
 	 */
 	@Override
 	public void autonomousPeriodic() {
-		Scheduler.getInstance().run();
+		runScheduler();
 	}
 
 	@Override
 	public void teleopInit() {
+		drivetrain.setGyroCalibrating(false);
+		if (autonomousCommand != null) {
+			autonomousCommand.cancel();
+			autonomousCommand = null;
+		}
 	}
 
 	/**
@@ -78,18 +133,102 @@ public class Robot extends TimedRobot {
 	 */
 	@Override
 	public void teleopPeriodic() {
+		runScheduler();
+	}
+
+	/**
+	 * Test mode measures the drivetrain constants (see CharacterizeDrivetrain) while the driver holds Y, and cancels
+	 * the measurement as soon as Y is let go. It drives the robot about 3 m, so nothing moves just by entering Test
+	 * mode. LiveWindow is turned off, since it would stop the scheduler and with it the command.
+	 */
+	@Override
+	public void testInit() {
+		LiveWindow.setEnabled(false);
+		drivetrain.setGyroCalibrating(false);
+		System.out.println("Hold Y to characterize the drivetrain, let go to stop");
+	}
+
+	@Override
+	public void testPeriodic() {
+		if (OI.driveY.get()) {
+			// Once per press: a finished measurement does not start over while Y stays down
+			if (characterizeCommand == null) {
+				characterizeCommand = new CharacterizeDrivetrain(drivetrain);
+				characterizeCommand.start();
+			}
+		} else if (characterizeCommand != null) {
+			characterizeCommand.cancel();
+			characterizeCommand = null;
+		}
+		runScheduler();
+	}
+
+	private void stopCharacterization() {
+		if (characterizeCommand != null) {
+			characterizeCommand.stop();
+			characterizeCommand.cancel();
+			characterizeCommand = null;
+		}
+	}
+
+	/**
+	 * Times every loop (all the mode functions plus robotPeriodic) for the main loop profiler.
+	 */
+	@Override
+	protected void loopFunc() {
+		loopProfiler.startLoop();
+		super.loopFunc();
+		loopProfiler.endLoop();
+	}
+
+	private void runScheduler() {
+		long start = System.nanoTime();
 		Scheduler.getInstance().run();
+		loopProfiler.record(STAGE_SCHEDULER, start);
 	}
 	@Override
   public void robotPeriodic() {
-	SmartDashboard.putString("Centric mode", drivetrain.getCentricMode().toString() + "-CENTRIC");
-	SmartDashboard.putBoolean("Front is front", drivetrain.SouthIsFront());
-	//prints mod360 to get absolute wheel angle
-	SmartDashboard.putNumber("Front Left wheel angle is : ", drivetrain.getWheelAngles()[0] % 360);
-	SmartDashboard.putNumber("Front Right wheel angle is : ", drivetrain.getWheelAngles()[1] % 360);
-	SmartDashboard.putNumber("Back Right wheel angle is : ", drivetrain.getWheelAngles()[2] % 360);
-	SmartDashboard.putNumber("Back Left wheel angle is : ", drivetrain.getWheelAngles()[3] % 360);
-	SmartDashboard.putNumber("Front wheel angle is : ", drivetrain.getWheelAngles()[4] % 360);
-	SmartDashboard.putNumber("Back wheel angle is : ", drivetrain.getWheelAngles()[5] % 360);
+	long start = System.nanoTime();
+	telemetry.periodic();
+	loopProfiler.record(STAGE_DASHBOARD, start);
   }
+
+	/**
+	 * Registers everything shown on the dashboard, once. Module states go out as one array each, in the same order
+	 * as the SwerveMath directives.
+	 */
+	private void initTelemetry() {
+		telemetry = new Telemetry(TELEMETRY_PERIOD, loopProfiler, 0.75 * kDefaultPeriod);
+
+		for (CentricMode mode : CentricMode.values()) {
+			centricLabels[mode.ordinal()] = mode + "-CENTRIC";
+		}
+		telemetry.addString("Centric mode", () -> centricLabels[drivetrain.getCentricMode().ordinal()]);
+		telemetry.addBoolean("Front is front", drivetrain::SouthIsFront);
+		telemetry.addBoolean("Heading trusted", drivetrain::isHeadingTrusted);
+		telemetry.addNumber("Gyro bias", drivetrain.getGyro()::getBias);
+		telemetry.addArray("Wheel angles", SwerveMath.MODULE_COUNT, drivetrain::getWheelAngles);
+		telemetry.addArray("Wheel velocities", SwerveMath.MODULE_COUNT, drivetrain::getWheelVelocities);
+
+		telemetry.addNumber("Drive sensor reads per loop", drivetrain::getSensorReadsPerCycle);
+		telemetry.addNumber("Drive frames sent", drivetrain::getFramesSent);
+		telemetry.addNumber("Drive frames suppressed", drivetrain::getFramesSuppressed);
+		if (drivetrain.getRecorder() != null) {
+			telemetry.addNumber("Drive records dropped", drivetrain.getRecorder()::getRecordsDropped);
+		}
+
+		// Profiles: p50, p99 and max in ms for the loop and each stage, then the loop and over-budget counts
+		telemetry.addArray("Main loop profile", loopProfiler.getSummarySize(), loopProfiler::getSummary);
+		telemetry.addNumber("Telemetry shed", telemetry::getShedCount);
+		if (drivetrain.getDriveLoop() != null) {
+			LoopProfiler driveProfiler = drivetrain.getDriveLoop().getProfiler();
+			telemetry.addArray("Drive loop profile", driveProfiler.getSummarySize(), driveProfiler::getSummary);
+
+			FixedRateThread loop = drivetrain.getDriveLoop().getThread();
+			telemetry.addNumber("Drive loop overruns", loop::getOverrunCount);
+			telemetry.addNumber("Drive loop errors", loop::getErrorCount);
+			telemetry.addNumber("Drive loop max ms", () -> loop.getMaxRunTime() * 1000);
+			telemetry.addNumber("Drive loop max late ms", () -> loop.getMaxLateness() * 1000);
+		}
+	}
 }
@@ -20,43 +20,49 @@ public class RobotMap {
 	// public static int rightMotor = 2;
 
 	// Motor Map
-	// I = inverse, S = steer
+	// I = inverse, S = steer, E = drive encoder counts against the motor (sensor phase)
 
 	// Frontleft
 	public static int FrontleftS = 1;
 	public static int Frontleft = 2;
 	public static boolean FrontleftI = false;
 	public static boolean FrontleftSI = false;
+	public static boolean FrontleftE = false;
 
 	// Rightfront
 	public static int FrontrightS = 3;
 	public static int Frontright = 4;
 	public static boolean FrontrightI = true;
 	public static boolean FrontrightSI = false;
+	public static boolean FrontrightE = false;
 
 	// Rightback
 	public static int BackrightS = 5;
 	public static int Backright = 6;
 	public static boolean BackrightI = true;
 	public static boolean BackrightSI = false;
+	public static boolean BackrightE = false;
 
 	// Leftback
 	public static int  BackleftS = 7;
 	public static int Backleft = 8;
 	public static boolean  BackleftI = false;
 	public static boolean  BackleftSI = false;
+	public static boolean BackleftE = false;
 	
 	// Front
 	public static int FrontS = 9;
 	public static int Front = 10;
 	public static boolean FrontI = true;
 	public static boolean FrontSI = false;
+	public static boolean FrontE = false;
 
 	// Back
 	public static int BackS = 11;
 	public static int Back = 12;
 	public static boolean BackI = false;
 	public static boolean BackSI = false;
+	public static boolean BackE = false;
 
 
 
@@ -0,0 +1,181 @@
+package frc.robot.characterization;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The voltage, velocity and acceleration of a group of motors over a characterization test, in buffers allocated up
+ * front so capturing never allocates.
+ *
+ * Samples are added at the loop rate with the phase (quasistatic or dynamic ramp) they belong to. The acceleration is
+ * filled in afterwards by {@link #computeAccelerations}, from central differences of the velocity within each phase.
+ *
+ * The log can be written to and read back from CSV (time, phase, then voltage and velocity of each motor), to fit it
+ * offline.
+ */
+public class CharacterizationLog {
+	private final int motors;
+	private final int capacity;
+	private final double[] time;
+	private final int[] phase;
+	// Row-major, one row per sample, one column per motor
+	private final double[] voltage;
+	private final double[] velocity;
+	private final double[] acceleration;
+	private int size = 0;
+
+	/**
+	 * @param motors the number of motors in the group
+	 * @param capacity the most samples the log can hold
+	 */
+	public CharacterizationLog(int motors, int capacity) {
+		this.motors = motors;
+		this.capacity = capacity;
+		this.time = new double[capacity];
+		this.phase = new int[capacity];
+		this.voltage = new double[capacity * motors];
+		this.velocity = new double[capacity * motors];
+		this.acceleration = new double[capacity * motors];
+	}
+
+	/**
+	 * Adds one sample. Nothing is allocated.
+	 * @param volts the applied voltage of every motor
+	 * @param velocities the measured velocity of every motor
+	 * @return false if the log is full and the sample was dropped
+	 */
+	public boolean add(double sampleTime, int samplePhase, double[] volts, double[] velocities) {
+		if (size == capacity) {
+			return false;
+		}
+		time[size] = sampleTime;
+		phase[size] = samplePhase;
+		System.arraycopy(volts, 0, voltage, size * motors, motors);
+		System.arraycopy(velocities, 0, velocity, size * motors, motors);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Calculates the acceleration of every sample from the velocities before and after it in the same phase. Taking
+	 * them further apart than one sample keeps the velocity noise from swamping the acceleration (and biasing kA low).
+	 * @param window the time between the two velocities, in seconds
+	 */
+	public void computeAccelerations(double window) {
+		for (int i = 0; i < size; i++) {
+			int before = i;
+			while (before > 0 && phase[before - 1] == phase[i] && time[i] - time[before - 1] <= window / 2) {
+				before--;
+			}
+			int after = i;
+			while (after < size - 1 && phase[after + 1] == phase[i] && time[after + 1] - time[i] <= window / 2) {
+				after++;
+			}
+			double dt = time[after] - time[before];
+			for (int m = 0; m < motors; m++) {
+				acceleration[i * motors + m] = dt > 0
+						? (velocity[after * motors + m] - velocity[before * motors + m]) / dt
+						: 0;
+			}
+		}
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int getMotorCount() {
+		return motors;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public double getTime(int sample) {
+		return time[sample];
+	}
+
+	public int getPhase(int sample) {
+		return phase[sample];
+	}
+
+	public double getVoltage(int sample, int motor) {
+		return voltage[sample * motors + motor];
+	}
+
+	public double getVelocity(int sample, int motor) {
+		return velocity[sample * motors + motor];
+	}
+
+	/**
+	 * @return the acceleration, after {@link #computeAccelerations}
+	 */
+	public double getAcceleration(int sample, int motor) {
+		return acceleration[sample * motors + motor];
+	}
+
+	/**
+	 * Writes the samples as CSV.
+	 */
+	public void write(File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+			StringBuilder header = new StringBuilder("time,phase");
+			for (int m = 0; m < motors; m++) {
+				header.append(",voltage").append(m).append(",velocity").append(m);
+			}
+			writer.println(header);
+			for (int i = 0; i < size; i++) {
+				StringBuilder line = new StringBuilder();
+				line.append(time[i]).append(',').append(phase[i]);
+				for (int m = 0; m < motors; m++) {
+					line.append(',').append(getVoltage(i, m)).append(',').append(getVelocity(i, m));
+				}
+				writer.println(line);
+			}
+		}
+	}
+
+	/**
+	 * Reads a log written by {@link #write}. The accelerations still have to be computed.
+	 */
+	public static CharacterizationLog read(File file) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					rows.add(line.split(","));
+				}
+			}
+		}
+		int motors = rows.isEmpty() ? 0 : (rows.get(0).length - 2) / 2;
+		CharacterizationLog log = new CharacterizationLog(motors, rows.size());
+		double[] volts = new double[motors];
+		double[] velocities = new double[motors];
+		int lineNumber = 1;
+		for (String[] row : rows) {
+			lineNumber++;
+			try {
+				for (int m = 0; m < motors; m++) {
+					volts[m] = Double.parseDouble(row[2 + 2 * m]);
+					velocities[m] = Double.parseDouble(row[3 + 2 * m]);
+				}
+				log.add(Double.parseDouble(row[0]), Integer.parseInt(row[1]), volts, velocities);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException(file + ":" + lineNumber + ": cannot read the sample");
+			}
+		}
+		return log;
+	}
+}
@@ -0,0 +1,245 @@
+package frc.robot.characterization;
+
+import java.util.function.DoubleSupplier;
+
+import frc.robot.util.FixedRateThread;
+
+/**
+ * Runs the characterization tests on the drive and steer motors, capturing the data for the feedforward fits.
+ *
+ * Each group of motors goes through four tests, with the other group held still and a rest before each:
+ * <ul>
+ * <li>quasistatic forward and backward: the voltage ramps up slowly, so the velocity is set by kS and kV alone,</li>
+ * <li>dynamic forward and backward: a voltage step, so the motors accelerate hard and kA shows.</li>
+ * </ul>
+ * Forward and backward tests alternate, so the robot ends up about where it started. The drive tests need about
+ * 3 m of clear floor in front of and behind the robot.
+ *
+ * The tests run on their own {@link FixedRateThread} at the loop rate, and every cycle's applied voltage and measured
+ * velocity go into a preallocated {@link CharacterizationLog}, one per group.
+ */
+public class Characterizer {
+
+	/**
+	 * One motor under test.
+	 */
+	public interface Motor {
+		void setVoltage(double volts);
+
+		/**
+		 * Keeps the mechanism still while the other group is tested, e.g. holds the steering angle.
+		 */
+		void hold();
+
+		/**
+		 * Stops the motor when the tests are over.
+		 */
+		void stop();
+
+		/**
+		 * @return the voltage actually applied, in volts
+		 */
+		double getVoltage();
+
+		double getVelocity();
+	}
+
+	public enum Group {
+		DRIVE, STEER
+	}
+
+	// Default tests
+	public static final double DRIVE_RAMP_RATE = 0.25;
+	public static final double DRIVE_QUASISTATIC_TIME = 8;
+	public static final double DRIVE_STEP = 6;
+	public static final double DRIVE_DYNAMIC_TIME = 1.5;
+	public static final double STEER_RAMP_RATE = 0.5;
+	public static final double STEER_QUASISTATIC_TIME = 6;
+	public static final double STEER_STEP = 4;
+	public static final double STEER_DYNAMIC_TIME = 1;
+	public static final double REST_TIME = 1;
+
+	// How long cancel waits for a test cycle to finish, in seconds
+	private static final double STOP_TIMEOUT = 0.1;
+
+	// Phase layout: group (-1 for rest), volts per second, step volts, duration
+	private static final int GROUP = 0;
+	private static final int RAMP = 1;
+	private static final int STEP = 2;
+	private static final int DURATION = 3;
+
+	private final Motor[] driveMotors;
+	private final Motor[] steerMotors;
+	private final DoubleSupplier clock;
+	private final FixedRateThread thread;
+	private final double[][] phases;
+	private final CharacterizationLog driveLog;
+	private final CharacterizationLog steerLog;
+
+	// Only used by the test thread
+	private final double[] volts;
+	private final double[] velocities;
+	private int phase = -1;
+	private double phaseStart;
+
+	private volatile boolean done = false;
+
+	/**
+	 * @param driveMotors the drive motors, velocities in distance units per second
+	 * @param steerMotors the steer motors, velocities in rotations per second
+	 * @param period the time between samples, in seconds
+	 * @param clock the current time in seconds
+	 */
+	public Characterizer(Motor[] driveMotors, Motor[] steerMotors, double period, DoubleSupplier clock) {
+		this.driveMotors = driveMotors;
+		this.steerMotors = steerMotors;
+		this.clock = clock;
+		this.thread = new FixedRateThread("Characterization", period, this::cycle);
+		this.phases = new double[][] {
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.DRIVE.ordinal(), DRIVE_RAMP_RATE, 0, DRIVE_QUASISTATIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.DRIVE.ordinal(), -DRIVE_RAMP_RATE, 0, DRIVE_QUASISTATIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.DRIVE.ordinal(), 0, DRIVE_STEP, DRIVE_DYNAMIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.DRIVE.ordinal(), 0, -DRIVE_STEP, DRIVE_DYNAMIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.STEER.ordinal(), STEER_RAMP_RATE, 0, STEER_QUASISTATIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.STEER.ordinal(), -STEER_RAMP_RATE, 0, STEER_QUASISTATIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.STEER.ordinal(), 0, STEER_STEP, STEER_DYNAMIC_TIME),
+			phase(-1, 0, 0, REST_TIME),
+			phase(Group.STEER.ordinal(), 0, -STEER_STEP, STEER_DYNAMIC_TIME)
+		};
+
+		double driveTime = 0;
+		double steerTime = 0;
+		for (double[] p : phases) {
+			if (p[GROUP] == Group.DRIVE.ordinal()) {
+				driveTime += p[DURATION];
+			} else if (p[GROUP] == Group.STEER.ordinal()) {
+				steerTime += p[DURATION];
+			}
+		}
+		// Room for a late cycle or two per phase
+		this.driveLog = new CharacterizationLog(driveMotors.length, (int) Math.ceil(driveTime / period) + phases.length * 2);
+		this.steerLog = new CharacterizationLog(steerMotors.length, (int) Math.ceil(steerTime / period) + phases.length * 2);
+		this.volts = new double[Math.max(driveMotors.length, steerMotors.length)];
+		this.velocities = new double[volts.length];
+	}
+
+	private static double[] phase(int group, double ramp, double step, double duration) {
+		return new double[] { group, ramp, step, duration };
+	}
+
+	/**
+	 * Starts the tests. Returns right away.
+	 */
+	public void start() {
+		done = false;
+		phase = -1;
+		driveLog.clear();
+		steerLog.clear();
+		thread.start();
+	}
+
+	/**
+	 * Stops the tests early and stops every motor, once the test thread has let go of them.
+	 */
+	public void cancel() {
+		if (!thread.stopAndWait(STOP_TIMEOUT)) {
+			System.out.println("Characterization thread did not stop in time");
+		}
+		stopAll();
+		done = true;
+	}
+
+	/**
+	 * @return true once every test has run (or they were cancelled)
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * One cycle, run by the test thread.
+	 */
+	private void cycle() {
+		double now = clock.getAsDouble();
+		if (phase < 0 || now - phaseStart >= phases[phase][DURATION]) {
+			phase++;
+			phaseStart = now;
+			if (phase == phases.length) {
+				thread.stop();
+				stopAll();
+				done = true;
+				return;
+			}
+		}
+
+		double[] p = phases[phase];
+		double elapsed = now - phaseStart;
+		int group = (int) p[GROUP];
+		Motor[] tested = group == Group.DRIVE.ordinal() ? driveMotors : group == Group.STEER.ordinal() ? steerMotors : null;
+		Motor[] held = tested == driveMotors ? steerMotors : driveMotors;
+
+		for (Motor motor : held) {
+			motor.hold();
+		}
+		if (tested == null) {
+			for (Motor motor : steerMotors) {
+				motor.hold();
+			}
+			return;
+		}
+
+		double voltage = p[RAMP] * elapsed + p[STEP];
+		for (int i = 0; i < tested.length; i++) {
+			tested[i].setVoltage(voltage);
+			volts[i] = tested[i].getVoltage();
+			velocities[i] = tested[i].getVelocity();
+		}
+		(tested == driveMotors ? driveLog : steerLog).add(now, phase, volts, velocities);
+	}
+
+	private void stopAll() {
+		for (Motor motor : driveMotors) {
+			motor.stop();
+		}
+		for (Motor motor : steerMotors) {
+			motor.stop();
+		}
+	}
+
+	/**
+	 * Fits the feedforward of every motor in a group. Call after the tests are done.
+	 * @param minVelocity samples slower than this are left out
+	 * @return one fit per motor, null where there was not enough data
+	 */
+	public FeedforwardFit[] fit(Group group, double minVelocity) {
+		CharacterizationLog log = getLog(group);
+		log.computeAccelerations(DriveCharacterization.ACCELERATION_WINDOW);
+		FeedforwardFit[] fits = new FeedforwardFit[log.getMotorCount()];
+		for (int m = 0; m < fits.length; m++) {
+			fits[m] = FeedforwardFit.fit(log, m, minVelocity);
+		}
+		return fits;
+	}
+
+	public CharacterizationLog getLog(Group group) {
+		return group == Group.DRIVE ? driveLog : steerLog;
+	}
+
+	/**
+	 * @return the total time of the tests, in seconds
+	 */
+	public double getDuration() {
+		double duration = 0;
+		for (double[] p : phases) {
+			duration += p[DURATION];
+		}
+		return duration;
+	}
+}
@@ -0,0 +1,296 @@
+package frc.robot.characterization;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+import frc.robot.DriveConstants;
+import frc.robot.swerve.drive.DriveFeedforward;
+
+/**
+ * The measured constants of every module: the drive and steer feedforward, and the steer position loop gains
+ * calculated from the steer feedforward. Saved to a properties file that the drivetrain loads at boot, with keys like
+ * "FL.drive.kV" and "FL.steer.P". The drive feedforward is only used once "drive.velocityMode" is set to true in the
+ * file, which fitting new constants leaves as it was.
+ *
+ * Run it directly to fit logs captured on the robot offline:
+ * <pre>
+ * java -cp robot.jar frc.robot.characterization.DriveCharacterization &lt;drive log&gt; &lt;steer log&gt; &lt;output file&gt;
+ * </pre>
+ */
+public class DriveCharacterization {
+	/** Drive samples slower than this (inches per second) are left out of the fit. */
+	public static final double DRIVE_MIN_VELOCITY = 1.0;
+	/** Steer samples slower than this (rotations per second) are left out of the fit. */
+	public static final double STEER_MIN_VELOCITY = 0.05;
+	/** The time between the velocities the acceleration is taken from, in seconds. */
+	public static final double ACCELERATION_WINDOW = 0.04;
+	/** The steer position loop is tuned to settle (within 2%) in this time, in seconds, without overshoot. */
+	public static final double STEER_SETTLE_TIME = 0.15;
+
+	// Turns the closed-loop velocity drive on
+	private static final String VELOCITY_DRIVE_KEY = "drive.velocityMode";
+
+	// The Talon closed loop: full output is 1023, the loop runs every millisecond
+	private static final double TALON_FULL_OUTPUT = 1023;
+	private static final double TALON_LOOPS_PER_SECOND = 1000;
+
+	private final String[] modules;
+	private final DriveFeedforward[] drive;
+	private final DriveFeedforward[] steer;
+	private final double[] steerP;
+	private final double[] steerD;
+	private boolean velocityDrive = false;
+
+	/**
+	 * @param modules the module names, used in the keys
+	 */
+	public DriveCharacterization(String[] modules) {
+		this.modules = modules.clone();
+		this.drive = new DriveFeedforward[modules.length];
+		this.steer = new DriveFeedforward[modules.length];
+		this.steerP = new double[modules.length];
+		this.steerD = new double[modules.length];
+		Arrays.fill(steerP, Double.NaN);
+		Arrays.fill(steerD, Double.NaN);
+	}
+
+	/**
+	 * Builds the constants from the fits, with the steer gains for a critically damped position loop.
+	 * @param driveFits one per module, null where the fit failed
+	 * @param steerFits one per module, velocity in rotations per second; null where the fit failed
+	 * @param nominalVoltage the voltage of full output on the steer Talons
+	 * @param countsPerRotation the steer sensor counts per rotation of the wheel
+	 */
+	public static DriveCharacterization fromFits(String[] modules, FeedforwardFit[] driveFits,
+			FeedforwardFit[] steerFits, double nominalVoltage, double countsPerRotation) {
+		DriveCharacterization result = new DriveCharacterization(modules);
+		for (int i = 0; i < modules.length; i++) {
+			if (driveFits[i] != null && driveFits[i].toFeedforward().getV() <= 0) {
+				System.out.println(modules[i] + " drive: the encoder counts against the motor, check its sensor phase");
+			} else if (driveFits[i] != null) {
+				result.drive[i] = driveFits[i].toFeedforward();
+			}
+			if (steerFits[i] != null) {
+				result.steer[i] = steerFits[i].toFeedforward();
+				double[] gains = steerGains(result.steer[i], STEER_SETTLE_TIME, nominalVoltage, countsPerRotation);
+				result.steerP[i] = gains[0];
+				result.steerD[i] = gains[1];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates Talon position loop gains for a motor with the given feedforward (velocity in rotations per second).
+	 *
+	 * With volts = P * error - D * velocity, the loop is kA s^2 + (kV + D) s + P = 0. For no overshoot at a natural
+	 * frequency w (settling in about 5.8 / w): P = kA w^2 and D = 2 kA w - kV. If kA is too small to matter the loop
+	 * is first order and P = 4 kV / settle time.
+	 * @return the Talon P and D, in Talon units
+	 */
+	public static double[] steerGains(DriveFeedforward feedforward, double settleTime, double nominalVoltage,
+			double countsPerRotation) {
+		double p;
+		double d;
+		double w = 5.8 / settleTime;
+		if (feedforward.getA() > 0 && 2 * feedforward.getA() * w > feedforward.getV()) {
+			p = feedforward.getA() * w * w;
+			d = 2 * feedforward.getA() * w - feedforward.getV();
+		} else {
+			p = 4 * Math.max(feedforward.getV(), 0) / settleTime;
+			d = 0;
+		}
+		// Volts per rotation to output per count, and volts per rotation per second to output per count per loop
+		double scale = TALON_FULL_OUTPUT / nominalVoltage / countsPerRotation;
+		return new double[] { p * scale, d * scale * TALON_LOOPS_PER_SECOND };
+	}
+
+	/**
+	 * @return the drive feedforward of a module, in volts per inch per second, or null if not measured
+	 */
+	public DriveFeedforward getDriveFeedforward(int module) {
+		return drive[module];
+	}
+
+	/**
+	 * @return the steer feedforward of a module, in volts per rotation per second, or null if not measured
+	 */
+	public DriveFeedforward getSteerFeedforward(int module) {
+		return steer[module];
+	}
+
+	/**
+	 * @return the Talon P gain of a module's steer loop, or NaN if not measured
+	 */
+	public double getSteerP(int module) {
+		return steerP[module];
+	}
+
+	/**
+	 * @return the Talon D gain of a module's steer loop, or NaN if not measured
+	 */
+	public double getSteerD(int module) {
+		return steerD[module];
+	}
+
+	/**
+	 * @return true if every module's drive feedforward was measured
+	 */
+	public boolean hasDriveFeedforward() {
+		for (DriveFeedforward feedforward : drive) {
+			if (feedforward == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the drive wheels should run the closed velocity loop with the measured feedforward
+	 */
+	public boolean isVelocityDrive() {
+		return velocityDrive;
+	}
+
+	public void setVelocityDrive(boolean velocityDrive) {
+		this.velocityDrive = velocityDrive;
+	}
+
+	/**
+	 * Keeps the settings of an earlier file (the velocity drive switch) when new constants replace it.
+	 * @param file the file about to be replaced; nothing changes if it does not exist
+	 */
+	public void keepSettings(File file) {
+		DriveCharacterization old = load(file, modules);
+		if (old != null) {
+			velocityDrive = old.velocityDrive;
+		}
+	}
+
+	/**
+	 * Loads the constants saved by {@link #save}. Anything missing is left unmeasured.
+	 * @return the constants, or null if the file does not exist or cannot be read
+	 */
+	public static DriveCharacterization load(File file, String[] modules) {
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (Reader reader = new FileReader(file)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			System.out.println("Could not load the drive characterization from " + file + ": " + e);
+			return null;
+		}
+
+		DriveCharacterization result = new DriveCharacterization(modules);
+		result.velocityDrive = Boolean.parseBoolean(properties.getProperty(VELOCITY_DRIVE_KEY, "false").trim());
+		try {
+			for (int i = 0; i < modules.length; i++) {
+				result.drive[i] = getFeedforward(properties, modules[i] + ".drive");
+				result.steer[i] = getFeedforward(properties, modules[i] + ".steer");
+				result.steerP[i] = getDouble(properties, modules[i] + ".steer.P");
+				result.steerD[i] = getDouble(properties, modules[i] + ".steer.D");
+			}
+		} catch (NumberFormatException e) {
+			System.out.println("Could not load the drive characterization from " + file + ": " + e);
+			return null;
+		}
+		return result;
+	}
+
+	private static DriveFeedforward getFeedforward(Properties properties, String prefix) {
+		double kS = getDouble(properties, prefix + ".kS");
+		double kV = getDouble(properties, prefix + ".kV");
+		double kA = getDouble(properties, prefix + ".kA");
+		if (Double.isNaN(kS) || Double.isNaN(kV) || Double.isNaN(kA)) {
+			return null;
+		}
+		return new DriveFeedforward(kS, kV, kA);
+	}
+
+	private static double getDouble(Properties properties, String key) {
+		String value = properties.getProperty(key);
+		return value == null ? Double.NaN : Double.parseDouble(value);
+	}
+
+	/**
+	 * Saves the measured constants, replacing the file atomically.
+	 */
+	public void save(File file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(VELOCITY_DRIVE_KEY, Boolean.toString(velocityDrive));
+		for (int i = 0; i < modules.length; i++) {
+			putFeedforward(properties, modules[i] + ".drive", drive[i]);
+			putFeedforward(properties, modules[i] + ".steer", steer[i]);
+			if (!Double.isNaN(steerP[i])) {
+				properties.setProperty(modules[i] + ".steer.P", Double.toString(steerP[i]));
+				properties.setProperty(modules[i] + ".steer.D", Double.toString(steerD[i]));
+			}
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try (Writer writer = new FileWriter(temp)) {
+			properties.store(writer, "Drive characterization: volts, inches, rotations and seconds; steer P/D in Talon units");
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void putFeedforward(Properties properties, String prefix, DriveFeedforward feedforward) {
+		if (feedforward == null) {
+			return;
+		}
+		properties.setProperty(prefix + ".kS", Double.toString(feedforward.getS()));
+		properties.setProperty(prefix + ".kV", Double.toString(feedforward.getV()));
+		properties.setProperty(prefix + ".kA", Double.toString(feedforward.getA()));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < modules.length; i++) {
+			text.append(String.format("%s: drive %s; steer %s, P %.3f, D %.3f%n", modules[i], drive[i], steer[i],
+					steerP[i], steerD[i]));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Fits logs captured on the robot: args[0] the drive log, args[1] the steer log, args[2] the file to save to.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: DriveCharacterization <drive log> <steer log> <output file>");
+			System.exit(2);
+		}
+		CharacterizationLog driveLog = CharacterizationLog.read(new File(args[0]));
+		CharacterizationLog steerLog = CharacterizationLog.read(new File(args[1]));
+		driveLog.computeAccelerations(ACCELERATION_WINDOW);
+		steerLog.computeAccelerations(ACCELERATION_WINDOW);
+		String[] modules = DriveConstants.getModuleNames();
+		if (driveLog.getMotorCount() != modules.length || steerLog.getMotorCount() != modules.length) {
+			throw new IOException("Expected " + modules.length + " motors in each log");
+		}
+
+		FeedforwardFit[] driveFits = new FeedforwardFit[modules.length];
+		FeedforwardFit[] steerFits = new FeedforwardFit[modules.length];
+		for (int i = 0; i < modules.length; i++) {
+			driveFits[i] = FeedforwardFit.fit(driveLog, i, DRIVE_MIN_VELOCITY);
+			steerFits[i] = FeedforwardFit.fit(steerLog, i, STEER_MIN_VELOCITY);
+			System.out.println(modules[i] + " drive: " + driveFits[i]);
+			System.out.println(modules[i] + " steer: " + steerFits[i]);
+		}
+		DriveCharacterization result = fromFits(modules, driveFits, steerFits,
+				DriveConstants.NOMINAL_VOLTAGE, DriveConstants.GEAR_RATIO);
+		result.keepSettings(new File(args[2]));
+		result.save(new File(args[2]));
+		System.out.print(result);
+	}
+}
@@ -0,0 +1,128 @@
+package frc.robot.characterization;
+
+import frc.robot.swerve.drive.DriveFeedforward;
+
+/**
+ * Fits the feedforward of one motor to a {@link CharacterizationLog} by ordinary least squares:
+ * <pre>
+ * voltage = kS * sign(velocity) + kV * velocity + kA * acceleration
+ * </pre>
+ * Samples where the motor barely moves are left out, since static friction (not kS) holds it there.
+ */
+public class FeedforwardFit {
+	private final double kS;
+	private final double kV;
+	private final double kA;
+	private final double rSquared;
+	private final int samples;
+
+	private FeedforwardFit(double kS, double kV, double kA, double rSquared, int samples) {
+		this.kS = kS;
+		this.kV = kV;
+		this.kA = kA;
+		this.rSquared = rSquared;
+		this.samples = samples;
+	}
+
+	/**
+	 * @param motor the motor in the log to fit
+	 * @param minVelocity samples slower than this are left out
+	 * @return the fit, or null if there are not enough samples to fit
+	 */
+	public static FeedforwardFit fit(CharacterizationLog log, int motor, double minVelocity) {
+		// Normal equations (X^T X) b = X^T y, with the columns sign(v), v and a
+		double[] xtx = new double[9];
+		double[] xty = new double[3];
+		double[] row = new double[3];
+		double sumY = 0;
+		double sumYY = 0;
+		int count = 0;
+		for (int i = 0; i < log.getSize(); i++) {
+			double v = log.getVelocity(i, motor);
+			if (Math.abs(v) < minVelocity) {
+				continue;
+			}
+			double y = log.getVoltage(i, motor);
+			row[0] = Math.signum(v);
+			row[1] = v;
+			row[2] = log.getAcceleration(i, motor);
+			for (int j = 0; j < 3; j++) {
+				for (int k = 0; k < 3; k++) {
+					xtx[j * 3 + k] += row[j] * row[k];
+				}
+				xty[j] += row[j] * y;
+			}
+			sumY += y;
+			sumYY += y * y;
+			count++;
+		}
+		if (count < 3) {
+			return null;
+		}
+
+		double[] b = solve(xtx, xty);
+		if (b == null) {
+			return null;
+		}
+
+		// R^2 = 1 - SSres / SStot, with SSres = y^T y - b^T X^T y for the least-squares b
+		double ssRes = sumYY - (b[0] * xty[0] + b[1] * xty[1] + b[2] * xty[2]);
+		double ssTot = sumYY - sumY * sumY / count;
+		double rSquared = ssTot > 0 ? 1 - ssRes / ssTot : 0;
+		return new FeedforwardFit(b[0], b[1], b[2], rSquared, count);
+	}
+
+	/**
+	 * Solves a 3x3 system by Cramer's rule.
+	 * @return the solution, or null if the matrix is singular (e.g. the motor never accelerated)
+	 */
+	private static double[] solve(double[] a, double[] y) {
+		double c00 = a[4] * a[8] - a[5] * a[7];
+		double c01 = a[5] * a[6] - a[3] * a[8];
+		double c02 = a[3] * a[7] - a[4] * a[6];
+		double det = a[0] * c00 + a[1] * c01 + a[2] * c02;
+		if (Math.abs(det) < 1e-12) {
+			return null;
+		}
+		double[] b = new double[3];
+		b[0] = (y[0] * c00 + a[1] * (a[5] * y[2] - y[1] * a[8]) + a[2] * (y[1] * a[7] - a[4] * y[2])) / det;
+		b[1] = (a[0] * (y[1] * a[8] - a[5] * y[2]) + y[0] * c01 + a[2] * (a[3] * y[2] - y[1] * a[6])) / det;
+		b[2] = (a[0] * (a[4] * y[2] - y[1] * a[7]) + a[1] * (y[1] * a[6] - a[3] * y[2]) + y[0] * c02) / det;
+		return b;
+	}
+
+	public double getS() {
+		return kS;
+	}
+
+	public double getV() {
+		return kV;
+	}
+
+	public double getA() {
+		return kA;
+	}
+
+	/**
+	 * @return how much of the voltage the fit explains, 0 to 1
+	 */
+	public double getRSquared() {
+		return rSquared;
+	}
+
+	/**
+	 * @return the number of samples fitted
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	public DriveFeedforward toFeedforward() {
+		return new DriveFeedforward(kS, kV, kA);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("kS %.4f, kV %.5f, kA %.5f (r^2 %.3f, %d samples)", kS, kV, kA, rSquared, samples);
+	}
+}
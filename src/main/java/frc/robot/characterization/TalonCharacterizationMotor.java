@@ -0,0 +1,62 @@
+package frc.robot.characterization;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+/**
+ * A {@link Characterizer.Motor} backed by a Talon SRX, driven in percent output.
+ *
+ * The applied voltage and the velocity are both read from the Talon, in its own (inverted, sensor phase corrected)
+ * frame, so they agree in sign however the motor is mounted. The command is a fraction of the nominal voltage; if
+ * voltage compensation is off the applied voltage differs, but the measured one is what gets logged.
+ */
+public class TalonCharacterizationMotor implements Characterizer.Motor {
+	private final WPI_TalonSRX talon;
+	private final double nominalVoltage;
+	private final double direction;
+	private final double velocityScale;
+	private final Runnable hold;
+	private final Runnable stop;
+
+	/**
+	 * @param nominalVoltage the voltage of full output
+	 * @param direction 1, or -1 to drive the motor the other way (e.g. a wheel that is turned around)
+	 * @param velocityScale velocity units per sensor count per 100ms
+	 * @param hold keeps the mechanism still
+	 * @param stop stops the motor at the end
+	 */
+	public TalonCharacterizationMotor(WPI_TalonSRX talon, double nominalVoltage, double direction,
+			double velocityScale, Runnable hold, Runnable stop) {
+		this.talon = talon;
+		this.nominalVoltage = nominalVoltage;
+		this.direction = direction;
+		this.velocityScale = velocityScale;
+		this.hold = hold;
+		this.stop = stop;
+	}
+
+	@Override
+	public void setVoltage(double volts) {
+		talon.set(ControlMode.PercentOutput, direction * volts / nominalVoltage);
+	}
+
+	@Override
+	public void hold() {
+		hold.run();
+	}
+
+	@Override
+	public void stop() {
+		stop.run();
+	}
+
+	@Override
+	public double getVoltage() {
+		return talon.getMotorOutputVoltage();
+	}
+
+	@Override
+	public double getVelocity() {
+		return talon.getSelectedSensorVelocity(0) * velocityScale;
+	}
+}
@@ -0,0 +1,106 @@
+package frc.robot.commands;
+
+import java.io.File;
+import java.io.IOException;
+
+import frc.robot.DriveConstants;
+import frc.robot.characterization.CharacterizationLog;
+import frc.robot.characterization.Characterizer;
+import frc.robot.characterization.DriveCharacterization;
+import frc.robot.characterization.FeedforwardFit;
+import frc.robot.subsystems.Drivetrain;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Measures the drive and steer feedforward of every module (see {@link Characterizer}), fits it and saves it for the
+ * next boot. The captured data is also written to deploy/log as CSV, to fit offline with
+ * {@link DriveCharacterization}. Needs about 3 m of clear floor in front of and behind the robot.
+ *
+ * Robot runs it in Test mode only while the driver holds a button, and {@link #stop()}s it when the robot is disabled.
+ */
+public class CharacterizeDrivetrain extends Command {
+
+	private Drivetrain drivetrain;
+	private Characterizer characterizer;
+	// The tests were cancelled or have ended, and the drivetrain was given back
+	private boolean finished;
+
+	public CharacterizeDrivetrain(Drivetrain drivetrain) {
+		this.drivetrain = drivetrain;
+		requires(drivetrain);
+	}
+
+	// Called just before this Command runs the first time
+	protected void initialize() {
+		characterizer = drivetrain.createCharacterizer();
+		finished = false;
+		System.out.printf("Characterizing the drivetrain, %.0f s%n", characterizer.getDuration());
+		characterizer.start();
+	}
+
+	// Called repeatedly when this Command is scheduled to run
+	protected void execute() {
+	}
+
+	// Make this return true when this Command no longer needs to run execute()
+	protected boolean isFinished() {
+		return characterizer.isDone();
+	}
+
+	// Called once after isFinished returns true
+	protected void end() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		drivetrain.endCharacterization();
+		// Fitting and writing files takes a while; keep it off the scheduler thread
+		Characterizer done = characterizer;
+		Thread saver = new Thread(() -> save(done), "Characterization fit");
+		saver.setDaemon(true);
+		saver.start();
+	}
+
+	// Called when another command which requires one or more of the same
+	// subsystems is scheduled to run
+	protected void interrupted() {
+		stop();
+	}
+
+	/**
+	 * Stops the tests and gives the modules back to the drivetrain right away, without saving anything. A cancelled
+	 * command is only interrupted on the next scheduler run, which is too late when the robot is being disabled. Does
+	 * nothing if the tests are not running.
+	 */
+	public void stop() {
+		if (characterizer == null || finished) {
+			return;
+		}
+		finished = true;
+		characterizer.cancel();
+		drivetrain.endCharacterization();
+		System.out.println("Drivetrain characterization cancelled");
+	}
+
+	private void save(Characterizer done) {
+		FeedforwardFit[] driveFits = done.fit(Characterizer.Group.DRIVE, DriveCharacterization.DRIVE_MIN_VELOCITY);
+		FeedforwardFit[] steerFits = done.fit(Characterizer.Group.STEER, DriveCharacterization.STEER_MIN_VELOCITY);
+		DriveCharacterization result = DriveCharacterization.fromFits(DriveConstants.getModuleNames(), driveFits,
+				steerFits, DriveConstants.NOMINAL_VOLTAGE, DriveConstants.GEAR_RATIO);
+		System.out.print("Drivetrain characterization:\n" + result);
+
+		try {
+			drivetrain.saveCharacterization(result);
+			File logDirectory = new File(Filesystem.getDeployDirectory(), "log");
+			logDirectory.mkdirs();
+			CharacterizationLog driveLog = done.getLog(Characterizer.Group.DRIVE);
+			CharacterizationLog steerLog = done.getLog(Characterizer.Group.STEER);
+			driveLog.write(new File(logDirectory, "characterization-drive.csv"));
+			steerLog.write(new File(logDirectory, "characterization-steer.csv"));
+		} catch (IOException e) {
+			System.out.println("Could not save the drivetrain characterization: " + e);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package frc.robot.commands.auto;
+
+import frc.robot.DriveConstants;
+import frc.robot.subsystems.Drivetrain;
+import frc.robot.swerve.math.CentricMode;
+import frc.robot.swerve.trajectory.Trajectory;
+import frc.robot.swerve.trajectory.TrajectoryFollower;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Drives a precomputed trajectory. The robot is assumed to start at the trajectory's first position, with the gyro
+ * heading matching the field. Trajectories and the drivetrain's poses share the drivers' frame, so +x in a trajectory
+ * drives the way the stick pushed forward does.
+ *
+ * The follower runs on the drive loop at the loop rate (or in the drivetrain's periodic() without one), so this
+ * command only starts it, waits for it and puts the drive back the way it was.
+ */
+public class FollowTrajectory extends Command {
+
+	private Drivetrain drivetrain;
+	private Trajectory trajectory;
+	private TrajectoryFollower follower;
+	private CentricMode previousMode;
+
+	public FollowTrajectory(Drivetrain drivetrain, Trajectory trajectory) {
+		this.drivetrain = drivetrain;
+		this.trajectory = trajectory;
+		requires(drivetrain);
+	}
+
+	// Called just before this Command runs the first time
+	protected void initialize() {
+		if (follower == null) {
+			follower = new TrajectoryFollower(trajectory, drivetrain::getPose, DriveConstants.MAX_SPEED,
+					drivetrain.getOdometry().getKinematics().getMaxRadius());
+		}
+		drivetrain.resetPose(trajectory.get(0, Trajectory.X), trajectory.get(0, Trajectory.Y));
+		previousMode = drivetrain.getCentricMode();
+		drivetrain.setCentricMode(CentricMode.FIELD);
+		follower.start(Timer.getFPGATimestamp());
+		drivetrain.setController(follower);
+	}
+
+	// Called repeatedly when this Command is scheduled to run
+	protected void execute() {
+	}
+
+	// Make this return true when this Command no longer needs to run execute()
+	protected boolean isFinished() {
+		return follower.isFinished();
+	}
+
+	// Called once after isFinished returns true
+	protected void end() {
+		drivetrain.setController(null);
+		drivetrain.stop();
+		drivetrain.setCentricMode(previousMode);
+		System.out.println("Trajectory done: " + follower);
+	}
+
+	// Called when another command which requires one or more of the same
+	// subsystems is scheduled to run
+	protected void interrupted() {
+		end();
+	}
+
+	/**
+	 * @return the follower, for its tracking error, or null before the command first runs
+	 */
+	public TrajectoryFollower getFollower() {
+		return follower;
+	}
+}
@@ -8,6 +8,7 @@
 package frc.robot.commands.teleop;
 
 import frc.robot.OI;
+import frc.robot.Robot;
 import frc.robot.subsystems.Drivetrain;
 
 import edu.wpi.first.wpilibj.GenericHID.Hand;
@@ -37,9 +38,11 @@ public class TeleDrive extends Command {
 	// Called repeatedly when this Command is scheduled to run
 	
 	protected void execute() {
+		long start = System.nanoTime();
 		fwd = OI.deadBand(-controller.getY(Hand.kLeft));
 		strafe = OI.deadBand(controller.getX(Hand.kLeft));
 		rotateCW = OI.deadBand(controller.getX(Hand.kRight));
+		Robot.loopProfiler.record(Robot.STAGE_INPUT, start);
 
 		drivetrain.drive(fwd, strafe, rotateCW);
 	}
@@ -0,0 +1,47 @@
+package frc.robot.config;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+
+/**
+ * The configuration calls {@link ControllerConfigurator} makes on a motor controller, so it can run against real
+ * Talons ({@link TalonController}) or a mock.
+ *
+ * The calls with a timeout block for a CAN round trip. {@link ControllerConfigurator} makes them for different
+ * controllers from different threads at the same time, but never for the same controller.
+ */
+public interface ConfigurableController {
+
+	/**
+	 * @return a name for reporting, e.g. "steer FL"
+	 */
+	public String getName();
+
+	public void setInverted(boolean inverted);
+
+	public void setNeutralMode(NeutralMode neutralMode);
+
+	public void setSensorPhase(boolean sensorPhase);
+
+	public void selectProfileSlot(int slot, int pidIdx);
+
+	public void enableVoltageCompensation(boolean enable);
+
+	/**
+	 * Reads back a stored parameter.
+	 * @param ordinal the slot for gains, the PID index for the feedback sensor
+	 * @return the current value, or NaN if it could not be read within the timeout
+	 */
+	public double getParameter(ParamEnum param, int ordinal, int timeoutMs);
+
+	/**
+	 * @param ordinal the slot for gains, the PID index for the feedback sensor
+	 */
+	public ErrorCode setParameter(ParamEnum param, double value, int ordinal, int timeoutMs);
+
+	public ErrorCode configFeedbackSensor(FeedbackDevice feedbackDevice, int pidIdx, int timeoutMs);
+
+	public ErrorCode setSensorPosition(int position, int pidIdx, int timeoutMs);
+}
@@ -0,0 +1,112 @@
+package frc.robot.config;
+
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+
+/**
+ * The settings for one motor controller, applied by {@link ControllerConfigurator}. Anything not set is left as the
+ * controller has it.
+ */
+public class ControllerConfig {
+	private final boolean inverted;
+	private NeutralMode neutralMode = null;
+	private Boolean sensorPhase = null;
+	private FeedbackDevice feedbackDevice = null;
+	private double voltageCompensation = Double.NaN;
+
+	private int profileSlot = 0;
+	private double kP = Double.NaN;
+	private double kI = Double.NaN;
+	private double kD = Double.NaN;
+	private double kF = Double.NaN;
+
+	public ControllerConfig(boolean inverted) {
+		this.inverted = inverted;
+	}
+
+	public boolean isInverted() {
+		return inverted;
+	}
+
+	public NeutralMode getNeutralMode() {
+		return neutralMode;
+	}
+
+	public void setNeutralMode(NeutralMode neutralMode) {
+		this.neutralMode = neutralMode;
+	}
+
+	public Boolean getSensorPhase() {
+		return sensorPhase;
+	}
+
+	/**
+	 * @param sensorPhase true if the sensor counts down while the motor drives forward (before inversion), so the
+	 *                    controller flips it; a sensor out of phase makes a closed loop run away
+	 */
+	public void setSensorPhase(boolean sensorPhase) {
+		this.sensorPhase = sensorPhase;
+	}
+
+	public FeedbackDevice getFeedbackDevice() {
+		return feedbackDevice;
+	}
+
+	/**
+	 * @param feedbackDevice the sensor for the primary PID loop
+	 */
+	public void setFeedbackDevice(FeedbackDevice feedbackDevice) {
+		this.feedbackDevice = feedbackDevice;
+	}
+
+	public double getVoltageCompensation() {
+		return voltageCompensation;
+	}
+
+	/**
+	 * Scales the output to the battery voltage, so an output of 1 (or a feedforward in percent) always means the same
+	 * voltage.
+	 * @param volts the voltage for an output of 1
+	 */
+	public void setVoltageCompensation(double volts) {
+		this.voltageCompensation = volts;
+	}
+
+	/**
+	 * Sets the closed loop gains and selects their slot for the primary PID loop. Pass NaN to leave a gain as it is.
+	 */
+	public void setGains(int profileSlot, double kP, double kI, double kD, double kF) {
+		this.profileSlot = profileSlot;
+		this.kP = kP;
+		this.kI = kI;
+		this.kD = kD;
+		this.kF = kF;
+	}
+
+	public int getProfileSlot() {
+		return profileSlot;
+	}
+
+	public double getP() {
+		return kP;
+	}
+
+	public double getI() {
+		return kI;
+	}
+
+	public double getD() {
+		return kD;
+	}
+
+	public double getF() {
+		return kF;
+	}
+
+	/**
+	 * @return true if any gain is set
+	 */
+	public boolean hasGains() {
+		return !Double.isNaN(kP) || !Double.isNaN(kI) || !Double.isNaN(kD) || !Double.isNaN(kF);
+	}
+}
@@ -0,0 +1,217 @@
+package frc.robot.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+
+/**
+ * Applies {@link ControllerConfig}s to many motor controllers at startup.
+ *
+ * Every blocking call is a CAN round trip, so the controllers are configured concurrently, one thread each: the total
+ * time is about that of the slowest controller instead of the sum. Each stored parameter is read back first and only
+ * written if it differs, so a restart with an unchanged config mostly costs reads. Settings that don't wait for the
+ * controller (inversion, neutral mode, sensor phase, profile slot, enabling voltage compensation) are always applied.
+ */
+public class ControllerConfigurator {
+	// Gains are stored in fixed point on the Talon, so the read back value only matches to about this much
+	private static final double GAIN_TOLERANCE = 1e-3;
+	private static final double VOLTAGE_TOLERANCE = 0.01;
+
+	private static final ParamEnum[] GAINS = { ParamEnum.eProfileParamSlot_P, ParamEnum.eProfileParamSlot_I,
+			ParamEnum.eProfileParamSlot_D, ParamEnum.eProfileParamSlot_F };
+
+	private final int timeoutMs;
+
+	/**
+	 * @param timeoutMs how long each blocking call waits for the controller
+	 */
+	public ControllerConfigurator(int timeoutMs) {
+		this.timeoutMs = timeoutMs;
+	}
+
+	/**
+	 * Configures every controller at the same time and waits until all are done.
+	 * @param configs one per controller
+	 */
+	public Report configure(ConfigurableController[] controllers, ControllerConfig[] configs) {
+		if (controllers.length != configs.length) {
+			throw new IllegalArgumentException("Need one config per controller");
+		}
+		List<Callable<Report>> tasks = new ArrayList<>();
+		for (int i = 0; i < controllers.length; i++) {
+			ConfigurableController controller = controllers[i];
+			ControllerConfig config = configs[i];
+			tasks.add(() -> configure(controller, config));
+		}
+		return runAll(tasks);
+	}
+
+	/**
+	 * Sets the primary sensor position of every controller at the same time, e.g. to zero the encoders. Positions are
+	 * not read back, they are always written.
+	 */
+	public Report setSensorPositions(ConfigurableController[] controllers, int position) {
+		List<Callable<Report>> tasks = new ArrayList<>();
+		for (ConfigurableController controller : controllers) {
+			tasks.add(() -> {
+				Report report = new Report(1);
+				check(report, controller, "sensor position", controller.setSensorPosition(position, 0, timeoutMs));
+				return report;
+			});
+		}
+		return runAll(tasks);
+	}
+
+	private Report configure(ConfigurableController controller, ControllerConfig config) {
+		Report report = new Report(1);
+
+		controller.setInverted(config.isInverted());
+		if (config.getNeutralMode() != null) {
+			controller.setNeutralMode(config.getNeutralMode());
+		}
+		if (config.getSensorPhase() != null) {
+			controller.setSensorPhase(config.getSensorPhase());
+		}
+
+		if (config.getFeedbackDevice() != null) {
+			apply(report, controller, ParamEnum.eFeedbackSensorType, 0, config.getFeedbackDevice().value, 0,
+					() -> controller.configFeedbackSensor(config.getFeedbackDevice(), 0, timeoutMs));
+		}
+
+		if (!Double.isNaN(config.getVoltageCompensation())) {
+			double volts = config.getVoltageCompensation();
+			apply(report, controller, ParamEnum.eNominalBatteryVoltage, 0, volts, VOLTAGE_TOLERANCE,
+					() -> controller.setParameter(ParamEnum.eNominalBatteryVoltage, volts, 0, timeoutMs));
+			controller.enableVoltageCompensation(true);
+		}
+
+		if (config.hasGains()) {
+			int slot = config.getProfileSlot();
+			double[] gains = { config.getP(), config.getI(), config.getD(), config.getF() };
+			for (int i = 0; i < GAINS.length; i++) {
+				if (!Double.isNaN(gains[i])) {
+					ParamEnum param = GAINS[i];
+					double value = gains[i];
+					apply(report, controller, param, slot, value, GAIN_TOLERANCE,
+							() -> controller.setParameter(param, value, slot, timeoutMs));
+				}
+			}
+			controller.selectProfileSlot(slot, 0);
+		}
+		return report;
+	}
+
+	/**
+	 * Reads the parameter back and only writes it if it is not already within the tolerance.
+	 */
+	private void apply(Report report, ConfigurableController controller, ParamEnum param, int ordinal, double value,
+			double tolerance, Supplier<ErrorCode> write) {
+		double current = controller.getParameter(param, ordinal, timeoutMs);
+		if (!Double.isNaN(current) && Math.abs(current - value) <= tolerance) {
+			report.unchanged++;
+			return;
+		}
+		check(report, controller, param.toString(), write.get());
+	}
+
+	private void check(Report report, ConfigurableController controller, String what, ErrorCode error) {
+		if (error == ErrorCode.OK) {
+			report.set++;
+		} else {
+			report.failed++;
+			System.out.println("Failed to set " + what + " on " + controller.getName() + ": " + error);
+		}
+	}
+
+	private Report runAll(List<Callable<Report>> tasks) {
+		long start = System.nanoTime();
+		Report total = new Report(0);
+		if (tasks.isEmpty()) {
+			return total;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Report> future : executor.invokeAll(tasks)) {
+				total.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while configuring controllers", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		total.seconds = (System.nanoTime() - start) / 1e9;
+		return total;
+	}
+
+	/**
+	 * What a configuration run did.
+	 */
+	public static class Report {
+		private int controllers;
+		private int set = 0;
+		private int unchanged = 0;
+		private int failed = 0;
+		private double seconds = 0;
+
+		Report(int controllers) {
+			this.controllers = controllers;
+		}
+
+		void add(Report other) {
+			controllers += other.controllers;
+			set += other.set;
+			unchanged += other.unchanged;
+			failed += other.failed;
+		}
+
+		public int getControllers() {
+			return controllers;
+		}
+
+		/**
+		 * @return the number of parameters written
+		 */
+		public int getSet() {
+			return set;
+		}
+
+		/**
+		 * @return the number of parameters skipped because the controller already had them
+		 */
+		public int getUnchanged() {
+			return unchanged;
+		}
+
+		/**
+		 * @return the number of writes the controllers did not acknowledge
+		 */
+		public int getFailed() {
+			return failed;
+		}
+
+		/**
+		 * @return the total wall time, in seconds
+		 */
+		public double getSeconds() {
+			return seconds;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d controllers in %.1f ms: %d set, %d unchanged, %d failed", controllers,
+					seconds * 1000, set, unchanged, failed);
+		}
+	}
+}
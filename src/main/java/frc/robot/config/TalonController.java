@@ -0,0 +1,75 @@
+package frc.robot.config;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+/**
+ * A {@link ConfigurableController} backed by a Talon SRX.
+ */
+public class TalonController implements ConfigurableController {
+	private final String name;
+	private final WPI_TalonSRX talon;
+
+	public TalonController(String name, WPI_TalonSRX talon) {
+		this.name = name;
+		this.talon = talon;
+	}
+
+	public WPI_TalonSRX getTalon() {
+		return talon;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void setInverted(boolean inverted) {
+		talon.setInverted(inverted);
+	}
+
+	@Override
+	public void setNeutralMode(NeutralMode neutralMode) {
+		talon.setNeutralMode(neutralMode);
+	}
+
+	@Override
+	public void setSensorPhase(boolean sensorPhase) {
+		talon.setSensorPhase(sensorPhase);
+	}
+
+	@Override
+	public void selectProfileSlot(int slot, int pidIdx) {
+		talon.selectProfileSlot(slot, pidIdx);
+	}
+
+	@Override
+	public void enableVoltageCompensation(boolean enable) {
+		talon.enableVoltageCompensation(enable);
+	}
+
+	@Override
+	public double getParameter(ParamEnum param, int ordinal, int timeoutMs) {
+		double value = talon.configGetParameter(param, ordinal, timeoutMs);
+		return talon.getLastError() == ErrorCode.OK ? value : Double.NaN;
+	}
+
+	@Override
+	public ErrorCode setParameter(ParamEnum param, double value, int ordinal, int timeoutMs) {
+		return talon.configSetParameter(param, value, 0, ordinal, timeoutMs);
+	}
+
+	@Override
+	public ErrorCode configFeedbackSensor(FeedbackDevice feedbackDevice, int pidIdx, int timeoutMs) {
+		return talon.configSelectedFeedbackSensor(feedbackDevice, pidIdx, timeoutMs);
+	}
+
+	@Override
+	public ErrorCode setSensorPosition(int position, int pidIdx, int timeoutMs) {
+		return talon.setSelectedSensorPosition(position, pidIdx, timeoutMs);
+	}
+}
@@ -0,0 +1,159 @@
+package frc.robot.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the files written by {@link FlightRecorder}, on the desktop. Records can be read one at a time, as columns
+ * (one array per field) or streamed out as CSV.
+ *
+ * Run it directly to convert logs to CSV next to the originals:
+ * <pre>
+ * java -cp robot.jar frc.robot.logging.FlightLogReader &lt;log file or directory&gt;...
+ * </pre>
+ */
+public class FlightLogReader {
+	private final File file;
+	private final ByteBuffer buffer;
+	private final String[] fieldNames;
+	private final int headerSize;
+	private final int recordCount;
+
+	public FlightLogReader(File file) throws IOException {
+		this.file = file;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.limit() < FlightRecorder.NAMES_OFFSET || buffer.getInt(0) != FlightRecorder.MAGIC) {
+			throw new IOException("Not a flight log: " + file);
+		}
+		if (buffer.getInt(4) != FlightRecorder.VERSION) {
+			throw new IOException("Unsupported flight log version " + buffer.getInt(4) + ": " + file);
+		}
+
+		int fieldCount = buffer.getInt(FlightRecorder.FIELD_COUNT_OFFSET);
+		headerSize = buffer.getInt(FlightRecorder.HEADER_SIZE_OFFSET);
+		fieldNames = new String[fieldCount];
+		int position = FlightRecorder.NAMES_OFFSET;
+		for (int i = 0; i < fieldCount; i++) {
+			byte[] name = new byte[buffer.getShort(position)];
+			buffer.position(position + Short.BYTES);
+			buffer.get(name);
+			fieldNames[i] = new String(name, StandardCharsets.UTF_8);
+			position += Short.BYTES + name.length;
+		}
+
+		// A file cut short (e.g. copied while the robot was writing) only counts its complete records
+		long complete = (buffer.limit() - headerSize) / (fieldCount * Double.BYTES);
+		recordCount = (int) Math.min(buffer.getLong(FlightRecorder.RECORD_COUNT_OFFSET), complete);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	public int getFieldCount() {
+		return fieldNames.length;
+	}
+
+	public String[] getFieldNames() {
+		return fieldNames.clone();
+	}
+
+	/**
+	 * @return the index of a field, or -1 if there is no field with that name
+	 */
+	public int getFieldIndex(String name) {
+		return Arrays.asList(fieldNames).indexOf(name);
+	}
+
+	/**
+	 * @param target at least {@link #getFieldCount()} long
+	 */
+	public void readRecord(int record, double[] target) {
+		int offset = headerSize + record * fieldNames.length * Double.BYTES;
+		for (int i = 0; i < fieldNames.length; i++) {
+			target[i] = buffer.getDouble(offset + i * Double.BYTES);
+		}
+	}
+
+	/**
+	 * @return every value of one field, in record order
+	 */
+	public double[] getColumn(int field) {
+		double[] column = new double[recordCount];
+		int stride = fieldNames.length * Double.BYTES;
+		int offset = headerSize + field * Double.BYTES;
+		for (int i = 0; i < recordCount; i++) {
+			column[i] = buffer.getDouble(offset + i * stride);
+		}
+		return column;
+	}
+
+	/**
+	 * @return every field as a column, [field][record]
+	 */
+	public double[][] getColumns() {
+		double[][] columns = new double[fieldNames.length][];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = getColumn(i);
+		}
+		return columns;
+	}
+
+	/**
+	 * Writes a header line with the field names and one line per record.
+	 */
+	public void writeCsv(Writer writer) throws IOException {
+		writer.write(String.join(",", fieldNames));
+		writer.write('\n');
+
+		double[] record = new double[fieldNames.length];
+		for (int i = 0; i < recordCount; i++) {
+			readRecord(i, record);
+			for (int j = 0; j < record.length; j++) {
+				if (j > 0) {
+					writer.write(',');
+				}
+				writer.write(Double.toString(record[j]));
+			}
+			writer.write('\n');
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: FlightLogReader <log file or directory>...");
+			return;
+		}
+		for (String arg : args) {
+			File path = new File(arg);
+			File[] files = path.isDirectory() ? path.listFiles((dir, name) -> name.endsWith(".bin")) : new File[] { path };
+			if (files == null) {
+				continue;
+			}
+			Arrays.sort(files);
+			for (File log : files) {
+				FlightLogReader reader = new FlightLogReader(log);
+				File csv = new File(log.getPath().replaceAll("\\.bin$", "") + ".csv");
+				try (Writer writer = new BufferedWriter(new FileWriter(csv))) {
+					reader.writeCsv(writer);
+				}
+				System.out.println(log + ": " + reader.getRecordCount() + " records -> " + csv);
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package frc.robot.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends fixed-width records of doubles to memory-mapped files, for post-match analysis.
+ *
+ * {@link #append} copies the record into the current mapped file and never allocates or waits on the disk: the
+ * operating system writes the pages back on its own. Everything that can block (creating, sizing, mapping and
+ * pre-touching the next file, flushing the finished one, deleting old ones) happens on a background thread, which
+ * always keeps the next file ready. If it ever is not ready when the current file fills up, records are dropped and
+ * counted rather than waiting.
+ *
+ * Every file starts with a header (see {@link FlightLogReader}) that names the fields and holds the number of records
+ * written so far, so a file is readable even if the robot loses power mid-match. At most maxFiles files with the
+ * same prefix are kept in the directory, the oldest are deleted first; one of them is the next file, still empty, so
+ * the logs on disk span maxFiles - 1 full files. A new file is only created if the disk keeps MIN_FREE_BYTES free
+ * after it.
+ *
+ * Files are named prefix-session-index.bin. The session number is one more than the highest in the directory, so the
+ * age of a log never depends on the wall clock, which the roboRIO only gets from the Driver Station once it connects.
+ *
+ * Only one thread may append.
+ */
+public class FlightRecorder {
+	static final int MAGIC = 0x48584652; // "HXFR"
+	static final int VERSION = 1;
+	static final int FIELD_COUNT_OFFSET = 8;
+	static final int HEADER_SIZE_OFFSET = 12;
+	static final int RECORD_COUNT_OFFSET = 16;
+	static final int NAMES_OFFSET = 24;
+
+	private static final int PAGE_SIZE = 4096;
+	private static final long RETRY_NANOS = 1_000_000_000L;
+	// Space left on the disk for everything else
+	private static final long MIN_FREE_BYTES = 64L << 20;
+
+	private final File directory;
+	private final String prefix;
+	private final int fieldCount;
+	private final int recordBytes;
+	private final long fileBytes;
+	private final int maxFiles;
+	private final byte[] header;
+
+	// Written by the appending thread only
+	private MappedByteBuffer current;
+	private long currentCount;
+	private volatile long recordsWritten = 0;
+	private volatile long recordsDropped = 0;
+
+	// Hand-offs between the appending thread and the background thread
+	private final AtomicReference<MappedByteBuffer> next = new AtomicReference<>();
+	private volatile MappedByteBuffer finished;
+	private volatile boolean closed = false;
+
+	// Background thread only
+	private final Thread worker;
+	private final ArrayDeque<File> files = new ArrayDeque<>();
+	private long session = 0;
+	private int fileIndex = 0;
+	private String lastError = null;
+
+	/**
+	 * Starts preparing the first file in the background; records appended before it is ready are dropped.
+	 * @param directory where to write the files (created if needed)
+	 * @param prefix the start of every file name
+	 * @param fieldNames the name of every field in a record
+	 * @param maxFileBytes the size of one file; a new file is started when it is full
+	 * @param maxFiles the number of files to keep, including the one prepared in advance; at least 2
+	 */
+	public FlightRecorder(File directory, String prefix, String[] fieldNames, long maxFileBytes, int maxFiles) {
+		this.directory = directory;
+		this.prefix = prefix;
+		this.fieldCount = fieldNames.length;
+		this.recordBytes = fieldCount * Double.BYTES;
+		this.maxFiles = maxFiles;
+		assert (maxFiles >= 2) : "maxFiles has to leave room for the current and the next file";
+		this.header = buildHeader(fieldNames);
+
+		long records = (maxFileBytes - header.length) / recordBytes;
+		assert (records > 0) : "maxFileBytes is too small for one record";
+		this.fileBytes = header.length + records * recordBytes;
+
+		worker = new Thread(this::work, "Flight recorder");
+		worker.setDaemon(true);
+		worker.setPriority(Thread.MIN_PRIORITY);
+		worker.start();
+	}
+
+	/**
+	 * Appends one record. Never blocks and allocates nothing.
+	 * @param record at least as many values as there are fields
+	 */
+	public void append(double[] record) {
+		if (current == null || current.remaining() < recordBytes) {
+			MappedByteBuffer replacement = next.getAndSet(null);
+			if (replacement == null || closed) {
+				recordsDropped++;
+				LockSupport.unpark(worker);
+				return;
+			}
+			finished = current;
+			current = replacement;
+			currentCount = 0;
+			LockSupport.unpark(worker);
+		}
+
+		for (int i = 0; i < fieldCount; i++) {
+			current.putDouble(record[i]);
+		}
+		currentCount++;
+		current.putLong(RECORD_COUNT_OFFSET, currentCount);
+		recordsWritten++;
+	}
+
+	/**
+	 * Stops the background thread and flushes the current file. Call from the appending thread (or after it stopped).
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(worker);
+		if (current != null) {
+			current.force();
+		}
+	}
+
+	public long getRecordsWritten() {
+		return recordsWritten;
+	}
+
+	/**
+	 * @return the number of records dropped because no file was ready
+	 */
+	public long getRecordsDropped() {
+		return recordsDropped;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	private void work() {
+		try {
+			directory.mkdirs();
+			findOldFiles();
+		} catch (SecurityException e) {
+			System.out.println("Flight recorder cannot use " + directory + ": " + e.getMessage());
+		}
+
+		while (!closed) {
+			if (next.get() == null) {
+				try {
+					next.set(prepareFile());
+					lastError = null;
+				} catch (IOException e) {
+					// Retried every second; only say so once
+					if (!e.getMessage().equals(lastError)) {
+						lastError = e.getMessage();
+						System.out.println("Flight recorder cannot create a log file: " + lastError);
+					}
+					LockSupport.parkNanos(this, RETRY_NANOS);
+					continue;
+				}
+			}
+
+			MappedByteBuffer done = finished;
+			if (done != null) {
+				finished = null;
+				done.force();
+			}
+
+			LockSupport.parkNanos(this, RETRY_NANOS);
+		}
+	}
+
+	/**
+	 * Deletes the oldest files to make room, then creates, maps and pre-touches the next file.
+	 */
+	private MappedByteBuffer prepareFile() throws IOException {
+		while (files.size() >= maxFiles) {
+			files.removeFirst().delete();
+		}
+		if (directory.getUsableSpace() < fileBytes + MIN_FREE_BYTES) {
+			throw new IOException("less than " + ((fileBytes + MIN_FREE_BYTES) >> 20) + " MiB free in " + directory);
+		}
+
+		File file = new File(directory, String.format("%s-%06d-%04d.bin", prefix, session, fileIndex++));
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+		}
+
+		// Fault every page in now, so the appending thread never has to
+		for (long i = 0; i < fileBytes; i += PAGE_SIZE) {
+			buffer.put((int) i, (byte) 0);
+		}
+		buffer.put(header);
+
+		files.addLast(file);
+		return buffer;
+	}
+
+	/**
+	 * Counts the files left by earlier sessions against the limit, oldest first, and numbers this session after them.
+	 */
+	private void findOldFiles() {
+		File[] old = directory.listFiles((dir, name) -> name.startsWith(prefix + "-") && name.endsWith(".bin"));
+		if (old == null) {
+			return;
+		}
+		long[][] numbers = new long[old.length][];
+		Integer[] order = new Integer[old.length];
+		for (int i = 0; i < old.length; i++) {
+			numbers[i] = parseName(old[i].getName());
+			order[i] = i;
+			session = Math.max(session, numbers[i][0] + 1);
+		}
+		Arrays.sort(order, (a, b) -> numbers[a][0] != numbers[b][0]
+				? Long.compare(numbers[a][0], numbers[b][0])
+				: Long.compare(numbers[a][1], numbers[b][1]));
+		for (int i : order) {
+			files.addLast(old[i]);
+		}
+	}
+
+	/**
+	 * @return the session and index numbers in a file name; files that don't follow the pattern count as oldest
+	 */
+	private long[] parseName(String name) {
+		try {
+			String numbers = name.substring(prefix.length() + 1, name.length() - ".bin".length());
+			int dash = numbers.lastIndexOf('-');
+			return new long[] { Long.parseLong(numbers.substring(0, dash)),
+					Long.parseLong(numbers.substring(dash + 1)) };
+		} catch (RuntimeException e) {
+			return new long[] { -1, -1 };
+		}
+	}
+
+	/**
+	 * The header: magic, version, field count, header size, record count (long), then the field names as
+	 * length-prefixed UTF-8, padded to a multiple of 8 bytes.
+	 */
+	private static byte[] buildHeader(String[] fieldNames) {
+		int size = NAMES_OFFSET;
+		byte[][] names = new byte[fieldNames.length][];
+		for (int i = 0; i < fieldNames.length; i++) {
+			names[i] = fieldNames[i].getBytes(StandardCharsets.UTF_8);
+			size += Short.BYTES + names[i].length;
+		}
+		size = (size + 7) & ~7;
+
+		ByteBuffer header = ByteBuffer.allocate(size);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(fieldNames.length);
+		header.putInt(size);
+		header.putLong(0);
+		for (byte[] name : names) {
+			header.putShort((short) name.length);
+			header.put(name);
+		}
+		return header.array();
+	}
+}
@@ -0,0 +1,280 @@
+package frc.robot.sensors;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+import frc.robot.util.FixedRateThread;
+
+/**
+ * Keeps the gyro off the startup path and corrects its drift with a bias that survives reboots.
+ *
+ * The ADXRS450 blocks for several seconds calibrating itself when it is constructed. Here it is constructed on a
+ * background thread, so robotInit does not wait for it. What its calibration leaves behind is a small constant drift
+ * (the bias, in degrees per second).
+ *
+ * The gyro calibrates itself again on every boot, so the drift it leaves behind differs from boot to boot. The bias
+ * saved by the last boot is only a starting guess: it is subtracted as soon as the gyro is up, but the heading is not
+ * trusted until the bias has been measured on this boot.
+ *
+ * While calibrating is on (the robot is disabled, so it should be standing still) the bias is measured over windows
+ * of a few seconds: a line is fit to the raw angle, and windows where the robot turned are thrown away. The first good
+ * measurement replaces the guess, later ones refine it. The bias is saved back to the file once it has moved far
+ * enough from the saved one to matter, so a long disabled period does not rewrite the file every few seconds.
+ *
+ * The heading is trusted once the gyro is up and the bias has been measured since boot. Reading the heading never
+ * blocks: until the gyro is up it reads 0 and is not trusted.
+ */
+public class GyroCalibrator {
+	private static final double SAMPLE_PERIOD = 0.02;
+	// Each bias measurement fits a line to this much time of samples
+	private static final double WINDOW = 5.0;
+	// A window that strays from its line by more than this (degrees) was not standing still
+	private static final double MAX_RESIDUAL = 0.1;
+	// A measured drift faster than this (degrees per second) is the robot turning, not bias
+	private static final double MAX_BIAS = 0.5;
+	// How far each new measurement moves a known bias
+	private static final double BLEND = 0.3;
+	// The bias is only saved again once it differs from the saved one by this much (degrees per second): 0.15 degrees
+	// over a match
+	private static final double SAVE_THRESHOLD = 0.001;
+
+	private static final String BIAS_KEY = "bias";
+
+	private final Supplier<Gyro> gyroFactory;
+	private final File biasFile;
+	private final DoubleSupplier clock;
+	private final FixedRateThread sampler;
+
+	private volatile Gyro gyro;
+	// Swapped whole so readers always see a consistent bias, offset and epoch
+	private volatile Correction correction = new Correction(0, 0, 0);
+	private volatile boolean biasKnown = false;
+	private volatile boolean calibrating = false;
+	private volatile long measurements = 0;
+	private volatile long rejectedWindows = 0;
+
+	// Sampler thread only
+	private final double[] times;
+	private final double[] angles;
+	private int count = 0;
+	private double savedBias = Double.NaN;
+
+	/**
+	 * Loads the saved bias as a starting guess, if there is one. Nothing is started until {@link #start()}.
+	 * @param gyroFactory constructs the gyro, on the background thread (e.g. ADXRS450_Gyro::new)
+	 * @param biasFile where the bias is saved between boots
+	 * @param clock the time in seconds
+	 */
+	public GyroCalibrator(Supplier<Gyro> gyroFactory, File biasFile, DoubleSupplier clock) {
+		this.gyroFactory = gyroFactory;
+		this.biasFile = biasFile;
+		this.clock = clock;
+		this.sampler = new FixedRateThread("Gyro calibration", SAMPLE_PERIOD, this::sample);
+
+		int samples = (int) Math.round(WINDOW / SAMPLE_PERIOD);
+		times = new double[samples];
+		angles = new double[samples];
+
+		double bias = loadBias();
+		savedBias = bias;
+		// Left over from the last boot's calibration, not this one's: not known until measured again
+		if (!Double.isNaN(bias)) {
+			correction = new Correction(bias, 0, 0);
+		}
+	}
+
+	/**
+	 * Constructs the gyro in the background, then starts sampling. Returns right away.
+	 */
+	public void start() {
+		Thread starter = new Thread(() -> {
+			Gyro newGyro = gyroFactory.get();
+			// The built-in calibration just reset the angle, so the drift starts now
+			correction = new Correction(correction.bias, 0, clock.getAsDouble());
+			gyro = newGyro;
+			System.out.println("Gyro ready, bias " + correction.bias + " deg/s until measured");
+			sampler.start();
+		}, "Gyro startup");
+		starter.setDaemon(true);
+		starter.start();
+	}
+
+	/**
+	 * Turns bias measurement on or off. Only turn it on while the robot stands still, i.e. while disabled.
+	 */
+	public void setCalibrating(boolean calibrating) {
+		this.calibrating = calibrating;
+	}
+
+	/**
+	 * @return the corrected angle in degrees clockwise, continuous past 360. 0 until the gyro is up.
+	 */
+	public double getAngle() {
+		Gyro gyro = this.gyro;
+		if (gyro == null) {
+			return 0;
+		}
+		Correction correction = this.correction;
+		return gyro.getAngle() - correction.offset - correction.bias * (clock.getAsDouble() - correction.epoch);
+	}
+
+	/**
+	 * @return the corrected turn rate in degrees per second clockwise. 0 until the gyro is up.
+	 */
+	public double getRate() {
+		Gyro gyro = this.gyro;
+		return gyro == null ? 0 : gyro.getRate() - correction.bias;
+	}
+
+	/**
+	 * @return true once the gyro is up and its bias has been measured since boot
+	 */
+	public boolean isHeadingTrusted() {
+		return gyro != null && biasKnown;
+	}
+
+	public boolean isReady() {
+		return gyro != null;
+	}
+
+	/**
+	 * @return the drift being subtracted, in degrees per second
+	 */
+	public double getBias() {
+		return correction.bias;
+	}
+
+	/**
+	 * @return the number of bias measurements taken
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return the number of measurement windows thrown away because the robot moved
+	 */
+	public long getRejectedWindows() {
+		return rejectedWindows;
+	}
+
+	/**
+	 * Runs on the sampler thread. Collects one window of raw angles while calibrating, then measures it.
+	 */
+	private void sample() {
+		if (!calibrating) {
+			count = 0;
+			return;
+		}
+		times[count] = clock.getAsDouble();
+		angles[count] = gyro.getAngle();
+		if (++count == times.length) {
+			measure();
+			count = 0;
+		}
+	}
+
+	/**
+	 * Least-squares line through the window; its slope is the drift.
+	 */
+	private void measure() {
+		int n = times.length;
+		double t0 = times[0];
+		double a0 = angles[0];
+		double sumT = 0, sumA = 0, sumTT = 0, sumTA = 0;
+		for (int i = 0; i < n; i++) {
+			double t = times[i] - t0;
+			double a = angles[i] - a0;
+			sumT += t;
+			sumA += a;
+			sumTT += t * t;
+			sumTA += t * a;
+		}
+		double denominator = n * sumTT - sumT * sumT;
+		if (denominator <= 0) {
+			rejectedWindows++;
+			return;
+		}
+		double slope = (n * sumTA - sumT * sumA) / denominator;
+		double intercept = (sumA - slope * sumT) / n;
+
+		double maxResidual = 0;
+		for (int i = 0; i < n; i++) {
+			double residual = angles[i] - a0 - (intercept + slope * (times[i] - t0));
+			maxResidual = Math.max(maxResidual, Math.abs(residual));
+		}
+		if (maxResidual > MAX_RESIDUAL || Math.abs(slope) > MAX_BIAS) {
+			rejectedWindows++;
+			return;
+		}
+
+		Correction old = correction;
+		double bias = biasKnown ? old.bias + BLEND * (slope - old.bias) : slope;
+		// Keep the heading continuous: fold the drift so far into the offset
+		double now = clock.getAsDouble();
+		correction = new Correction(bias, old.offset + old.bias * (now - old.epoch), now);
+		biasKnown = true;
+		measurements++;
+		if (!(Math.abs(bias - savedBias) < SAVE_THRESHOLD)) {
+			saveBias(bias);
+		}
+	}
+
+	private double loadBias() {
+		if (!biasFile.isFile()) {
+			return Double.NaN;
+		}
+		Properties properties = new Properties();
+		try (Reader reader = new FileReader(biasFile)) {
+			properties.load(reader);
+			return Double.parseDouble(properties.getProperty(BIAS_KEY));
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Could not load the gyro bias from " + biasFile + ": " + e);
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Writes a temporary file and moves it over the old one, so a brownout never leaves a half-written file.
+	 */
+	private void saveBias(double bias) {
+		Properties properties = new Properties();
+		properties.setProperty(BIAS_KEY, Double.toString(bias));
+		File temp = new File(biasFile.getPath() + ".tmp");
+		try {
+			try (Writer writer = new FileWriter(temp)) {
+				properties.store(writer, "Gyro drift in degrees per second");
+			}
+			Files.move(temp.toPath(), biasFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			savedBias = bias;
+		} catch (IOException e) {
+			System.out.println("Could not save the gyro bias to " + biasFile + ": " + e);
+		}
+	}
+
+	/**
+	 * corrected angle = raw angle - offset - bias * (time - epoch)
+	 */
+	private static class Correction {
+		final double bias;
+		final double offset;
+		final double epoch;
+
+		Correction(double bias, double offset, double epoch) {
+			this.bias = bias;
+			this.offset = offset;
+			this.epoch = epoch;
+		}
+	}
+}
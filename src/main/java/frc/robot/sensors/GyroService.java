@@ -0,0 +1,104 @@
+package frc.robot.sensors;
+
+import java.util.function.DoubleSupplier;
+
+import frc.robot.swerve.drive.HeadingSource;
+import frc.robot.util.DoubleSnapshot;
+import frc.robot.util.FixedRateThread;
+
+/**
+ * Samples the gyro on its own thread at a high fixed rate, so the heading is never older than one short period.
+ *
+ * Every sample keeps the angle and the turn rate with its timestamp. {@link #sampleHeading} extrapolates the angle to
+ * the time the caller will act on it (angle + rate * (time - timestamp)), which takes out the lag between sampling the
+ * gyro and the wheels moving while the robot spins, and calculates the sine and cosine of that heading once for the
+ * cycle. The extrapolation reaches at most {@link #MAX_HORIZON_PERIODS} sample periods from the sample, so a stalled
+ * sampling thread or a noisy rate cannot swing the heading far.
+ */
+public class GyroService implements HeadingSource {
+	/** The furthest the heading is extrapolated from the latest sample, in sample periods. */
+	public static final int MAX_HORIZON_PERIODS = 8;
+
+	private final GyroCalibrator gyro;
+	private final DoubleSupplier clock;
+	private final FixedRateThread thread;
+	private final double maxHorizon;
+
+	// Timestamp, angle and rate, in the HeadingSource layout
+	private final DoubleSnapshot samples = new DoubleSnapshot(RATE + 1);
+	// Only used by the sampling thread
+	private final double[] sampleOut = new double[RATE + 1];
+
+	/**
+	 * @param gyro the gyro, with its bias corrected
+	 * @param period the time between samples, in seconds
+	 * @param clock the current time in seconds
+	 */
+	public GyroService(GyroCalibrator gyro, double period, DoubleSupplier clock) {
+		this.gyro = gyro;
+		this.clock = clock;
+		this.thread = new FixedRateThread("Gyro", period, this::sample);
+		this.maxHorizon = MAX_HORIZON_PERIODS * period;
+	}
+
+	public void start() {
+		thread.start();
+	}
+
+	public void stop() {
+		thread.stop();
+	}
+
+	/**
+	 * Runs on the sampling thread. Nothing is published until the gyro is up, so readers see a heading of 0.
+	 */
+	private void sample() {
+		if (!gyro.isReady()) {
+			return;
+		}
+		sampleOut[TIMESTAMP] = clock.getAsDouble();
+		sampleOut[ANGLE] = gyro.getAngle();
+		sampleOut[RATE] = gyro.getRate();
+		samples.publish(sampleOut);
+	}
+
+	@Override
+	public void sampleHeading(double time, double[] target) {
+		samples.read(target);
+		double horizon = Math.max(-maxHorizon, Math.min(maxHorizon, time - target[TIMESTAMP]));
+		double heading = (target[ANGLE] + target[RATE] * horizon) % 360;
+		// Same expression as SwerveMath, so a recorded heading replays to the same wheel outputs
+		double radians = (heading * Math.PI) / 180;
+		target[HEADING] = heading;
+		target[SIN] = Math.sin(radians);
+		target[COS] = Math.cos(radians);
+	}
+
+	/**
+	 * @return the latest angle in degrees clockwise, continuous past 360
+	 */
+	public double getAngle() {
+		return samples.get(ANGLE);
+	}
+
+	/**
+	 * @return the latest heading in degrees (% 360)
+	 */
+	public double getHeading() {
+		return samples.get(ANGLE) % 360;
+	}
+
+	/**
+	 * @return the latest turn rate in degrees per second clockwise
+	 */
+	public double getRate() {
+		return samples.get(RATE);
+	}
+
+	/**
+	 * @return the sampling thread, for its overrun statistics
+	 */
+	public FixedRateThread getThread() {
+		return thread;
+	}
+}
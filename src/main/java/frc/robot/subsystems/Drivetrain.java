@@ -27,16 +27,43 @@
 
 package frc.robot.subsystems;
 
+import java.io.File;
+import java.io.IOException;
+
 import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.command.Subsystem;
-import edu.wpi.first.wpilibj.interfaces.Gyro;
 
+import frc.robot.logging.FlightRecorder;
+import frc.robot.sensors.GyroCalibrator;
+import frc.robot.sensors.GyroService;
+import frc.robot.swerve.drive.ChassisController;
+import frc.robot.swerve.drive.DriveCycleRecord;
+import frc.robot.swerve.drive.DriveFeedforward;
+import frc.robot.swerve.drive.SteerProfile;
 import frc.robot.swerve.drive.SwerveDrive;
+import frc.robot.swerve.drive.SwerveDriveLoop;
+import frc.robot.swerve.drive.SwerveSensorSnapshot;
+import frc.robot.swerve.drive.SwerveUtils;
 import frc.robot.swerve.math.CentricMode;
+import frc.robot.swerve.math.SetpointGenerator;
+import frc.robot.swerve.math.SwerveOdometry;
+import frc.robot.util.FixedRateThread;
+import frc.robot.DriveConstants;
 import frc.robot.RobotMap;
+import frc.robot.characterization.Characterizer;
+import frc.robot.characterization.DriveCharacterization;
+import frc.robot.characterization.TalonCharacterizationMotor;
+import frc.robot.config.ConfigurableController;
+import frc.robot.config.ControllerConfig;
+import frc.robot.config.ControllerConfigurator;
+import frc.robot.config.TalonController;
 import frc.robot.commands.teleop.TeleDrive;
 import frc.robot.swerve.drive.CanTalonSwerveEnclosure;
 
+import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
@@ -44,47 +71,100 @@ import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
 
 public class Drivetrain extends Subsystem {
 
-	//Default
-	private CanTalonSwerveEnclosure swerveEnclosureFrontleft;
-	private CanTalonSwerveEnclosure swerveEnclosureFrontright;
-	private CanTalonSwerveEnclosure swerveEnclosureBackright;
-	private CanTalonSwerveEnclosure swerveEnclosureBackleft;
-	
-	//Plus
-	private CanTalonSwerveEnclosure swerveEnclosureFront;
-	private CanTalonSwerveEnclosure swerveEnclosureBack;
-	private SwerveDrive swerveDrive;
+	// Module order everywhere: FL, FR, BR, BL, F, B (see DriveConstants)
+	private static final String[] MODULE_NAMES = DriveConstants.getModuleNames();
+	private static final String[] ENCLOSURE_NAMES = { "enc NW", "enc NE", "enc SE", "enc SW", "enc N", "enc S" };
 
-	public static final double GEAR_RATIO = (1024d);
-	private static final double L_Default = 18;
-	private static final double W_Default = 31.18;
-	private static final double L_Plus = 25.5;
-	private static final double W_Plus = 25.5;
+	private CanTalonSwerveEnclosure[] enclosures;
+	private SwerveDrive swerveDrive;
 
-	private static final double P = 10.0;
+	// The layout, speed and loop period are in DriveConstants
+
+	// Distance per drive encoder count, in inches. Assumes 4 in. wheels and a 4096 count/rev encoder.
+	private static final double DRIVE_INCHES_PER_COUNT = (4 * Math.PI) / 4096;
+	// Drive wheels run a closed velocity loop with a per-module feedforward, MAX_SPEED being full output, instead of
+	// open loop. On if this is set, or if CHARACTERIZATION_FILE sets drive.velocityMode=true; the measured feedforward
+	// replaces the defaults below where there is one. Check the drive sensor phase (RobotMap) before turning it on.
+	private static final boolean USE_VELOCITY_DRIVE = false;
+	// Drive velocity loop gains (slot 0). The feedforward is sent with every setpoint, so kF stays 0.
+	private static final double DRIVE_P = 0.1;
+	private static final double DRIVE_I = 0.0;
+	private static final double DRIVE_D = 0.0;
+	// Drive feedforward per module (FL, FR, BR, BL, F, B): kS in volts, kV in volts per in/s, kA in volts per in/s^2.
+	// Until measured, every module gets the nominal voltage at MAX_SPEED.
+	private static final double[][] DRIVE_FEEDFORWARD = {
+		{ 0.5, 0.0767, 0.01 }, { 0.5, 0.0767, 0.01 }, { 0.5, 0.0767, 0.01 },
+		{ 0.5, 0.0767, 0.01 }, { 0.5, 0.0767, 0.01 }, { 0.5, 0.0767, 0.01 }
+	};
+	private static final double ODOMETRY_PERIOD = 0.005;
+	// Keep one second of odometry for fusing late measurements
+	private static final int ODOMETRY_HISTORY = 200;
+	// Module sensors are read and motor commands flushed on their own thread at this rate
+	private static final boolean USE_IO_THREAD = true;
+	private static final double IO_PERIOD = 0.005;
+	// Drive control runs on its own thread at this rate; commands only publish setpoints. The loop then also does the
+	// module I/O right after each move, instead of the I/O thread.
+	private static final boolean USE_DRIVE_LOOP = true;
+	// Every drive cycle is recorded to deploy/log. A record is 44 doubles (352 bytes), so a 16MB file lasts about 4
+	// minutes at 200Hz. 4 files (64MB) are kept, one of them the empty next file: the last 12 to 16 minutes.
+	private static final boolean RECORD_DRIVE = true;
+	private static final long RECORDER_FILE_BYTES = 16L << 20;
+	private static final int RECORDER_MAX_FILES = 4;
+
+	// The gyro drift measured while disabled is kept here between boots
+	private static final String GYRO_BIAS_FILE = "gyro-bias.properties";
+	// The constants measured by CharacterizeDrivetrain are kept here, and override the defaults above
+	private static final String CHARACTERIZATION_FILE = "drive-characterization.properties";
+	// Drive speed used to point the wheels forward before characterizing; too small to move them
+	private static final double ALIGN_SPEED = 1e-6;
+	// How long to wait for the drive loop or I/O thread to let go of the modules, in seconds
+	private static final double THREAD_STOP_TIMEOUT = 0.1;
+	// The gyro is sampled on its own thread at this rate
+	private static final double GYRO_PERIOD = 0.002;
+	// The drive loop rotates field-centric commands by the heading predicted this far ahead: its outputs go out at the
+	// end of the cycle and take about one more period to reach the wheels
+	private static final double HEADING_LOOKAHEAD = 2 * DriveConstants.DRIVE_LOOP_PERIOD;
+
+	// Steer position loop gains (slot 0, Talon units), until measured; P and D are in DriveConstants
 	private static final double I = 0.0;
-	private static final double D = 0.0;
 	private static final double F = 0.0;
-
-	private WPI_TalonSRX driveMotorFrontleft;
-	private WPI_TalonSRX driveMotorFrontright;
-	private WPI_TalonSRX driveMotorBackright;
-	private WPI_TalonSRX driveMotorBackleft;
-
-	private WPI_TalonSRX driveMotorFront;
-	private WPI_TalonSRX driveMotorBack;
-
-	private WPI_TalonSRX steerMotorFrontleft;
-	private WPI_TalonSRX steerMotorFrontright;
-	private WPI_TalonSRX steerMotorBackright;
-	private WPI_TalonSRX steerMotorBackleft;
-
-	private WPI_TalonSRX steerMotorFront;
-	private WPI_TalonSRX steerMotorBack;
-
-	double[] wheelAngles = new double[6];
-
-	private Gyro gyro = new ADXRS450_Gyro();
+	// Steer setpoints move along a trapezoidal profile (DriveConstants) instead of jumping to the new angle. The
+	// measured steer feedforward, if there is one, is sent along with them. Off: it removes the overshoot and settles
+	// faster, but the robot drifts further off course while the wheels turn, with or without cosine scaling (see
+	// SteerResponse).
+	public static final boolean USE_STEER_PROFILE = false;
+	// Drive speed is scaled by the cosine of each wheel's remaining steer error
+	public static final boolean USE_COSINE_SCALING = true;
+	// Every chassis command is limited to what the wheels can reach in one cycle: turning at the steer cruise velocity
+	// and accelerating at DriveConstants.MAX_DRIVE_ACCELERATION. Off until those limits come from a characterization
+	// (CharacterizeDrivetrain); with guessed limits it only changes every teleop command (see WheelDisagreement).
+	private static final boolean USE_SETPOINT_GENERATOR = false;
+
+	// Timeout for each blocking configuration call. The controllers are configured concurrently.
+	private static final int CONFIG_TIMEOUT_MS = 30;
+
+	private WPI_TalonSRX[] driveMotors;
+	private WPI_TalonSRX[] steerMotors;
+	private ConfigurableController[] steerControllers;
+	private final ControllerConfigurator configurator = new ControllerConfigurator(CONFIG_TIMEOUT_MS);
+
+	private SwerveDriveLoop driveLoop;
+	// The I/O thread was stopped for characterization and has to be restarted
+	private boolean ioThreadPaused = false;
+	private FlightRecorder recorder;
+
+	// Runs in periodic() when there is no drive loop
+	private ChassisController controller;
+	private final double[] controllerCommand = new double[3];
+
+	private SwerveOdometry odometry;
+	private FixedRateThread odometryThread;
+	// Only used by the odometry thread
+	private final double[] measuredAngles = new double[6];
+	private final double[] measuredSpeeds = new double[6];
+
+	private GyroCalibrator gyro;
+	private GyroService gyroService;
 	private CentricMode centricMode = CentricMode.ROBOT;
 	private boolean SouthIsFront = false;
 
@@ -93,159 +173,450 @@ public class Drivetrain extends Subsystem {
 	}
 
 	public void init() {
-		
-		driveMotorFrontleft = new WPI_TalonSRX(RobotMap.Frontleft);
-		driveMotorFrontright = new WPI_TalonSRX(RobotMap.Frontright);
-		driveMotorBackright = new WPI_TalonSRX(RobotMap.Backright);
-		driveMotorBackleft = new WPI_TalonSRX(RobotMap.Backleft);
-		driveMotorFront = new WPI_TalonSRX(RobotMap.Front);
-		driveMotorBack = new WPI_TalonSRX(RobotMap.Back);
-
-		driveMotorFrontleft.setInverted(RobotMap.FrontleftI);
-		driveMotorFrontright.setInverted(RobotMap.FrontrightI);
-		driveMotorBackright.setInverted(RobotMap.BackrightI);
-		driveMotorBackleft.setInverted(RobotMap.BackleftI);
-		driveMotorFront.setInverted(RobotMap.FrontI);
-		driveMotorBack.setInverted(RobotMap.BackI);
-
-		driveMotorFrontleft.setNeutralMode(NeutralMode.Brake);
-		driveMotorFrontright.setNeutralMode(NeutralMode.Brake);
-		driveMotorBackright.setNeutralMode(NeutralMode.Brake);
-		driveMotorBackleft.setNeutralMode(NeutralMode.Brake);
-		driveMotorFront.setNeutralMode(NeutralMode.Brake);
-		driveMotorBack.setNeutralMode(NeutralMode.Brake);
-
-		steerMotorFrontleft = new WPI_TalonSRX(RobotMap.FrontleftS);
-		steerMotorFrontright = new WPI_TalonSRX(RobotMap.FrontrightS);
-		steerMotorBackright = new WPI_TalonSRX(RobotMap.BackrightS);
-		steerMotorBackleft = new WPI_TalonSRX(RobotMap.BackleftS);
-		steerMotorFront = new WPI_TalonSRX(RobotMap.FrontS); 
-		steerMotorBack = new WPI_TalonSRX(RobotMap.BackS);
-
-		steerMotorFrontleft.setInverted(RobotMap.FrontleftSI);
-		steerMotorFrontright.setInverted(RobotMap.FrontrightSI);
-		steerMotorBackright.setInverted(RobotMap.BackrightSI);
-		steerMotorBackleft.setInverted(RobotMap.BackleftSI);
-		steerMotorFront.setInverted(RobotMap.FrontSI);
-		steerMotorBack.setInverted(RobotMap.BackSI);
-
-		steerMotorFrontleft.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-		steerMotorFrontright.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-		steerMotorBackright.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-		steerMotorBackleft.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-		steerMotorFront.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-		steerMotorBack.configSelectedFeedbackSensor(FeedbackDevice.Analog);
-
-		steerMotorFrontleft.selectProfileSlot(0, 0);
-		steerMotorFrontright.selectProfileSlot(0, 0);
-		steerMotorBackright.selectProfileSlot(0, 0);
-		steerMotorBackleft.selectProfileSlot(0, 0);
-		steerMotorFront.selectProfileSlot(0, 0);
-		steerMotorBack.selectProfileSlot(0, 0);
-
-		steerMotorFrontleft.config_kP(0, P);
-		steerMotorFrontright.config_kP(0, P);
-		steerMotorBackright.config_kP(0, P);
-		steerMotorBackleft.config_kP(0, P);
-		steerMotorFront.config_kP(0, P);
-		steerMotorBack.config_kP(0, P);
-		
-		steerMotorFrontleft.config_kI(0, I);
-		steerMotorFrontright.config_kI(0, I);
-		steerMotorBackright.config_kI(0, I);
-		steerMotorBackleft.config_kI(0, I);
-		steerMotorFront.config_kI(0, I);
-		steerMotorBack.config_kI(0, I);
-
-		steerMotorFrontleft.config_kD(0, D);		
-		steerMotorFrontright.config_kD(0, D);
-		steerMotorBackright.config_kD(0, D);
-		steerMotorBackleft.config_kD(0, D);
-
-		steerMotorFront.config_kD(0, D);
-
-		steerMotorBack.config_kD(0, D);
-
-		steerMotorFrontleft.config_kF(0, F);
-		steerMotorFrontright.config_kF(0, F);
-		steerMotorBackright.config_kF(0, F);
-		steerMotorBackleft.config_kF(0, F);
-		steerMotorFront.config_kF(0, F);
-		steerMotorBack.config_kF(0, F);
-
-		swerveEnclosureFrontleft = new CanTalonSwerveEnclosure("enc NW", driveMotorFrontleft, steerMotorFrontleft, GEAR_RATIO);
-		swerveEnclosureFrontright = new CanTalonSwerveEnclosure("enc NE", driveMotorFrontright, steerMotorFrontright, GEAR_RATIO);
-		swerveEnclosureBackright = new CanTalonSwerveEnclosure("enc SE", driveMotorBackright, steerMotorBackright, GEAR_RATIO);
-		swerveEnclosureBackleft = new CanTalonSwerveEnclosure("enc SW", driveMotorBackleft, steerMotorBackleft, GEAR_RATIO);
-		swerveEnclosureFront = new CanTalonSwerveEnclosure("enc N", driveMotorFront, steerMotorFront, GEAR_RATIO);
-		swerveEnclosureBack = new CanTalonSwerveEnclosure("enc S", driveMotorBack, steerMotorBack, GEAR_RATIO);
-
-		swerveEnclosureFrontleft.setReverseSteerMotor(true);
-		swerveEnclosureFrontright.setReverseSteerMotor(true);
-		swerveEnclosureBackright.setReverseSteerMotor(true);
-		swerveEnclosureBackleft.setReverseSteerMotor(true);
-		swerveEnclosureFront.setReverseSteerMotor(true);
-		swerveEnclosureBack.setReverseSteerMotor(true);
-
-		swerveEnclosureFrontleft.setReverseEncoder(true);
-		swerveEnclosureFrontright.setReverseEncoder(true);
-		swerveEnclosureBackright.setReverseEncoder(true);
-		swerveEnclosureBackleft.setReverseEncoder(true);
-		swerveEnclosureFront.setReverseEncoder(true);
-		swerveEnclosureBack.setReverseEncoder(true);
-
-
-		swerveDrive = new SwerveDrive(swerveEnclosureFrontleft, swerveEnclosureFrontright, swerveEnclosureBackright, swerveEnclosureBackleft, swerveEnclosureFront, swerveEnclosureBack, W_Default, L_Default, W_Plus, L_Plus);
+		// The gyro comes up in the background while everything else is configured
+		gyro = new GyroCalibrator(ADXRS450_Gyro::new, new File(Filesystem.getOperatingDirectory(), GYRO_BIAS_FILE),
+				Timer::getFPGATimestamp);
+		gyro.start();
+		gyroService = new GyroService(gyro, GYRO_PERIOD, Timer::getFPGATimestamp);
+		gyroService.start();
+
+		int[] driveIds = { RobotMap.Frontleft, RobotMap.Frontright, RobotMap.Backright, RobotMap.Backleft,
+				RobotMap.Front, RobotMap.Back };
+		boolean[] driveInverted = { RobotMap.FrontleftI, RobotMap.FrontrightI, RobotMap.BackrightI,
+				RobotMap.BackleftI, RobotMap.FrontI, RobotMap.BackI };
+		boolean[] driveSensorPhase = { RobotMap.FrontleftE, RobotMap.FrontrightE, RobotMap.BackrightE,
+				RobotMap.BackleftE, RobotMap.FrontE, RobotMap.BackE };
+		int[] steerIds = { RobotMap.FrontleftS, RobotMap.FrontrightS, RobotMap.BackrightS, RobotMap.BackleftS,
+				RobotMap.FrontS, RobotMap.BackS };
+		boolean[] steerInverted = { RobotMap.FrontleftSI, RobotMap.FrontrightSI, RobotMap.BackrightSI,
+				RobotMap.BackleftSI, RobotMap.FrontSI, RobotMap.BackSI };
+
+		DriveCharacterization characterization = DriveCharacterization.load(getCharacterizationFile(), MODULE_NAMES);
+		boolean velocityDrive = USE_VELOCITY_DRIVE || (characterization != null && characterization.isVelocityDrive());
+		if (characterization != null) {
+			System.out.print("Loaded drive characterization:\n" + characterization);
+		}
+		if (velocityDrive && (characterization == null || !characterization.hasDriveFeedforward())) {
+			System.out.println("Velocity drive with the default feedforward on modules that were not characterized");
+		}
+
+		int modules = MODULE_NAMES.length;
+		driveMotors = new WPI_TalonSRX[modules];
+		steerMotors = new WPI_TalonSRX[modules];
+		steerControllers = new ConfigurableController[modules];
+		enclosures = new CanTalonSwerveEnclosure[modules];
+		ConfigurableController[] controllers = new ConfigurableController[2 * modules];
+		ControllerConfig[] configs = new ControllerConfig[2 * modules];
+
+		for (int i = 0; i < modules; i++) {
+			driveMotors[i] = new WPI_TalonSRX(driveIds[i]);
+			controllers[i] = new TalonController("drive " + MODULE_NAMES[i], driveMotors[i]);
+			configs[i] = new ControllerConfig(driveInverted[i]);
+			configs[i].setNeutralMode(NeutralMode.Brake);
+			configs[i].setSensorPhase(driveSensorPhase[i]);
+			if (velocityDrive) {
+				configs[i].setFeedbackDevice(FeedbackDevice.QuadEncoder);
+				configs[i].setGains(0, DRIVE_P, DRIVE_I, DRIVE_D, 0);
+				configs[i].setVoltageCompensation(DriveConstants.NOMINAL_VOLTAGE);
+			}
+
+			steerMotors[i] = new WPI_TalonSRX(steerIds[i]);
+			steerControllers[i] = new TalonController("steer " + MODULE_NAMES[i], steerMotors[i]);
+			controllers[modules + i] = steerControllers[i];
+			configs[modules + i] = new ControllerConfig(steerInverted[i]);
+			configs[modules + i].setFeedbackDevice(FeedbackDevice.Analog);
+			if (characterization != null && !Double.isNaN(characterization.getSteerP(i))) {
+				configs[modules + i].setGains(0, characterization.getSteerP(i), 0, characterization.getSteerD(i), 0);
+				configs[modules + i].setVoltageCompensation(DriveConstants.NOMINAL_VOLTAGE);
+			} else {
+				configs[modules + i].setGains(0, DriveConstants.STEER_P, I, DriveConstants.STEER_D, F);
+			}
+
+			enclosures[i] = new CanTalonSwerveEnclosure(ENCLOSURE_NAMES[i], driveMotors[i], steerMotors[i],
+					DriveConstants.GEAR_RATIO);
+			enclosures[i].setReverseSteerMotor(true);
+			enclosures[i].setReverseEncoder(true);
+			enclosures[i].setDriveDistancePerCount(DRIVE_INCHES_PER_COUNT);
+			if (velocityDrive) {
+				DriveFeedforward feedforward = characterization != null
+						? characterization.getDriveFeedforward(i)
+						: null;
+				if (feedforward == null) {
+					double[] defaults = DRIVE_FEEDFORWARD[i];
+					feedforward = new DriveFeedforward(defaults[0], defaults[1], defaults[2]);
+				}
+				enclosures[i].setVelocityMode(DriveConstants.MAX_SPEED, DriveConstants.MAX_DRIVE_ACCELERATION,
+						DriveConstants.NOMINAL_VOLTAGE, feedforward);
+			}
+			if (USE_STEER_PROFILE) {
+				enclosures[i].setSteerProfile(new SteerProfile(DriveConstants.STEER_CRUISE_VELOCITY,
+						DriveConstants.STEER_ACCELERATION, Timer::getFPGATimestamp));
+				if (characterization != null && !Double.isNaN(characterization.getSteerP(i))) {
+					enclosures[i].setSteerFeedforward(characterization.getSteerFeedforward(i),
+							DriveConstants.NOMINAL_VOLTAGE);
+				}
+			}
+			enclosures[i].setCosineScaling(USE_COSINE_SCALING);
+		}
+		System.out.println("Configured drivetrain: " + configurator.configure(controllers, configs));
+
+		swerveDrive = new SwerveDrive(enclosures[0], enclosures[1], enclosures[2], enclosures[3], enclosures[4], enclosures[5],
+				DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.W_Plus, DriveConstants.L_Plus);
 		swerveDrive.setCentricMode(centricMode);
+		if (USE_SETPOINT_GENERATOR) {
+			double period = USE_DRIVE_LOOP ? DriveConstants.DRIVE_LOOP_PERIOD : TimedRobot.kDefaultPeriod;
+			swerveDrive.setSetpointGenerator(new SetpointGenerator(swerveDrive.getKinematics(), period,
+					DriveConstants.STEER_CRUISE_VELOCITY,
+					DriveConstants.MAX_DRIVE_ACCELERATION / DriveConstants.MAX_SPEED));
+		}
 
 		resetEncoders();
-		calibrateGyro();
+
+		if (RECORD_DRIVE) {
+			recorder = new FlightRecorder(new File(Filesystem.getDeployDirectory(), "log"), "drive",
+					DriveCycleRecord.fieldNames(), RECORDER_FILE_BYTES, RECORDER_MAX_FILES);
+			swerveDrive.setRecorder(recorder);
+		}
+
+		if (USE_DRIVE_LOOP) {
+			swerveDrive.setIoMode(true);
+			driveLoop = new SwerveDriveLoop(swerveDrive, DriveConstants.DRIVE_LOOP_PERIOD, gyroService,
+					HEADING_LOOKAHEAD, Timer::getFPGATimestamp);
+			driveLoop.start();
+		} else if (USE_IO_THREAD) {
+			swerveDrive.getModuleIO().start(IO_PERIOD);
+			swerveDrive.setIoMode(true);
+		}
+
+		odometry = new SwerveOdometry(swerveDrive.getKinematics(), ODOMETRY_HISTORY);
+		odometryThread = new FixedRateThread("Odometry", ODOMETRY_PERIOD, this::updateOdometry);
+		odometryThread.start();
 	}
 	
-	public void drive(double fwd, double strafe, double rotateCW) {
-		if (centricMode == CentricMode.ROBOT) {
-			if (SouthIsFront) {
-				swerveDrive.move(fwd, strafe, rotateCW, getHeading());
-			} else {
-				swerveDrive.move(-fwd, -strafe, rotateCW, getHeading());
+	/**
+	 * Samples every drivetrain sensor once per loop, before the commands run, and runs the chassis controller if
+	 * there is one. The drive loop does both itself.
+	 */
+	@Override
+	public void periodic() {
+		if (swerveDrive != null && driveLoop == null) {
+			double now = Timer.getFPGATimestamp();
+			double heading = getHeading();
+			swerveDrive.sampleSensors(heading, now);
+			if (controller != null) {
+				if (controller.calculate(now, controllerCommand)) {
+					swerveDrive.move(controllerCommand[0], controllerCommand[1], controllerCommand[2], heading);
+				} else {
+					controller = null;
+					swerveDrive.stop();
+				}
 			}
+		}
+	}
+
+	/**
+	 * Lets a controller (e.g. a trajectory follower) drive the robot every cycle, field-centric in the drivers' frame
+	 * (see {@link #getPose}): +x drives the same way as the stick pushed forward in field-centric mode. It runs on the
+	 * drive loop when there is one, otherwise in {@link #periodic()}. The drive stops when the controller is done.
+	 * @param controller the controller, or null to go back to commands
+	 */
+	public void setController(ChassisController controller) {
+		// The same half turn drive() applies to the sticks
+		ChassisController driven = controller == null ? null : (time, command) -> {
+			if (!controller.calculate(time, command)) {
+				return false;
+			}
+			command[0] = -command[0];
+			command[1] = -command[1];
+			return true;
+		};
+		if (driveLoop != null) {
+			driveLoop.setController(driven);
 		} else {
-			swerveDrive.move(-fwd, -strafe, rotateCW, getHeading());
+			this.controller = driven;
 		}
 	}
 
-	public double[] getWheelAngles() {
-		wheelAngles[0] = steerMotorFrontleft.getSelectedSensorPosition();
-		wheelAngles[1] = steerMotorFrontright.getSelectedSensorPosition();
-		wheelAngles[2] = steerMotorBackright.getSelectedSensorPosition();
-		wheelAngles[3] = steerMotorBackleft.getSelectedSensorPosition();
-		wheelAngles[4] = steerMotorFront.getSelectedSensorPosition();
-		wheelAngles[5] = steerMotorBack .getSelectedSensorPosition();
-		return wheelAngles;
+	public void drive(double fwd, double strafe, double rotateCW) {
+		if (centricMode == CentricMode.ROBOT && SouthIsFront) {
+			move(fwd, strafe, rotateCW);
+		} else {
+			move(-fwd, -strafe, rotateCW);
+		}
 	}
 
+	/**
+	 * Hands the command to the drive loop if it is running, otherwise moves the drive directly.
+	 */
+	private void move(double fwd, double strafe, double rotateCW) {
+		if (driveLoop != null) {
+			driveLoop.setSetpoint(fwd, strafe, rotateCW);
+		} else {
+			swerveDrive.move(fwd, strafe, rotateCW, swerveDrive.getSensorSnapshot().getHeading());
+		}
+	}
+
+	/**
+	 * Stops all the wheels.
+	 */
+	public void stop() {
+		if (driveLoop != null) {
+			driveLoop.stopDrive();
+		} else {
+			swerveDrive.stop();
+		}
+	}
+
+	/**
+	 * Sets up the characterization tests on the drive and steer motors. The drive loop (or I/O thread) is paused so the
+	 * tests own the modules, the drive is stopped and the wheels pointed forward. Call {@link #endCharacterization()}
+	 * once the tests are done or cancelled. The constants take effect at the next boot: see
+	 * {@link #saveCharacterization}.
+	 */
+	public Characterizer createCharacterizer() {
+		pauseDriveThreads();
+		for (CanTalonSwerveEnclosure enclosure : enclosures) {
+			enclosure.stop();
+		}
+		int modules = MODULE_NAMES.length;
+		Characterizer.Motor[] drive = new Characterizer.Motor[modules];
+		Characterizer.Motor[] steer = new Characterizer.Motor[modules];
+		for (int i = 0; i < modules; i++) {
+			CanTalonSwerveEnclosure enclosure = enclosures[i];
+			WPI_TalonSRX driveMotor = driveMotors[i];
+			// A wheel the enclosure turned around instead of steering through half a turn drives backward. The
+			// steer profile and cosine scaling are off for this, so the angle is the final one and the speed keeps
+			// its sign.
+			SteerProfile profile = enclosure.getSteerProfile();
+			enclosure.setSteerProfile(null);
+			enclosure.setCosineScaling(false);
+			enclosure.move(ALIGN_SPEED, 0);
+			enclosure.setSteerProfile(profile);
+			enclosure.setCosineScaling(USE_COSINE_SCALING);
+			double direction = Math.signum(enclosure.getLastSpeed());
+			double angle = enclosure.getLastAngle();
+
+			drive[i] = new TalonCharacterizationMotor(driveMotor, DriveConstants.NOMINAL_VOLTAGE, direction,
+					10 * DRIVE_INCHES_PER_COUNT, () -> driveMotor.set(ControlMode.PercentOutput, 0), enclosure::stop);
+			steer[i] = new TalonCharacterizationMotor(steerMotors[i], DriveConstants.NOMINAL_VOLTAGE, 1,
+					10 / DriveConstants.GEAR_RATIO, () -> enclosure.setAngle(angle), enclosure::stop);
+		}
+		return new Characterizer(drive, steer, DriveConstants.DRIVE_LOOP_PERIOD, Timer::getFPGATimestamp);
+	}
+
+	/**
+	 * Gives the modules back to the drive loop (or I/O thread) after the characterization tests, stopped.
+	 */
+	public void endCharacterization() {
+		for (CanTalonSwerveEnclosure enclosure : enclosures) {
+			enclosure.stop();
+		}
+		if (driveLoop != null) {
+			driveLoop.start();
+		} else if (ioThreadPaused) {
+			swerveDrive.getModuleIO().start(IO_PERIOD);
+		}
+		ioThreadPaused = false;
+	}
+
+	/**
+	 * Stops whichever thread drives the modules and waits until it has let go of them.
+	 */
+	private void pauseDriveThreads() {
+		if (driveLoop != null) {
+			if (!driveLoop.stopAndWait(THREAD_STOP_TIMEOUT)) {
+				System.out.println("Drive loop did not stop in time");
+			}
+		} else if (swerveDrive.getModuleIO().isRunning()) {
+			ioThreadPaused = true;
+			if (!swerveDrive.getModuleIO().stopAndWait(THREAD_STOP_TIMEOUT)) {
+				System.out.println("Swerve I/O thread did not stop in time");
+			}
+		}
+	}
+
+	/**
+	 * Saves measured constants for the next boot. Whether they turn on the velocity drive stays as it was.
+	 */
+	public void saveCharacterization(DriveCharacterization characterization) throws IOException {
+		characterization.keepSettings(getCharacterizationFile());
+		characterization.save(getCharacterizationFile());
+	}
+
+	private static File getCharacterizationFile() {
+		return new File(Filesystem.getOperatingDirectory(), CHARACTERIZATION_FILE);
+	}
+
+	/**
+	 * @return the flight recorder for the drive cycles, or null if recording is off
+	 */
+	public FlightRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * @return the drive loop, or null if the drive is run by the scheduler
+	 */
+	public SwerveDriveLoop getDriveLoop() {
+		return driveLoop;
+	}
+
+	/**
+	 * Copies the wheel angles from this loop's sensor snapshot (no CAN reads). With the drive loop running the
+	 * snapshot belongs to the loop thread, so these are for display only.
+	 * @param target output wheel angles in degrees (0 to 360 clockwise from forward), one per module
+	 */
+	public void getWheelAngles(double[] target) {
+		SwerveSensorSnapshot snapshot = swerveDrive.getSensorSnapshot();
+		for (int i = 0; i < snapshot.getModuleCount(); i++) {
+			double angle = SwerveUtils.convertEncoderValue(snapshot.getSteerPosition(i), DriveConstants.GEAR_RATIO)
+					* 360;
+			target[i] = angle < 0 ? angle + 360 : angle;
+		}
+	}
+
+	/**
+	 * Copies the wheel velocities from this loop's sensor snapshot, like {@link #getWheelAngles(double[])}.
+	 * @param target output velocities in inches per second, one per module
+	 */
+	public void getWheelVelocities(double[] target) {
+		SwerveSensorSnapshot snapshot = swerveDrive.getSensorSnapshot();
+		for (int i = 0; i < snapshot.getModuleCount(); i++) {
+			target[i] = snapshot.getDriveVelocity(i);
+		}
+	}
+
+	/**
+	 * @return the number of control frames sent to the drivetrain Talons
+	 */
+	public long getFramesSent() {
+		long frames = 0;
+		for (CanTalonSwerveEnclosure enclosure : enclosures) {
+			frames += enclosure.getFramesSent();
+		}
+		return frames;
+	}
+
+	/**
+	 * @return the number of drivetrain control frames skipped because the output had not changed
+	 */
+	public long getFramesSuppressed() {
+		long frames = 0;
+		for (CanTalonSwerveEnclosure enclosure : enclosures) {
+			frames += enclosure.getFramesSuppressed();
+		}
+		return frames;
+	}
+
+	/**
+	 * @return the number of drivetrain sensor reads in the last loop
+	 */
+	public int getSensorReadsPerCycle() {
+		return swerveDrive.getSensorSnapshot().getReadsPerCycle();
+	}
+
+	/**
+	 * Runs on the odometry thread: samples the modules and the gyro and integrates one step.
+	 */
+	private void updateOdometry() {
+		swerveDrive.getModuleStates(measuredAngles, measuredSpeeds);
+		odometry.update(Timer.getFPGATimestamp(), gyroService.getAngle(), measuredAngles, measuredSpeeds);
+	}
+
+	/**
+	 * Copies the latest field position without blocking. Index it with the SwerveOdometry constants.
+	 *
+	 * Poses here are in the drivers' frame, the one trajectories are planned in: x is where the stick pushed forward
+	 * drives in field-centric mode (downfield), y is to its right and the heading is the gyro's. The SwerveDrive and
+	 * its odometry work in the frame of the robot's north side, half a turn from it, so x and y change sign between
+	 * the two and headings do not.
+	 * @param target at least SwerveOdometry.POSE_SIZE long
+	 */
+	public void getPose(double[] target) {
+		odometry.getPose(target);
+		toDriverFrame(target);
+	}
+
+	/**
+	 * Moves the robot to a position in the drivers' frame (see {@link #getPose}), keeping its heading.
+	 */
+	public void resetPose(double x, double y) {
+		odometry.resetPosition(-x, -y);
+	}
+
+	private static void toDriverFrame(double[] pose) {
+		pose[SwerveOdometry.X] = -pose[SwerveOdometry.X];
+		pose[SwerveOdometry.Y] = -pose[SwerveOdometry.Y];
+	}
+
+	/**
+	 * Looks up where the robot was at a past FPGA time, in the drivers' frame (see {@link #getPose}).
+	 * @param target output, at least 3 long: x, y and heading
+	 * @return false if the time is older than the odometry history
+	 */
+	public boolean getPoseAt(double timestamp, double[] target) {
+		if (!odometry.getPoseAt(timestamp, target)) {
+			return false;
+		}
+		toDriverFrame(target);
+		return true;
+	}
+
+	/**
+	 * Fuses a late measurement (e.g. a vision fix) by rewinding odometry to when it was taken and replaying since. The
+	 * position is in the drivers' frame (see {@link #getPose}).
+	 * @param timestamp the FPGA time the measurement was taken
+	 * @param weight how much to trust the measurement, 0 to 1
+	 * @return false if the measurement is older than the odometry history
+	 */
+	public boolean addVisionMeasurement(double timestamp, double x, double y, double heading, double weight) {
+		return odometry.addMeasurement(timestamp, -x, -y, heading, weight);
+	}
+
+	public SwerveOdometry getOdometry() {
+		return odometry;
+	}
+
+	/**
+	 * @return the latest heading from the gyro thread, in degrees. Never blocks.
+	 */
 	public double getHeading() {
-		return gyro.getAngle() % 360;
+		return gyroService.getHeading();
+	}
+
+	public GyroService getGyroService() {
+		return gyroService;
+	}
+
+	/**
+	 * @return true if the heading can be used for field-centric driving: the gyro is up and its drift has been measured
+	 *         since boot
+	 */
+	public boolean isHeadingTrusted() {
+		return gyro.isHeadingTrusted();
+	}
+
+	/**
+	 * Measures the gyro drift in the background while on. Only turn it on while the robot stands still (disabled).
+	 */
+	public void setGyroCalibrating(boolean calibrating) {
+		gyro.setCalibrating(calibrating);
 	}
 
-	public void calibrateGyro() {
-		System.out.println("Calibrating the gyro...");
-		gyro.calibrate();
-		System.out.println("Done calibrating the gyro.");
+	public GyroCalibrator getGyro() {
+		return gyro;
 	}
 
 	public void initDefaultCommand() {
 		setDefaultCommand(new TeleDrive(this));
 	}
 
+	/**
+	 * Zeroes every steer encoder, all at the same time.
+	 */
 	public void resetEncoders() {
-		swerveEnclosureFrontleft.setEncPosition(0);
-		swerveEnclosureFrontright.setEncPosition(0);
-		swerveEnclosureBackright.setEncPosition(0);
-		swerveEnclosureBackleft.setEncPosition(0);
-		swerveEnclosureFront.setEncPosition(0);
-		swerveEnclosureBack.setEncPosition(0);
-		System.out.println("Drivetrain encoders have been reset.");
+		System.out.println("Drivetrain encoders have been reset: "
+				+ configurator.setSensorPositions(steerControllers, 0));
 	}
 
 	public void setCentricMode(CentricMode mode) {
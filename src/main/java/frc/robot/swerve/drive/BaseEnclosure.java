@@ -4,6 +4,8 @@ package frc.robot.swerve.drive;
  * Base class for enclosure. Implements common behavior that helps with the robot driving:
  * - Move method that takes into account current position and optimizes the movement to reduce angle rotation
  * - Allows the wheel to make full rotation (when reaching full rotation don't go back to 0, rather keep rotation in same direction)
+ * - Optionally moves the steer setpoint along a {@link SteerProfile} instead of jumping to the new angle, and scales the
+ *   drive speed by the cosine of the remaining steer error, so a wheel that is still turning does not push sideways
  * This class uses abstract lower-level implementations of setSpeed and setAngle to be implemented by hardware-specific sub-classes
  */
 public abstract class BaseEnclosure implements SwerveEnclosure {
@@ -11,6 +13,15 @@ public abstract class BaseEnclosure implements SwerveEnclosure {
     private String name;
     protected double gearRatio;
 
+    // What the last move did, for logging
+    private int lastEncPosition = 0;
+    private double lastSpeed = Double.NaN;
+    private double lastAngle = Double.NaN;
+    private double lastTarget = Double.NaN;
+
+    private SteerProfile steerProfile = null;
+    private boolean cosineScaling = false;
+
     public BaseEnclosure(String name, double gearRatio) {
         this.name = name;
         this.gearRatio = gearRatio;
@@ -23,7 +34,16 @@ public abstract class BaseEnclosure implements SwerveEnclosure {
      */
     public void move(double speed, double angle)
 	{
-		int encPosition = getEncPosition();
+		move(speed, angle, getEncPosition());
+	}
+
+    /**
+     * @param speed: the speed to move the wheel, -1.0 being full backwards, 0 being stop +1.0 being full forward
+     * @param angle: the angle to turn the wheel, 0 being forward, -1.0 being full turn counterclockwise, +1.0 being full turn clockwise
+     * @param encPosition: the value of the angle encoder, already read this cycle
+     */
+    public void move(double speed, double angle, int encPosition)
+	{
 		angle = convertAngle(angle, encPosition);
 		
 		if(shouldReverse(angle, encPosition))
@@ -35,21 +55,106 @@ public abstract class BaseEnclosure implements SwerveEnclosure {
 			
 			speed *= -1.0;
 		}
+
+		// Only a stopped wheel keeps its angle, not one held back by the cosine
+		boolean turn = speed != 0.0;
+		if (cosineScaling) {
+			speed *= Math.max(0, Math.cos(2 * Math.PI * (angle - encPosition / gearRatio)));
+		}
 		
 		setSpeed(speed);
+		lastEncPosition = encPosition;
+		lastSpeed = speed;
 		
-		if(speed != 0.0) {
+		if (turn && steerProfile != null) {
+			lastTarget = angle;
+			angle = steerProfile.calculate(angle, encPosition / gearRatio);
+			setAngle(angle, steerProfile.getVelocity(), steerProfile.getAcceleration());
+			lastAngle = angle;
+		} else if (turn) {
 			setAngle(angle); 
+			lastTarget = angle;
+			lastAngle = angle;
 		}
 	}
+
+    /**
+     * Moves the steer setpoint along a profile instead of straight to the new angle.
+     * @param steerProfile the profile, or null to send the angle right away
+     */
+    public void setSteerProfile(SteerProfile steerProfile) {
+        this.steerProfile = steerProfile;
+    }
+
+    public SteerProfile getSteerProfile() {
+        return steerProfile;
+    }
+
+    @Override
+    public boolean isSteerProfiled() {
+        return steerProfile != null;
+    }
+
+    /**
+     * Restarts the steer profile from the measured angle, e.g. after stopping. Does nothing without a profile.
+     */
+    protected void resetSteerProfile() {
+        if (steerProfile != null) {
+            steerProfile.reset();
+        }
+    }
+
+    /**
+     * @param cosineScaling true to scale the drive speed by the cosine of the difference between the wheel angle and
+     *                      its target, so the wheel only pushes as far as it points the right way
+     */
+    public void setCosineScaling(boolean cosineScaling) {
+        this.cosineScaling = cosineScaling;
+    }
+
+    @Override
+    public boolean isCosineScaling() {
+        return cosineScaling;
+    }
+
     public String getName() {
         return name;
     }
 
+    @Override
+    public int getLastEncPosition() {
+        return lastEncPosition;
+    }
+
+    @Override
+    public double getLastSpeed() {
+        return lastSpeed;
+    }
+
+    @Override
+    public double getLastAngle() {
+        return lastAngle;
+    }
+
+    @Override
+    public double getLastTarget() {
+        return lastTarget;
+    }
+
+    @Override
+    public double getCurrentAngle() {
+        return getAngle(getEncPosition());
+    }
+
+    @Override
+    public double getAngle(int encPosition) {
+        return SwerveUtils.convertEncoderValue(encPosition, gearRatio);
+    }
+
     /**
      * @return the value of the angle encoder (used to calculate current wheel position)
      */
-    protected abstract int getEncPosition();
+    public abstract int getEncPosition();
 
     /**
      * Sets the value of the angle encoder (used for aligning wheel in case of drift)
@@ -69,6 +174,17 @@ public abstract class BaseEnclosure implements SwerveEnclosure {
      */
     protected abstract void setAngle(double angle);
 
+    /**
+     * Set the angle for the steer motor, moving along a profile. Enclosures that can feed the motion forward to the steer
+     * motor override this; by default only the angle is sent.
+     * @param angle the angle value, like {@link #setAngle(double)}
+     * @param velocity the velocity of the setpoint, in rotations per second
+     * @param acceleration the acceleration of the setpoint, in rotations per second squared
+     */
+    protected void setAngle(double angle, double velocity, double acceleration) {
+        setAngle(angle);
+    }
+
 
     private boolean shouldReverse(double wa, double encoderValue){
 
@@ -1,12 +1,23 @@
 package frc.robot.swerve.drive;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
 import frc.robot.swerve.drive.BaseEnclosure;
 import frc.robot.swerve.drive.SwerveEnclosure;
 
 /**
  * An implementation of the SwerveEnclosure using CanTalon motors and encoders
+ *
+ * The drive motor runs open loop (percent output) by default. In velocity mode ({@link #setVelocityMode}) the speed
+ * from SwerveMath is a fraction of the max speed instead: the Talon closes the velocity loop on the drive encoder, and
+ * the voltage the wheel needs (from the module's {@link DriveFeedforward}) goes along as an arbitrary feedforward, so
+ * the loop only corrects what the model misses. Wheel speeds then no longer sag with the battery or differ between
+ * modules.
+ *
+ * With a {@link SteerProfile} and a steer feedforward ({@link #setSteerFeedforward}), the voltage for the profile's
+ * velocity and acceleration goes along with every steer setpoint the same way, so the position loop does not lag
+ * behind the moving setpoint.
  */
 public class CanTalonSwerveEnclosure extends BaseEnclosure implements SwerveEnclosure {
 
@@ -16,6 +27,41 @@ public class CanTalonSwerveEnclosure extends BaseEnclosure implements SwerveEncl
 	private boolean reverseEncoder = false;
 	private boolean reverseSteer = false;
 
+	// Distance travelled per drive encoder count
+	private double driveDistancePerCount = 1.0;
+
+	// Write coalescing: a frame is only sent if the value moved by more than the epsilon, or if the last one
+	// was sent longer ago than the refresh interval (which keeps the motor safety watchdog fed)
+	private double speedEpsilon = 1e-4;
+	private double angleEpsilon = 1e-4;
+	private long refreshIntervalNanos = 50_000_000L;
+
+	private double lastSpeed = Double.NaN;
+	private double lastAngle = Double.NaN;
+	private long lastSpeedTime;
+	private long lastAngleTime;
+
+	// Written by the drive thread only, read by the dashboard
+	private volatile long framesSent = 0;
+	private volatile long framesSuppressed = 0;
+
+	// Velocity mode; open loop if the feedforward is null
+	private DriveFeedforward feedforward = null;
+	private double maxSpeed;
+	private double maxAcceleration;
+	private double nominalVoltage;
+	private double lastVelocity = 0;
+	private long lastVelocityTime;
+	private double lastFeedforward = Double.NaN;
+
+	// Steer feedforward for profiled setpoints; none if null
+	private DriveFeedforward steerFeedforward = null;
+	private double steerNominalVoltage;
+	private double lastSteerFeedforward = Double.NaN;
+
+	// Velocity changes further apart than this (the drive was idle) do not count as acceleration
+	private static final long MAX_ACCELERATION_INTERVAL_NANOS = 100_000_000L;
+
     public CanTalonSwerveEnclosure(String name, WPI_TalonSRX driveMotor, WPI_TalonSRX steerMotor, double gearRatio) {
 
         super(name, gearRatio);
@@ -28,16 +74,101 @@ public class CanTalonSwerveEnclosure extends BaseEnclosure implements SwerveEncl
     public void stop() {
         this.steerMotor.stopMotor();
         this.driveMotor.stopMotor();
+
+        // Make sure the next command goes out no matter what was sent before stopping
+        lastSpeed = Double.NaN;
+        lastAngle = Double.NaN;
+        lastFeedforward = Double.NaN;
+        lastSteerFeedforward = Double.NaN;
+        lastVelocity = 0;
+        resetSteerProfile();
     }
 
     @Override
     public void setSpeed(double speed) {
+        long now = System.nanoTime();
+        if (feedforward != null) {
+            setVelocity(speed, now);
+            return;
+        }
+        if (Math.abs(speed - lastSpeed) <= speedEpsilon && now - lastSpeedTime < refreshIntervalNanos) {
+            framesSuppressed++;
+            return;
+        }
+
     	driveMotor.set(ControlMode.PercentOutput, speed);
+        lastSpeed = speed;
+        lastSpeedTime = now;
+        framesSent++;
+    }
+
+    /**
+     * Sends a closed loop velocity, with the feedforward for it and for the change since the last one.
+     */
+    private void setVelocity(double speed, long now) {
+        double velocity = speed * maxSpeed;
+        double acceleration = 0;
+        long interval = now - lastVelocityTime;
+        // A wheel told to stop gets no feedforward at all; the loop brings it to rest
+        if (velocity != 0 && interval > 0 && interval < MAX_ACCELERATION_INTERVAL_NANOS) {
+            acceleration = (velocity - lastVelocity) / (interval / 1e9);
+            // A wheel reversing direction would otherwise ask for a huge spike
+            acceleration = Math.max(-maxAcceleration, Math.min(maxAcceleration, acceleration));
+        }
+        lastVelocity = velocity;
+        lastVelocityTime = now;
+
+        double arbitrary = feedforward.calculate(velocity, acceleration) / nominalVoltage;
+        if (Math.abs(speed - lastSpeed) <= speedEpsilon && Math.abs(arbitrary - lastFeedforward) <= speedEpsilon
+                && now - lastSpeedTime < refreshIntervalNanos) {
+            framesSuppressed++;
+            return;
+        }
+
+        // The Talon takes velocities in counts per 100ms
+        driveMotor.set(ControlMode.Velocity, velocity / driveDistancePerCount / 10, DemandType.ArbitraryFeedForward,
+                arbitrary);
+        lastSpeed = speed;
+        lastFeedforward = arbitrary;
+        lastSpeedTime = now;
+        framesSent++;
     }
 
     @Override
     public void setAngle(double angle) {
+        long now = System.nanoTime();
+        if (Math.abs(angle - lastAngle) <= angleEpsilon && now - lastAngleTime < refreshIntervalNanos) {
+            framesSuppressed++;
+            return;
+        }
+
     	steerMotor.set(ControlMode.Position, (reverseSteer ? -1 : 1) * angle * gearRatio);
+        lastAngle = angle;
+        lastSteerFeedforward = Double.NaN;
+        lastAngleTime = now;
+        framesSent++;
+    }
+
+    @Override
+    protected void setAngle(double angle, double velocity, double acceleration) {
+        if (steerFeedforward == null) {
+            setAngle(angle);
+            return;
+        }
+        long now = System.nanoTime();
+        int reverse = reverseSteer ? -1 : 1;
+        double arbitrary = reverse * steerFeedforward.calculate(velocity, acceleration) / steerNominalVoltage;
+        if (Math.abs(angle - lastAngle) <= angleEpsilon && Math.abs(arbitrary - lastSteerFeedforward) <= speedEpsilon
+                && now - lastAngleTime < refreshIntervalNanos) {
+            framesSuppressed++;
+            return;
+        }
+
+        steerMotor.set(ControlMode.Position, reverse * angle * gearRatio, DemandType.ArbitraryFeedForward, arbitrary);
+        lastAngle = angle;
+        lastSteerFeedforward = arbitrary;
+        lastAngleTime = now;
+        framesSent++;
     }
 
     @Override
@@ -51,6 +182,12 @@ public class CanTalonSwerveEnclosure extends BaseEnclosure implements SwerveEncl
     	steerMotor.setSelectedSensorPosition(position, 0, 10);
     }
 
+    @Override
+    public double getVelocity() {
+        // The Talon reports velocity in counts per 100ms
+        return driveMotor.getSelectedSensorVelocity(0) * 10 * driveDistancePerCount;
+    }
+
     public WPI_TalonSRX getDriveMotor()
 	{
 		return driveMotor;
@@ -74,5 +211,106 @@ public class CanTalonSwerveEnclosure extends BaseEnclosure implements SwerveEncl
 	public void setReverseSteerMotor(boolean reverseSteer)
 	{
 		this.reverseSteer = reverseSteer;
-	}	
+	}
+
+	/**
+	 * @param driveDistancePerCount the distance the wheel travels per drive encoder count, used by {@link #getVelocity()}
+	 */
+	public void setDriveDistancePerCount(double driveDistancePerCount)
+	{
+		this.driveDistancePerCount = driveDistancePerCount;
+	}
+
+	/**
+	 * Runs the drive motor as a closed velocity loop. The drive Talon needs its velocity gains (with kF = 0, the
+	 * feedforward is sent with every setpoint) and voltage compensation at the nominal voltage, and the distance per
+	 * count has to be set.
+	 * @param maxSpeed the wheel velocity for a speed of 1, in distance units per second
+	 * @param maxAcceleration the largest acceleration to feed forward, in distance units per second squared
+	 * @param nominalVoltage the voltage compensation saturation of the drive Talon, in volts
+	 * @param feedforward this module's drive feedforward, in the same distance units
+	 */
+	public void setVelocityMode(double maxSpeed, double maxAcceleration, double nominalVoltage,
+			DriveFeedforward feedforward)
+	{
+		this.maxSpeed = maxSpeed;
+		this.maxAcceleration = maxAcceleration;
+		this.nominalVoltage = nominalVoltage;
+		this.feedforward = feedforward;
+		lastSpeed = Double.NaN;
+		lastFeedforward = Double.NaN;
+	}
+
+	/**
+	 * Goes back to driving open loop, in percent output.
+	 */
+	public void setPercentOutputMode()
+	{
+		feedforward = null;
+		lastSpeed = Double.NaN;
+	}
+
+	public boolean isVelocityMode()
+	{
+		return feedforward != null;
+	}
+
+	/**
+	 * @return this module's drive feedforward, or null if driving open loop
+	 */
+	public DriveFeedforward getFeedforward()
+	{
+		return feedforward;
+	}
+
+	/**
+	 * Feeds the velocity and acceleration of profiled steer setpoints forward to the steer Talon, which needs voltage
+	 * compensation at the nominal voltage. Only used with a {@link SteerProfile}.
+	 * @param feedforward this module's steer feedforward, velocity in rotations per second; null for none
+	 * @param nominalVoltage the voltage compensation saturation of the steer Talon, in volts
+	 */
+	public void setSteerFeedforward(DriveFeedforward feedforward, double nominalVoltage)
+	{
+		this.steerFeedforward = feedforward;
+		this.steerNominalVoltage = nominalVoltage;
+		lastAngle = Double.NaN;
+	}
+
+	/**
+	 * @return this module's steer feedforward, or null if none
+	 */
+	public DriveFeedforward getSteerFeedforward()
+	{
+		return steerFeedforward;
+	}
+
+	/**
+	 * Configures the write coalescing. Set both epsilons to a negative value to send every frame.
+	 * @param speedEpsilon the smallest change in drive output (-1 to 1) worth a new frame
+	 * @param angleEpsilon the smallest change in steer setpoint (rotations) worth a new frame
+	 * @param refreshInterval the longest time, in seconds, between frames even when nothing changes. Keep this below the
+	 *                        motor safety expiration (0.1s by default).
+	 */
+	public void setWriteCoalescing(double speedEpsilon, double angleEpsilon, double refreshInterval)
+	{
+		this.speedEpsilon = speedEpsilon;
+		this.angleEpsilon = angleEpsilon;
+		this.refreshIntervalNanos = (long) (refreshInterval * 1e9);
+	}
+
+	/**
+	 * @return the number of control frames sent to the two Talons
+	 */
+	public long getFramesSent()
+	{
+		return framesSent;
+	}
+
+	/**
+	 * @return the number of control frames skipped because the value had not changed
+	 */
+	public long getFramesSuppressed()
+	{
+		return framesSuppressed;
+	}
 }
@@ -0,0 +1,15 @@
+package frc.robot.swerve.drive;
+
+/**
+ * Calculates the chassis command for every drive cycle by itself, instead of taking setpoints from a command, e.g. to
+ * follow a trajectory. It runs on the drive loop thread at the loop rate when there is a drive loop.
+ */
+public interface ChassisController {
+    /**
+     * Calculates the command for one cycle. Must not block or allocate.
+     * @param time the current time, in seconds
+     * @param command output: fwd, str and rcw, -1 to 1, as for {@link SwerveDrive#move}
+     * @return false when done; the drive is then stopped and the controller dropped
+     */
+    boolean calculate(double time, double[] command);
+}
@@ -0,0 +1,85 @@
+package frc.robot.swerve.drive;
+
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * The layout of one drive control cycle as a fixed-width array of doubles, used by the flight recorder and replay.
+ *
+ * A record holds the inputs to {@link SwerveDrive#move} (the chassis command, gyro heading and centric mode), the
+ * SwerveMath outputs for every module, and what every enclosure did with them: the encoder position it optimized
+ * against, the speed and angle it sent to the motors, and the angle it was heading for before the steer profile. The
+ * steer options the enclosures ran with (cosine scaling and the steer profile; all enclosures are set up alike) come
+ * last. Module blocks are in the same order as the SwerveMath directives.
+ */
+public final class DriveCycleRecord {
+    public static final int MODULES = SwerveMath.MODULE_COUNT;
+
+    public static final int TIMESTAMP = 0;
+    public static final int FWD = 1;
+    public static final int STR = 2;
+    public static final int RCW = 3;
+    public static final int GYRO = 4;
+    // 1 for field-centric, 0 for robot-centric
+    public static final int FIELD_CENTRIC = 5;
+    // Blocks of MODULES values, indexed by module
+    public static final int WHEEL_ANGLE = 6;
+    public static final int WHEEL_SPEED = WHEEL_ANGLE + MODULES;
+    public static final int ENC_POSITION = WHEEL_SPEED + MODULES;
+    public static final int OUTPUT_SPEED = ENC_POSITION + MODULES;
+    public static final int OUTPUT_ANGLE = OUTPUT_SPEED + MODULES;
+    // The steer target before the profile; the same as OUTPUT_ANGLE without one
+    public static final int OUTPUT_TARGET = OUTPUT_ANGLE + MODULES;
+    // 1 if the enclosures scaled the speed by the cosine of the steer error, 0 if not
+    public static final int COSINE_SCALING = OUTPUT_TARGET + MODULES;
+    // 1 if the enclosures moved the steer setpoint along a profile, 0 if not
+    public static final int STEER_PROFILE = COSINE_SCALING + 1;
+    public static final int SIZE = STEER_PROFILE + 1;
+
+    /** The fields up to here are known before the enclosures move. */
+    public static final int COMMAND_SIZE = ENC_POSITION;
+
+    private DriveCycleRecord() {
+    }
+
+    /**
+     * @return the name of every field, e.g. for a CSV header
+     */
+    public static String[] fieldNames() {
+        String[] names = new String[SIZE];
+        names[TIMESTAMP] = "timestamp";
+        names[FWD] = "fwd";
+        names[STR] = "str";
+        names[RCW] = "rcw";
+        names[GYRO] = "gyro";
+        names[FIELD_CENTRIC] = "fieldCentric";
+        for (int i = 0; i < MODULES; i++) {
+            names[WHEEL_ANGLE + i] = "wheelAngle" + i;
+            names[WHEEL_SPEED + i] = "wheelSpeed" + i;
+            names[ENC_POSITION + i] = "encPosition" + i;
+            names[OUTPUT_SPEED + i] = "outputSpeed" + i;
+            names[OUTPUT_ANGLE + i] = "outputAngle" + i;
+            names[OUTPUT_TARGET + i] = "outputTarget" + i;
+        }
+        names[COSINE_SCALING] = "cosineScaling";
+        names[STEER_PROFILE] = "steerProfile";
+        return names;
+    }
+
+    /**
+     * Copies what every enclosure did in its last move, and how it was set up, into the record.
+     */
+    static void fillOutputs(double[] record, SwerveEnclosure[] enclosures) {
+        boolean cosineScaling = false;
+        boolean steerProfile = false;
+        for (int i = 0; i < enclosures.length; i++) {
+            record[ENC_POSITION + i] = enclosures[i].getLastEncPosition();
+            record[OUTPUT_SPEED + i] = enclosures[i].getLastSpeed();
+            record[OUTPUT_ANGLE + i] = enclosures[i].getLastAngle();
+            record[OUTPUT_TARGET + i] = enclosures[i].getLastTarget();
+            cosineScaling |= enclosures[i].isCosineScaling();
+            steerProfile |= enclosures[i].isSteerProfiled();
+        }
+        record[COSINE_SCALING] = cosineScaling ? 1 : 0;
+        record[STEER_PROFILE] = steerProfile ? 1 : 0;
+    }
+}
@@ -0,0 +1,57 @@
+package frc.robot.swerve.drive;
+
+/**
+ * The voltage a drive motor needs to hold a wheel velocity and acceleration:
+ * <pre>
+ * volts = kS * sign(velocity) + kV * velocity + kA * acceleration
+ * </pre>
+ * kS overcomes friction, kV the back EMF, kA the inertia. Every module has its own constants, since worn gearboxes and
+ * tires differ.
+ */
+public class DriveFeedforward {
+    private final double kS;
+    private final double kV;
+    private final double kA;
+
+    /**
+     * @param kS volts to start the wheel moving
+     * @param kV volts per unit of velocity (e.g. inches per second)
+     * @param kA volts per unit of acceleration (e.g. inches per second squared)
+     */
+    public DriveFeedforward(double kS, double kV, double kA) {
+        this.kS = kS;
+        this.kV = kV;
+        this.kA = kA;
+    }
+
+    /**
+     * @return the voltage for the velocity and acceleration
+     */
+    public double calculate(double velocity, double acceleration) {
+        return kS * Math.signum(velocity) + kV * velocity + kA * acceleration;
+    }
+
+    /**
+     * @return the fastest the wheel can go at the given voltage, with no acceleration
+     */
+    public double maxVelocity(double volts) {
+        return Math.max(volts - kS, 0) / kV;
+    }
+
+    public double getS() {
+        return kS;
+    }
+
+    public double getV() {
+        return kV;
+    }
+
+    public double getA() {
+        return kA;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("kS %.4f V, kV %.5f V/(unit/s), kA %.5f V/(unit/s^2)", kS, kV, kA);
+    }
+}
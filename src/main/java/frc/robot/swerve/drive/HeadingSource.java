@@ -0,0 +1,29 @@
+package frc.robot.swerve.drive;
+
+/**
+ * Gives the control loop the robot heading for one cycle, predicted to when that cycle's outputs take effect, with
+ * its sine and cosine calculated once for everything that rotates by it.
+ */
+public interface HeadingSource {
+    // Sample layout
+    /** When the gyro was last sampled, in seconds. */
+    int TIMESTAMP = 0;
+    /** The measured angle at TIMESTAMP, in degrees clockwise, continuous past 360. */
+    int ANGLE = 1;
+    /** The measured turn rate at TIMESTAMP, in degrees per second clockwise. */
+    int RATE = 2;
+    /** The heading predicted for the requested time, in degrees (like the angle, but % 360). */
+    int HEADING = 3;
+    /** The sine of HEADING. */
+    int SIN = 4;
+    /** The cosine of HEADING. */
+    int COS = 5;
+    int SAMPLE_SIZE = 6;
+
+    /**
+     * Fills one heading sample without blocking or allocating.
+     * @param time when the heading will be used, in seconds, e.g. when the motor commands take effect
+     * @param target at least SAMPLE_SIZE long
+     */
+    void sampleHeading(double time, double[] target);
+}
@@ -0,0 +1,112 @@
+package frc.robot.swerve.drive;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A trapezoidal motion profile for one steer motor: instead of jumping to a new wheel angle, the setpoint moves toward
+ * it at no more than the cruise velocity, speeding up and slowing down at the configured acceleration, so the steer
+ * loop never saturates and the wheel arrives without overshooting.
+ *
+ * Every {@link #calculate} advances the profile by the time since the last call. If the profile has not been used for
+ * a while (or after {@link #reset()}) it starts over from the measured angle, at rest. Nothing is allocated.
+ */
+public class SteerProfile {
+    // Calls further apart than this (the wheel was idle) restart the profile from the measured angle
+    private static final double MAX_INTERVAL = 0.1;
+
+    private final double cruiseVelocity;
+    private final double acceleration;
+    private final DoubleSupplier clock;
+
+    private double position;
+    private double velocity;
+    private double lastAcceleration;
+    private double lastTime = Double.NaN;
+
+    /**
+     * @param cruiseVelocity the fastest the setpoint moves, in rotations per second
+     * @param acceleration the fastest the setpoint speeds up or slows down, in rotations per second squared
+     * @param clock the current time in seconds
+     */
+    public SteerProfile(double cruiseVelocity, double acceleration, DoubleSupplier clock) {
+        assert (cruiseVelocity > 0 && acceleration > 0) : "cruise velocity and acceleration have to be larger than 0";
+        this.cruiseVelocity = cruiseVelocity;
+        this.acceleration = acceleration;
+        this.clock = clock;
+    }
+
+    /**
+     * Advances the profile toward the target.
+     * @param target the wheel angle to reach, in rotations (continuous, like the encoder)
+     * @param measured the current wheel angle, in rotations; only used when the profile starts over
+     * @return the setpoint for this cycle, in rotations
+     */
+    public double calculate(double target, double measured) {
+        double now = clock.getAsDouble();
+        double dt = now - lastTime;
+        if (!(dt >= 0 && dt < MAX_INTERVAL)) {
+            position = measured;
+            velocity = 0;
+            lastAcceleration = 0;
+            dt = 0;
+        }
+        lastTime = now;
+        if (dt == 0) {
+            return position;
+        }
+
+        double distance = target - position;
+        double step = acceleration * dt;
+        // The fastest velocity that can still stop at the target, slowing down by one step per cycle
+        double stoppingVelocity = -step / 2 + Math.sqrt(step * step / 4 + 2 * acceleration * Math.abs(distance));
+        double desired = Math.copySign(Math.min(cruiseVelocity, stoppingVelocity), distance);
+        double newVelocity = velocity + Math.max(-step, Math.min(step, desired - velocity));
+
+        position += newVelocity * dt;
+        // Arrived (or would pass the target): stop on it
+        if (Math.signum(target - position) != Math.signum(distance) || Math.abs(newVelocity) <= step
+                && Math.abs(target - position) <= Math.abs(newVelocity) * dt) {
+            position = target;
+            newVelocity = 0;
+        }
+        lastAcceleration = (newVelocity - velocity) / dt;
+        velocity = newVelocity;
+        return position;
+    }
+
+    /**
+     * Starts over from the measured angle on the next {@link #calculate}, e.g. after the motor was stopped.
+     */
+    public void reset() {
+        lastTime = Double.NaN;
+    }
+
+    /**
+     * @return the setpoint of the last cycle, in rotations
+     */
+    public double getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the velocity of the setpoint, in rotations per second
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return the acceleration of the setpoint over the last cycle, in rotations per second squared
+     */
+    public double getAcceleration() {
+        return lastAcceleration;
+    }
+
+    public double getCruiseVelocity() {
+        return cruiseVelocity;
+    }
+
+    public double getMaxAcceleration() {
+        return acceleration;
+    }
+}
@@ -1,27 +1,43 @@
 package frc.robot.swerve.drive;
 
+import frc.robot.logging.FlightRecorder;
 import frc.robot.swerve.math.CentricMode;
-import frc.robot.swerve.math.SwerveDirective;
+import frc.robot.swerve.math.SetpointGenerator;
+import frc.robot.swerve.math.SwerveKinematics;
 import frc.robot.swerve.math.SwerveMath;
 
-import java.util.List;
-
 /**
  * The main class for the SwerveDrive subsystem: This class handles all aspects of controlling the swerve drive.
  * Use this class in your program if you want the easiest way to integrate swerve drive into your robot.
  */
 public class SwerveDrive {
-    // Enclosures 1-4 are the drive/steer combos
-    private SwerveEnclosure swerveEnclosureLF;
-    private SwerveEnclosure swerveEnclosureF;
-    private SwerveEnclosure swerveEnclosureRF;
-    private SwerveEnclosure swerveEnclosureRB;
-    private SwerveEnclosure swerveEnclosureB;
-    private SwerveEnclosure swerveEnclosureLB;
-
+    // The drive/steer combos, in the same order as the SwerveMath directives
+    private final SwerveEnclosure[] enclosures;
 
     private final SwerveMath swerveMath;
 
+    // Reused every cycle so that move() does not allocate
+    private final double[] wheelAngles = new double[SwerveMath.MODULE_COUNT];
+    private final double[] wheelSpeeds = new double[SwerveMath.MODULE_COUNT];
+    private final double[] cycleRecord = new double[DriveCycleRecord.SIZE];
+    private FlightRecorder recorder;
+
+    // Limits every command to what the modules can reach, if not null
+    private SetpointGenerator setpointGenerator;
+    private final double[] requested = new double[3];
+    private final double[] limited = new double[3];
+
+    // Sensor values sampled once per cycle. Fresh until the next move() uses them.
+    private final SwerveSensorSnapshot snapshot = new SwerveSensorSnapshot(SwerveMath.MODULE_COUNT);
+    private boolean snapshotFresh = false;
+
+    // Hardware access through the I/O thread instead of inline, see setIoMode
+    private final SwerveModuleIO io;
+    private volatile boolean ioMode = false;
+    // One per thread that reads the I/O state: the control loop and the odometry thread
+    private final double[] controlIoState = new double[3 * SwerveMath.MODULE_COUNT];
+    private final double[] odometryIoState = new double[3 * SwerveMath.MODULE_COUNT];
+
     public SwerveDrive(SwerveEnclosure swerveEnclosureLF,
                        SwerveEnclosure swerveEnclosureF,
                        SwerveEnclosure swerveEnclosureRF,
@@ -31,17 +47,14 @@ public class SwerveDrive {
 
                        double widthDef, double lengthDef, double widthPlus, double lengthPlus) {
 
-        this.swerveEnclosureLF = swerveEnclosureLF;
-        this.swerveEnclosureF = swerveEnclosureF;
-        this.swerveEnclosureRF = swerveEnclosureRF;
-        this.swerveEnclosureRB = swerveEnclosureRB;
-        this.swerveEnclosureB = swerveEnclosureB;
-        this.swerveEnclosureLB = swerveEnclosureLB;
-
+        this.enclosures = new SwerveEnclosure[] { swerveEnclosureLF, swerveEnclosureF, swerveEnclosureRF,
+                swerveEnclosureRB, swerveEnclosureB, swerveEnclosureLB };
 
         // instantiate the swerve library with a gyro provider using pigeon1
         swerveMath = new SwerveMath(widthDef, lengthDef, widthPlus, lengthPlus);
 
+        io = new SwerveModuleIO(enclosures);
+
     }
 
     /**
@@ -53,19 +66,166 @@ public class SwerveDrive {
      * @param fwd
      * @param str
      * @param rcw
-     * @param gyroValue the value of the gyro input to be used by the calculation. Optional. Only used when the robot is in field-centric mode.
+     * @param gyroValue the value of the gyro input to be used by the calculation. Only used when the robot is in field-centric mode.
      */
-    public void move(double fwd, double str, double rcw, Double gyroValue) {
+    public void move(double fwd, double str, double rcw, double gyroValue) {
+        if (setpointGenerator != null) {
+            swerveMath.toRobotCentric(fwd, str, rcw, gyroValue, requested);
+            moveLimited(gyroValue);
+            return;
+        }
         // Get the move command calculated
-        List<SwerveDirective> swerveDirectives = swerveMath.move(fwd, str, rcw, gyroValue);
+        swerveMath.move(fwd, str, rcw, gyroValue, wheelAngles, wheelSpeeds);
+        output(fwd, str, rcw, gyroValue, swerveMath.getCentricMode() == CentricMode.FIELD);
+    }
+
+    /**
+     * Same as {@link #move(double, double, double, double)}, with the sine and cosine of the heading already
+     * calculated, e.g. by a {@link HeadingSource}.
+     * @param gyroValue the heading the sine and cosine are of, for the flight recorder
+     */
+    public void move(double fwd, double str, double rcw, double gyroValue, double sin, double cos) {
+        if (setpointGenerator != null) {
+            swerveMath.toRobotCentric(fwd, str, rcw, sin, cos, requested);
+            moveLimited(gyroValue);
+            return;
+        }
+        swerveMath.move(fwd, str, rcw, sin, cos, wheelAngles, wheelSpeeds);
+        output(fwd, str, rcw, gyroValue, swerveMath.getCentricMode() == CentricMode.FIELD);
+    }
 
-        swerveEnclosureLF.move(swerveDirectives.get(0).getSpeed(), swerveDirectives.get(0).getAngle());
-        swerveEnclosureF.move(swerveDirectives.get(1).getSpeed(), swerveDirectives.get(1).getAngle());
-        swerveEnclosureRF.move(swerveDirectives.get(2).getSpeed(), swerveDirectives.get(2).getAngle());
-        swerveEnclosureRB.move(swerveDirectives.get(3).getSpeed(), swerveDirectives.get(3).getAngle());
-        swerveEnclosureB.move(swerveDirectives.get(4).getSpeed(), swerveDirectives.get(4).getAngle());
-        swerveEnclosureLB.move(swerveDirectives.get(5).getSpeed(), swerveDirectives.get(5).getAngle());
+    /**
+     * Moves by the part of the requested robot-centric command the setpoint generator lets through this cycle. That
+     * command is what gets recorded, as robot-centric, so replays reproduce the wheel outputs.
+     */
+    private void moveLimited(double gyroValue) {
+        setpointGenerator.calculate(requested[0], requested[1], requested[2], limited);
+        swerveMath.getKinematics().toModuleStates(limited[0], limited[1], limited[2], wheelAngles, wheelSpeeds);
+        output(limited[0], limited[1], limited[2], gyroValue, false);
+    }
+
+    /**
+     * Sends the wheel angles and speeds just calculated, and records the cycle.
+     */
+    private void output(double fwd, double str, double rcw, double gyroValue, boolean fieldCentric) {
+        cycleRecord[DriveCycleRecord.TIMESTAMP] = snapshot.getTimestamp();
+        cycleRecord[DriveCycleRecord.FWD] = fwd;
+        cycleRecord[DriveCycleRecord.STR] = str;
+        cycleRecord[DriveCycleRecord.RCW] = rcw;
+        cycleRecord[DriveCycleRecord.GYRO] = gyroValue;
+        cycleRecord[DriveCycleRecord.FIELD_CENTRIC] = fieldCentric ? 1 : 0;
+        System.arraycopy(wheelAngles, 0, cycleRecord, DriveCycleRecord.WHEEL_ANGLE, wheelAngles.length);
+        System.arraycopy(wheelSpeeds, 0, cycleRecord, DriveCycleRecord.WHEEL_SPEED, wheelSpeeds.length);
+
+        // Hand the command to the I/O thread, which optimizes it against fresh encoder positions
+        if (ioMode) {
+            io.setCommand(cycleRecord);
+            snapshotFresh = false;
+            return;
+        }
+
+        // Use the encoder positions sampled this cycle if there are any, otherwise read them now
+        if (snapshotFresh) {
+            for (int i = 0; i < enclosures.length; i++) {
+                enclosures[i].move(wheelSpeeds[i], wheelAngles[i], snapshot.getSteerPosition(i));
+            }
+            snapshotFresh = false;
+        } else {
+            for (int i = 0; i < enclosures.length; i++) {
+                enclosures[i].move(wheelSpeeds[i], wheelAngles[i]);
+            }
+            snapshot.countReads(enclosures.length);
+        }
+
+        if (recorder != null) {
+            DriveCycleRecord.fillOutputs(cycleRecord, enclosures);
+            recorder.append(cycleRecord);
+        }
+    }
+
+    /**
+     * Reads every module's sensors once for this control cycle. The next {@link #move} uses these values instead of
+     * reading the encoders again, and they stay available from {@link #getSensorSnapshot()}.
+     * @param heading the gyro heading, read once by the caller for this cycle
+     * @param timestamp the time of the sample, in seconds
+     */
+    public void sampleSensors(double heading, double timestamp) {
+        if (ioMode) {
+            io.readSensors(controlIoState);
+            snapshot.sample(controlIoState, heading, timestamp);
+        } else {
+            snapshot.sample(enclosures, heading, timestamp);
+        }
+        snapshotFresh = true;
+    }
+
+    public SwerveSensorSnapshot getSensorSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Reads the measured angle and velocity of every wheel, in the same order as the SwerveMath directives.
+     * This goes to the hardware directly (for the odometry thread), or to the latest I/O thread values in I/O mode;
+     * the control loop should use the snapshot.
+     * @param angles output wheel angles in rotations
+     * @param speeds output wheel velocities in distance units per second
+     */
+    public void getModuleStates(double[] angles, double[] speeds) {
+        if (ioMode) {
+            io.readSensors(odometryIoState);
+            int count = enclosures.length;
+            for (int i = 0; i < count; i++) {
+                angles[i] = odometryIoState[count + i];
+                speeds[i] = odometryIoState[2 * count + i];
+            }
+            return;
+        }
+        for (int i = 0; i < enclosures.length; i++) {
+            angles[i] = enclosures[i].getCurrentAngle();
+            speeds[i] = enclosures[i].getVelocity();
+        }
+    }
+
+    /**
+     * Switches between driving the hardware inline (the default) and exchanging state with the {@link SwerveModuleIO}.
+     * In I/O mode nothing in this class does a CAN call: start the I/O thread with {@code getModuleIO().start(period)},
+     * or call {@code getModuleIO().cycle()} after every move, e.g. in a simulation.
+     */
+    public void setIoMode(boolean ioMode) {
+        this.ioMode = ioMode;
+    }
+
+    public boolean isIoMode() {
+        return ioMode;
+    }
+
+    public SwerveModuleIO getModuleIO() {
+        return io;
+    }
+
+    /**
+     * Records every drive cycle as a {@link DriveCycleRecord}, or nothing if null. The recorder is appended to by
+     * whichever thread moves the enclosures: the caller of move, or the I/O thread in I/O mode.
+     */
+    public void setRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
+        io.setRecorder(recorder);
+    }
+
+    public SwerveKinematics getKinematics() {
+        return swerveMath.getKinematics();
+    }
+
+    /**
+     * Limits every move to what the modules can reach in one period (see {@link SetpointGenerator}), or not at all if
+     * null. Set it up with this drive's kinematics and the period move is called at.
+     */
+    public void setSetpointGenerator(SetpointGenerator setpointGenerator) {
+        this.setpointGenerator = setpointGenerator;
+    }
 
+    public SetpointGenerator getSetpointGenerator() {
+        return setpointGenerator;
     }
 
     /**
@@ -73,12 +233,16 @@ public class SwerveDrive {
      * @throws Exception 
      */
     public void stop() {
-        swerveEnclosureLF.stop();
-        swerveEnclosureF.stop();
-        swerveEnclosureRF.stop();
-        swerveEnclosureRB.stop();
-        swerveEnclosureB.stop();
-        swerveEnclosureLB.stop();
+        if (setpointGenerator != null) {
+            setpointGenerator.reset();
+        }
+        if (ioMode) {
+            io.stopModules();
+            return;
+        }
+        for (SwerveEnclosure enclosure : enclosures) {
+            enclosure.stop();
+        }
     }
 
     /**
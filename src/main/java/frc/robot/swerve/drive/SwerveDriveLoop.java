@@ -0,0 +1,227 @@
+package frc.robot.swerve.drive;
+
+import java.util.function.DoubleSupplier;
+
+import frc.robot.util.DoubleSnapshot;
+import frc.robot.util.FixedRateThread;
+import frc.robot.util.LoopProfiler;
+
+/**
+ * Runs the swerve drive control (sensor sampling, kinematics, module optimization and output) on its own
+ * {@link FixedRateThread}, at a higher rate than the 50Hz command scheduler.
+ *
+ * Commands do not move the drive themselves: they publish a setpoint (fwd, str, rcw) into an atomic slot with
+ * {@link #setSetpoint}, and the loop picks up the latest one every period. If no setpoint arrives for
+ * {@link #SETPOINT_TIMEOUT} seconds (the robot was disabled, the command ended without stopping) the loop stops the
+ * drive, like the motor safety watchdog.
+ *
+ * A {@link ChassisController} (e.g. a trajectory follower) can take over from the setpoints with
+ * {@link #setController}: the loop then asks it for the command every cycle, at the loop rate, until it is done or
+ * removed.
+ *
+ * Every cycle takes one heading sample, predicted to when the cycle's outputs take effect (now plus the lookahead), so
+ * field-centric commands are not rotated by a stale heading while the robot spins.
+ *
+ * Once started, the loop is the only thread that drives the {@link SwerveDrive}. If the drive is in I/O mode and the
+ * I/O thread is not running, the loop does the I/O itself: it reads the module sensors at the start of every cycle
+ * (moving or not, so odometry and telemetry stay fresh while stopped) and flushes the command right after each move,
+ * which gives the shortest stick-to-wheel latency. The thread's overrun statistics show whether the chosen rate is
+ * achievable.
+ */
+public class SwerveDriveLoop {
+    /** Setpoints older than this, in seconds, stop the drive. */
+    public static final double SETPOINT_TIMEOUT = 0.1;
+
+    // Profiler stages
+    public static final int STAGE_SENSORS = 0;
+    public static final int STAGE_MOVE = 1;
+    public static final int STAGE_IO = 2;
+    private static final String[] STAGE_NAMES = { "sensors", "move", "io" };
+    private static final double PROFILE_PUBLISH_PERIOD = 0.5;
+
+    // Setpoint layout
+    private static final int FWD = 0;
+    private static final int STR = 1;
+    private static final int RCW = 2;
+    private static final int STOPPED = 3;
+    private static final int TIMESTAMP = 4;
+    private static final int SETPOINT_SIZE = 5;
+
+    private final SwerveDrive swerveDrive;
+    private final HeadingSource heading;
+    private final double lookahead;
+    private final DoubleSupplier clock;
+    private final FixedRateThread thread;
+    private final LoopProfiler profiler;
+
+    private final DoubleSnapshot setpoint = new DoubleSnapshot(SETPOINT_SIZE);
+    // Only used by the thread that publishes setpoints
+    private final double[] setpointOut = new double[SETPOINT_SIZE];
+    // Only used by the loop thread
+    private final double[] setpointIn = new double[SETPOINT_SIZE];
+    private final double[] headingIn = new double[HeadingSource.SAMPLE_SIZE];
+    private final double[] controllerIn = new double[3];
+    private boolean stopped = true;
+
+    private volatile ChassisController controller;
+
+    /**
+     * @param swerveDrive the drive to control
+     * @param period the time between control cycles, in seconds (e.g. 0.005 for 200Hz)
+     * @param heading samples the gyro heading, once per cycle
+     * @param lookahead how long after the start of a cycle its outputs take effect, in seconds. The heading is
+     *                  predicted that far ahead.
+     * @param clock the current time in seconds, used to stamp sensor samples and setpoints
+     */
+    public SwerveDriveLoop(SwerveDrive swerveDrive, double period, HeadingSource heading, double lookahead,
+            DoubleSupplier clock) {
+        this.swerveDrive = swerveDrive;
+        this.heading = heading;
+        this.lookahead = lookahead;
+        this.clock = clock;
+        this.thread = new FixedRateThread("Swerve drive loop", period, this::cycle);
+        this.profiler = new LoopProfiler(STAGE_NAMES, period, PROFILE_PUBLISH_PERIOD);
+
+        setpointOut[STOPPED] = 1;
+        setpoint.publish(setpointOut);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        thread.stop();
+    }
+
+    /**
+     * Stops the loop and waits for a cycle in progress to finish, so another thread can drive the modules until the
+     * loop is started again.
+     * @param timeout the longest time to wait, in seconds
+     * @return false if the cycle did not finish in time
+     */
+    public boolean stopAndWait(double timeout) {
+        return thread.stopAndWait(timeout);
+    }
+
+    public boolean isRunning() {
+        return thread.isRunning();
+    }
+
+    /**
+     * Publishes the chassis command for the loop to follow. Never blocks and allocates nothing. Only one thread may
+     * publish setpoints (normally the scheduler thread).
+     * @param fwd the forward component, -1 to 1
+     * @param str the strafe component, -1 to 1
+     * @param rcw the rotation component, -1 to 1
+     */
+    public void setSetpoint(double fwd, double str, double rcw) {
+        setpointOut[FWD] = fwd;
+        setpointOut[STR] = str;
+        setpointOut[RCW] = rcw;
+        setpointOut[STOPPED] = 0;
+        setpointOut[TIMESTAMP] = clock.getAsDouble();
+        setpoint.publish(setpointOut);
+    }
+
+    /**
+     * Asks the loop to stop the drive. From the same thread as {@link #setSetpoint}.
+     */
+    public void stopDrive() {
+        setpointOut[STOPPED] = 1;
+        setpointOut[TIMESTAMP] = clock.getAsDouble();
+        setpoint.publish(setpointOut);
+    }
+
+    /**
+     * Hands the drive to a controller, which is asked for the command every cycle instead of the setpoint. The drive
+     * stops when it is done.
+     * @param controller the controller, or null to go back to setpoints
+     */
+    public void setController(ChassisController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * @return the controller driving the robot, or null if none is, or the last one is done
+     */
+    public ChassisController getController() {
+        return controller;
+    }
+
+    /**
+     * One control cycle, run by the loop thread.
+     */
+    private void cycle() {
+        long t = profiler.startLoop();
+        double now = clock.getAsDouble();
+        if (isInlineIo()) {
+            swerveDrive.getModuleIO().sample();
+        }
+        heading.sampleHeading(now + lookahead, headingIn);
+        swerveDrive.sampleSensors(headingIn[HeadingSource.HEADING], now);
+        setpoint.read(setpointIn);
+        t = profiler.record(STAGE_SENSORS, t);
+
+        ChassisController active = controller;
+        if (active != null) {
+            if (active.calculate(now, controllerIn)) {
+                move(controllerIn[FWD], controllerIn[STR], controllerIn[RCW], t);
+                profiler.endLoop();
+                return;
+            }
+            // Done; unless it was replaced meanwhile
+            if (controller == active) {
+                controller = null;
+            }
+            setpointIn[STOPPED] = 1;
+        }
+
+        if (setpointIn[STOPPED] != 0 || now - setpointIn[TIMESTAMP] > SETPOINT_TIMEOUT) {
+            if (!stopped) {
+                swerveDrive.stop();
+                flushIo();
+                stopped = true;
+            }
+        } else {
+            move(setpointIn[FWD], setpointIn[STR], setpointIn[RCW], t);
+        }
+        profiler.endLoop();
+    }
+
+    private void move(double fwd, double str, double rcw, long t) {
+        stopped = false;
+        swerveDrive.move(fwd, str, rcw, headingIn[HeadingSource.HEADING], headingIn[HeadingSource.SIN],
+                headingIn[HeadingSource.COS]);
+        t = profiler.record(STAGE_MOVE, t);
+        flushIo();
+        profiler.record(STAGE_IO, t);
+    }
+
+    private void flushIo() {
+        if (isInlineIo()) {
+            swerveDrive.getModuleIO().flush();
+        }
+    }
+
+    /**
+     * @return true if the loop has to do the module I/O itself
+     */
+    private boolean isInlineIo() {
+        return swerveDrive.isIoMode() && !swerveDrive.getModuleIO().isRunning();
+    }
+
+    /**
+     * @return the per-stage timing of the loop (sensors, move, io), with the loop period as its budget
+     */
+    public LoopProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @return the fixed-rate thread, for its overrun statistics
+     */
+    public FixedRateThread getThread() {
+        return thread;
+    }
+}
@@ -17,8 +17,67 @@ public interface SwerveEnclosure {
      */
     void move(double speed, double angle);
 
+    /**
+     * Same as {@link #move(double, double)}, but uses an encoder position that was already read this cycle instead of
+     * reading it again.
+     * @param encPosition the current value of the angle encoder
+     */
+    void move(double speed, double angle, int encPosition);
+
     /**
      * Stop all movement of the wheel
      */
     void stop();
+
+    /**
+     * @return the value of the angle encoder (used to calculate current wheel position)
+     */
+    int getEncPosition();
+
+    /**
+     * @return the measured angle of the wheel in rotations, 0 being forward and positive clockwise
+     */
+    double getCurrentAngle();
+
+    /**
+     * @return the angle of the wheel in rotations for an encoder position that was already read this cycle, like
+     *         {@link #getCurrentAngle()} without another read
+     */
+    double getAngle(int encPosition);
+
+    /**
+     * @return the encoder position the last move was optimized against
+     */
+    int getLastEncPosition();
+
+    /**
+     * @return the drive output sent by the last move (after reversing), or NaN before the first move
+     */
+    double getLastSpeed();
+
+    /**
+     * @return the steer setpoint in rotations sent by the last move that turned the wheel, or NaN if none has
+     */
+    double getLastAngle();
+
+    /**
+     * @return the angle in rotations the last move that turned the wheel was heading for, before the steer profile;
+     *         the same as {@link #getLastAngle()} without one
+     */
+    double getLastTarget();
+
+    /**
+     * @return true if the drive speed is scaled by the cosine of the steer error
+     */
+    boolean isCosineScaling();
+
+    /**
+     * @return true if the steer setpoint moves along a profile instead of jumping to the new angle
+     */
+    boolean isSteerProfiled();
+
+    /**
+     * @return the measured velocity of the wheel in distance units per second
+     */
+    double getVelocity();
 }
@@ -0,0 +1,197 @@
+package frc.robot.swerve.drive;
+
+import frc.robot.logging.FlightRecorder;
+import frc.robot.util.DoubleSnapshot;
+import frc.robot.util.FixedRateThread;
+
+/**
+ * Moves all module hardware access (the blocking CAN/JNI reads and writes) off the control loop.
+ *
+ * A dedicated thread runs {@link #cycle()} at a fixed rate: it reads every module's sensors once, publishes them, and
+ * flushes the latest motor command. The control loop never touches the hardware; it only exchanges primitive state
+ * with the I/O thread through two {@link DoubleSnapshot}s (one for sensors, one for commands), so neither side ever
+ * blocks the other.
+ *
+ * The wheel optimization in {@link BaseEnclosure#move(double, double, int)} runs on the I/O thread with the encoder
+ * positions it just read, so it always works from fresh values. Commands are only flushed when the control loop
+ * published a new one.
+ *
+ * {@link #cycle()} can also be called directly instead of starting the thread, e.g. to run the I/O deterministically
+ * in a simulation. A control loop that does the I/O itself can also run the two halves separately: {@link #sample()}
+ * every cycle before it reads the sensors, and {@link #flush()} after it moved or stopped.
+ */
+public class SwerveModuleIO {
+    // Command layout: sequence, stop flag, then the command part of a DriveCycleRecord
+    private static final int SEQUENCE = 0;
+    private static final int STOPPED = 1;
+    private static final int COMMAND_HEADER = 2;
+
+    private final SwerveEnclosure[] enclosures;
+    private final int moduleCount;
+
+    private final DoubleSnapshot sensors;
+    private final DoubleSnapshot commands;
+
+    // Only used by the control thread
+    private final double[] commandOut;
+    private double sequence = 0;
+
+    // Only used by the I/O thread
+    private final double[] sensorOut;
+    private final double[] commandIn;
+    private double lastSequence = 0;
+    private final double[] record = new double[DriveCycleRecord.SIZE];
+    private volatile FlightRecorder recorder;
+
+    private volatile long cycles = 0;
+    private FixedRateThread thread;
+
+    /**
+     * @param enclosures the modules, in the same order as the SwerveMath directives
+     */
+    public SwerveModuleIO(SwerveEnclosure[] enclosures) {
+        this.enclosures = enclosures;
+        this.moduleCount = enclosures.length;
+
+        sensors = new DoubleSnapshot(3 * moduleCount);
+        commands = new DoubleSnapshot(COMMAND_HEADER + DriveCycleRecord.COMMAND_SIZE);
+        commandOut = new double[commands.size()];
+        sensorOut = new double[sensors.size()];
+        commandIn = new double[commands.size()];
+    }
+
+    /**
+     * Starts the I/O thread.
+     * @param period the time between I/O cycles, in seconds
+     */
+    public synchronized void start(double period) {
+        if (thread == null) {
+            thread = new FixedRateThread("Swerve I/O", period, this::cycle);
+        }
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.stop();
+        }
+    }
+
+    /**
+     * Stops the I/O thread and waits for a cycle in progress to finish, so another thread can use the modules.
+     * @param timeout the longest time to wait, in seconds
+     * @return false if the cycle did not finish in time
+     */
+    public boolean stopAndWait(double timeout) {
+        FixedRateThread current;
+        synchronized (this) {
+            current = thread;
+        }
+        return current == null || current.stopAndWait(timeout);
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isRunning();
+    }
+
+    /**
+     * One I/O cycle: reads every module's sensors, publishes them, and flushes the latest command if it is new.
+     * Called by the I/O thread; call it directly only if the thread is not running.
+     */
+    public void cycle() {
+        sample();
+        flush();
+    }
+
+    /**
+     * The first half of {@link #cycle()}: reads every module's sensors and publishes them. Call it directly only if
+     * the thread is not running, from the same thread as {@link #flush()}.
+     */
+    public void sample() {
+        for (int i = 0; i < moduleCount; i++) {
+            int encPosition = enclosures[i].getEncPosition();
+            sensorOut[i] = encPosition;
+            sensorOut[moduleCount + i] = enclosures[i].getAngle(encPosition);
+            sensorOut[2 * moduleCount + i] = enclosures[i].getVelocity();
+        }
+        sensors.publish(sensorOut);
+        cycles++;
+    }
+
+    /**
+     * The second half of {@link #cycle()}: flushes the latest command if it is new, optimized against the encoder
+     * positions of the last {@link #sample()}. Call it directly only if the thread is not running.
+     */
+    public void flush() {
+        commands.read(commandIn);
+        if (commandIn[SEQUENCE] != lastSequence) {
+            lastSequence = commandIn[SEQUENCE];
+            if (commandIn[STOPPED] != 0) {
+                for (SwerveEnclosure enclosure : enclosures) {
+                    enclosure.stop();
+                }
+            } else {
+                for (int i = 0; i < moduleCount; i++) {
+                    enclosures[i].move(commandIn[COMMAND_HEADER + DriveCycleRecord.WHEEL_SPEED + i],
+                            commandIn[COMMAND_HEADER + DriveCycleRecord.WHEEL_ANGLE + i], (int) sensorOut[i]);
+                }
+
+                FlightRecorder recorder = this.recorder;
+                if (recorder != null) {
+                    System.arraycopy(commandIn, COMMAND_HEADER, record, 0, DriveCycleRecord.COMMAND_SIZE);
+                    DriveCycleRecord.fillOutputs(record, enclosures);
+                    recorder.append(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes a new motor command for the I/O thread to flush. Nothing is allocated. Only one thread may send
+     * commands.
+     * @param cycle a {@link DriveCycleRecord} with at least the command part (up to COMMAND_SIZE) filled in: the
+     *              wheel speeds and angles to send, and the inputs they came from for the flight recorder
+     */
+    public void setCommand(double[] cycle) {
+        commandOut[SEQUENCE] = ++sequence;
+        commandOut[STOPPED] = 0;
+        System.arraycopy(cycle, 0, commandOut, COMMAND_HEADER, DriveCycleRecord.COMMAND_SIZE);
+        commands.publish(commandOut);
+    }
+
+    /**
+     * Records every flushed command, or nothing if null. In I/O mode the I/O thread does the appending.
+     */
+    public void setRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Asks the I/O thread to stop every module. From the same thread as {@link #setCommand}.
+     */
+    public void stopModules() {
+        commandOut[SEQUENCE] = ++sequence;
+        commandOut[STOPPED] = 1;
+        commands.publish(commandOut);
+    }
+
+    /**
+     * Copies the latest sensor values read by the I/O thread without blocking. Can be called from any thread.
+     * @param target at least 3 * module count long: [0, n) the raw steer encoder positions, [n, 2n) the wheel angles
+     *               in rotations and [2n, 3n) the drive velocities in distance units per second
+     */
+    public void readSensors(double[] target) {
+        sensors.read(target);
+    }
+
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    /**
+     * @return the number of I/O cycles (sensor samples) run so far
+     */
+    public long getCycles() {
+        return cycles;
+    }
+}
@@ -0,0 +1,108 @@
+package frc.robot.swerve.drive;
+
+/**
+ * The sensor values of every module and the gyro, sampled once per control cycle.
+ *
+ * Each value is read from the hardware exactly once per cycle (in {@link SwerveDrive#sampleSensors}) and stamped with
+ * the time it was taken. Everything else that needs a sensor value during that cycle (the enclosure optimization,
+ * dashboards, commands) reads it from here instead of doing another CAN/JNI call.
+ */
+public class SwerveSensorSnapshot {
+    private final int moduleCount;
+    private final int[] steerPositions;
+    private final double[] driveVelocities;
+    private double heading;
+    private double timestamp;
+
+    // Hardware reads, to verify the snapshot is doing its job
+    private long readCount = 0;
+    private long readCountAtLastSample = 0;
+    private int readsPerCycle = 0;
+
+    public SwerveSensorSnapshot(int moduleCount) {
+        this.moduleCount = moduleCount;
+        steerPositions = new int[moduleCount];
+        driveVelocities = new double[moduleCount];
+    }
+
+    /**
+     * Reads every module's steer encoder and drive velocity. The heading is passed in so the caller decides how the
+     * gyro is read; it counts as one read.
+     */
+    void sample(SwerveEnclosure[] enclosures, double heading, double timestamp) {
+        for (int i = 0; i < moduleCount; i++) {
+            steerPositions[i] = enclosures[i].getEncPosition();
+            driveVelocities[i] = enclosures[i].getVelocity();
+        }
+        this.heading = heading;
+        this.timestamp = timestamp;
+        countReads(2 * moduleCount + 1);
+
+        readsPerCycle = (int) (readCount - readCountAtLastSample);
+        readCountAtLastSample = readCount;
+    }
+
+    /**
+     * Takes the module values from the state published by the I/O thread (see {@link SwerveModuleIO#readSensors}),
+     * so only the gyro counts as a read.
+     */
+    void sample(double[] ioState, double heading, double timestamp) {
+        for (int i = 0; i < moduleCount; i++) {
+            steerPositions[i] = (int) ioState[i];
+            driveVelocities[i] = ioState[2 * moduleCount + i];
+        }
+        this.heading = heading;
+        this.timestamp = timestamp;
+        countReads(1);
+
+        readsPerCycle = (int) (readCount - readCountAtLastSample);
+        readCountAtLastSample = readCount;
+    }
+
+    /**
+     * Records hardware reads done outside of {@link #sample}, so they show up in {@link #getReadsPerCycle()}.
+     */
+    void countReads(int reads) {
+        readCount += reads;
+    }
+
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    /**
+     * @return the raw steer encoder position of a module, as returned by {@link SwerveEnclosure#getEncPosition()}
+     */
+    public int getSteerPosition(int module) {
+        return steerPositions[module];
+    }
+
+    /**
+     * @return the drive velocity of a module in distance units per second
+     */
+    public double getDriveVelocity(int module) {
+        return driveVelocities[module];
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @return the time the snapshot was taken, in seconds
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of sensor reads done between the last two samples, i.e. in one control cycle
+     */
+    public int getReadsPerCycle() {
+        return readsPerCycle;
+    }
+
+    public long getReadCount() {
+        return readCount;
+    }
+}
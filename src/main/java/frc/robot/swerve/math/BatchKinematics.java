@@ -0,0 +1,180 @@
+package frc.robot.swerve.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Inverse kinematics for many chassis samples at once, e.g. a whole trajectory or a simulation run.
+ *
+ * Inputs and outputs are parallel primitive arrays. Outputs are laid out per module ([module][sample]) so the inner
+ * loops walk contiguous memory with no calls or branches, which lets the JIT turn the multiply-adds, square roots and
+ * normalization into SIMD code. Only the heading rotation and atan2 stay scalar. Samples are processed in blocks that
+ * fit in cache.
+ *
+ * Results match {@link SwerveMath#move(double, double, double, double, double[], double[])} with the same layout,
+ * except that there is no SCALE_SPEED.
+ */
+public class BatchKinematics {
+    private static final double INV_TWO_PI = 1.0 / (2 * Math.PI);
+
+    // Samples per block. The per-block scratch arrays stay in L1/L2.
+    private static final int BLOCK = 512;
+    // Below this many samples a fork-join task is not worth splitting further
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    private final SwerveKinematics kinematics;
+    private final int moduleCount;
+    private final double[] strRcw;
+    private final double[] fwdRcw;
+
+    // Scratch for the sequential path
+    private final Scratch scratch = new Scratch();
+
+    public BatchKinematics(SwerveKinematics kinematics) {
+        this.kinematics = kinematics;
+        this.moduleCount = kinematics.getModuleCount();
+
+        strRcw = new double[moduleCount];
+        fwdRcw = new double[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            strRcw[i] = kinematics.getModuleY(i) / kinematics.getMaxRadius();
+            fwdRcw[i] = -kinematics.getModuleX(i) / kinematics.getMaxRadius();
+        }
+    }
+
+    public SwerveKinematics getKinematics() {
+        return kinematics;
+    }
+
+    /**
+     * Calculates the module states for every sample on the calling thread. Not thread-safe: use one instance per
+     * thread, or {@link #toModuleStatesParallel}.
+     * @param fwd forward components, one per sample
+     * @param str strafe components, one per sample
+     * @param rcw rotation components, one per sample
+     * @param heading field-centric gyro headings in degrees, one per sample, or null for robot-centric
+     * @param count the number of samples
+     * @param angles output wheel angles, [module][sample]
+     * @param speeds output wheel speeds, [module][sample]
+     */
+    public void toModuleStates(double[] fwd, double[] str, double[] rcw, double[] heading, int count,
+            double[][] angles, double[][] speeds) {
+        compute(fwd, str, rcw, heading, 0, count, angles, speeds, scratch);
+    }
+
+    /**
+     * Same as {@link #toModuleStates}, but splits the samples across the given fork-join pool. Worth it for batches
+     * of tens of thousands of samples or more.
+     */
+    public void toModuleStatesParallel(double[] fwd, double[] str, double[] rcw, double[] heading, int count,
+            double[][] angles, double[][] speeds, ForkJoinPool pool) {
+        pool.invoke(new Task(fwd, str, rcw, heading, 0, count, angles, speeds));
+    }
+
+    private void compute(double[] fwd, double[] str, double[] rcw, double[] heading, int from, int to,
+            double[][] angles, double[][] speeds, Scratch scratch) {
+        boolean fastMath = kinematics.isFastMath();
+        double[] robotFwd = scratch.fwd;
+        double[] robotStr = scratch.str;
+        double[] max = scratch.max;
+
+        for (int start = from; start < to; start += BLOCK) {
+            int n = Math.min(BLOCK, to - start);
+
+            // Rotate field-centric commands into the robot frame
+            if (heading == null) {
+                System.arraycopy(fwd, start, robotFwd, 0, n);
+                System.arraycopy(str, start, robotStr, 0, n);
+            } else {
+                for (int j = 0; j < n; j++) {
+                    double gyro = (heading[start + j] * Math.PI) / 180;
+                    double cos = fastMath ? FastMath.cos(gyro) : Math.cos(gyro);
+                    double sin = fastMath ? FastMath.sin(gyro) : Math.sin(gyro);
+                    robotFwd[j] = fwd[start + j] * cos + str[start + j] * sin;
+                    robotStr[j] = -fwd[start + j] * sin + str[start + j] * cos;
+                }
+            }
+
+            for (int j = 0; j < n; j++) {
+                max[j] = 1.0;
+            }
+
+            for (int m = 0; m < moduleCount; m++) {
+                double kStr = strRcw[m];
+                double kFwd = fwdRcw[m];
+                double[] moduleSpeeds = speeds[m];
+                double[] moduleAngles = angles[m];
+
+                // Pure arithmetic, vectorizable
+                for (int j = 0; j < n; j++) {
+                    double s = robotStr[j] + kStr * rcw[start + j];
+                    double f = robotFwd[j] + kFwd * rcw[start + j];
+                    double speed = Math.sqrt(s * s + f * f);
+                    moduleSpeeds[start + j] = speed;
+                    max[j] = Math.max(max[j], speed);
+                }
+
+                // atan2 has no SIMD form, keep it in its own loop
+                for (int j = 0; j < n; j++) {
+                    double s = robotStr[j] + kStr * rcw[start + j];
+                    double f = robotFwd[j] + kFwd * rcw[start + j];
+                    moduleAngles[start + j] = (fastMath ? FastMath.atan2(s, f) : Math.atan2(s, f)) * INV_TWO_PI;
+                }
+            }
+
+            // Normalize so no wheel goes faster than 1
+            for (int j = 0; j < n; j++) {
+                max[j] = 1.0 / max[j];
+            }
+            for (int m = 0; m < moduleCount; m++) {
+                double[] moduleSpeeds = speeds[m];
+                for (int j = 0; j < n; j++) {
+                    moduleSpeeds[start + j] *= max[j];
+                }
+            }
+        }
+    }
+
+    private static class Scratch {
+        final double[] fwd = new double[BLOCK];
+        final double[] str = new double[BLOCK];
+        final double[] max = new double[BLOCK];
+    }
+
+    private class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] fwd;
+        private final double[] str;
+        private final double[] rcw;
+        private final double[] heading;
+        private final int from;
+        private final int to;
+        private final double[][] angles;
+        private final double[][] speeds;
+
+        Task(double[] fwd, double[] str, double[] rcw, double[] heading, int from, int to,
+                double[][] angles, double[][] speeds) {
+            this.fwd = fwd;
+            this.str = str;
+            this.rcw = rcw;
+            this.heading = heading;
+            this.from = from;
+            this.to = to;
+            this.angles = angles;
+            this.speeds = speeds;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                BatchKinematics.this.compute(fwd, str, rcw, heading, from, to, angles, speeds, new Scratch());
+                return;
+            }
+            // Split on a block boundary so blocks never straddle two tasks
+            int mid = from + ((to - from) / 2 / BLOCK) * BLOCK;
+            invokeAll(new Task(fwd, str, rcw, heading, from, mid, angles, speeds),
+                    new Task(fwd, str, rcw, heading, mid, to, angles, speeds));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package frc.robot.swerve.math;
+
+/**
+ * Cheaper replacements for the trig functions used in the kinematics hot loop, with bounded error.
+ *
+ * - atan2 uses the Abramowitz and Stegun 4.4.49 polynomial for atan on [0, 1] plus octant reduction.
+ *   Maximum error: {@link #ATAN2_MAX_ERROR} radians.
+ * - sin and cos use a 4096-entry table over one turn with linear interpolation.
+ *   Maximum error: {@link #SIN_COS_MAX_ERROR}.
+ *
+ * These are only used when fast math is turned on (see {@link SwerveMath#setFastMath(boolean)}).
+ */
+public final class FastMath {
+    /** Maximum absolute error of {@link #atan2(double, double)}, in radians (about 0.000001 degrees). */
+    public static final double ATAN2_MAX_ERROR = 2e-8;
+
+    /** Maximum absolute error of {@link #sin(double)} and {@link #cos(double)}. */
+    public static final double SIN_COS_MAX_ERROR = 3e-7;
+
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double HALF_PI = Math.PI / 2;
+
+    private static final int TABLE_BITS = 12;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final double INDEX_PER_RADIAN = TABLE_SIZE / TWO_PI;
+    // One extra entry so interpolation never has to wrap
+    private static final double[] SIN_TABLE = new double[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            SIN_TABLE[i] = Math.sin(i / INDEX_PER_RADIAN);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    /**
+     * @return the angle of the point (x, y) in radians, -pi to pi, like {@link Math#atan2(double, double)}
+     */
+    public static double atan2(double y, double x) {
+        double absY = Math.abs(y);
+        double absX = Math.abs(x);
+        if (absX == 0 && absY == 0) {
+            return 0;
+        }
+
+        // Reduce to an argument in [0, 1] so the polynomial stays accurate
+        boolean swap = absY > absX;
+        double z = swap ? absX / absY : absY / absX;
+        double angle = atanUnit(z);
+        if (swap) angle = HALF_PI - angle;
+        if (x < 0) angle = Math.PI - angle;
+        return y < 0 ? -angle : angle;
+    }
+
+    /**
+     * @return the sine of the angle in radians
+     */
+    public static double sin(double radians) {
+        double index = radians * INDEX_PER_RADIAN;
+        double floor = Math.floor(index);
+        int i = ((int) (long) floor) & TABLE_MASK;
+        double fraction = index - floor;
+        return SIN_TABLE[i] + (SIN_TABLE[i + 1] - SIN_TABLE[i]) * fraction;
+    }
+
+    /**
+     * @return the cosine of the angle in radians
+     */
+    public static double cos(double radians) {
+        return sin(radians + HALF_PI);
+    }
+
+    /**
+     * atan for 0 <= z <= 1, Abramowitz and Stegun 4.4.49
+     */
+    private static double atanUnit(double z) {
+        double z2 = z * z;
+        return z * (1 + z2 * (-0.3333314528 + z2 * (0.1999355085 + z2 * (-0.1420889944 + z2 * (0.1065626393
+                + z2 * (-0.0752896400 + z2 * (0.0429096138 + z2 * (-0.0161657367 + z2 * 0.0028662257))))))));
+    }
+}
@@ -0,0 +1,165 @@
+package frc.robot.swerve.math;
+
+/**
+ * A fixed-capacity ring buffer of timestamped poses and the module states they were integrated from.
+ *
+ * Everything is stored in preallocated primitive arrays: adding overwrites the oldest entry once the buffer is full and
+ * never allocates. Entries are addressed by age, 0 being the oldest, and must be added in increasing time order so
+ * lookups can use a binary search.
+ */
+public class PoseHistory {
+    private final int capacity;
+    private final int moduleCount;
+
+    private final double[] timestamps;
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    // capacity * moduleCount, one block of moduleCount per entry
+    private final double[] angles;
+    private final double[] speeds;
+
+    // Physical index of the oldest entry
+    private int start = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity the number of entries to keep (e.g. one second at the odometry rate)
+     * @param moduleCount the number of module states stored with every entry
+     */
+    public PoseHistory(int capacity, int moduleCount) {
+        assert (capacity > 1) : "capacity has to be larger than 1";
+        this.capacity = capacity;
+        this.moduleCount = moduleCount;
+
+        timestamps = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        heading = new double[capacity];
+        angles = new double[capacity * moduleCount];
+        speeds = new double[capacity * moduleCount];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    /**
+     * Adds an entry, overwriting the oldest one if the buffer is full.
+     * @param timestamp must be later than the newest entry
+     */
+    public void add(double timestamp, double x, double y, double heading, double[] angles, double[] speeds) {
+        int index;
+        if (size < capacity) {
+            index = physical(size);
+            size++;
+        } else {
+            index = start;
+            start = (start + 1 == capacity) ? 0 : start + 1;
+        }
+
+        timestamps[index] = timestamp;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.heading[index] = heading;
+        System.arraycopy(angles, 0, this.angles, index * moduleCount, moduleCount);
+        System.arraycopy(speeds, 0, this.speeds, index * moduleCount, moduleCount);
+    }
+
+    /**
+     * @return the age index (0 being the oldest) of the newest entry at or before the timestamp, or -1 if the
+     *         timestamp is older than everything in the buffer
+     */
+    public int floorIndex(double timestamp) {
+        int low = 0;
+        int high = size - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] <= timestamp) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Linearly interpolates the pose at an arbitrary time between two entries. Times after the newest entry return the
+     * newest pose.
+     * @param pose output, at least 3 long: x, y and heading (degrees)
+     * @return false if the timestamp is older than the oldest entry (or the buffer is empty)
+     */
+    public boolean sample(double timestamp, double[] pose) {
+        int i = floorIndex(timestamp);
+        if (i < 0) {
+            return false;
+        }
+
+        int a = physical(i);
+        if (i == size - 1) {
+            pose[0] = x[a];
+            pose[1] = y[a];
+            pose[2] = heading[a];
+            return true;
+        }
+
+        int b = physical(i + 1);
+        double t = (timestamp - timestamps[a]) / (timestamps[b] - timestamps[a]);
+        pose[0] = x[a] + (x[b] - x[a]) * t;
+        pose[1] = y[a] + (y[b] - y[a]) * t;
+        pose[2] = heading[a] + SwerveOdometry.angleDifference(heading[b], heading[a]) * t;
+        return true;
+    }
+
+    public double getTimestamp(int i) {
+        return timestamps[physical(i)];
+    }
+
+    public double getX(int i) {
+        return x[physical(i)];
+    }
+
+    public double getY(int i) {
+        return y[physical(i)];
+    }
+
+    public double getHeading(int i) {
+        return heading[physical(i)];
+    }
+
+    /**
+     * Overwrites the pose of an existing entry, used when replaying odometry after a correction.
+     */
+    public void setPose(int i, double x, double y, double heading) {
+        int index = physical(i);
+        this.x[index] = x;
+        this.y[index] = y;
+        this.heading[index] = heading;
+    }
+
+    /**
+     * Copies the module states stored with an entry.
+     */
+    public void getModuleStates(int i, double[] angles, double[] speeds) {
+        int offset = physical(i) * moduleCount;
+        System.arraycopy(this.angles, offset, angles, 0, moduleCount);
+        System.arraycopy(this.speeds, offset, speeds, 0, moduleCount);
+    }
+
+    private int physical(int i) {
+        int index = start + i;
+        return index >= capacity ? index - capacity : index;
+    }
+}
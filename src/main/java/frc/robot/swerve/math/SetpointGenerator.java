@@ -0,0 +1,249 @@
+package frc.robot.swerve.math;
+
+/**
+ * Limits a robot-centric chassis command to what the modules can reach in one control period, so they stay
+ * kinematically consistent instead of fighting each other while they catch up with a sudden change.
+ *
+ * The generator keeps the state of every module from its last output: the direction the wheel points and its speed
+ * along it (negative when running backward). Each cycle it moves from the last command toward the requested one, as far
+ * as every module allows:
+ * <ul>
+ * <li>a moving wheel turns at most its max steer rate per period (a wheel can also run backward instead of turning
+ *     around, so it never has to turn more than a quarter turn),</li>
+ * <li>a wheel's speed changes by at most its max acceleration per period, so a wheel reversing direction slows down
+ *     through zero instead of flipping.</li>
+ * </ul>
+ * All modules use the same fraction of the change, so the command that comes out is always one the whole chassis can
+ * follow. A stopped wheel may point anywhere, since turning it in place moves nothing.
+ *
+ * The fraction is found per module by bisection, to within 1/4096 of the change. Nothing is allocated.
+ * Commands and speeds are in the normalized units of {@link SwerveKinematics}: a module speed of 1 is full speed.
+ */
+public class SetpointGenerator {
+    // Bisection steps per module: the fraction is found to within 2^-12
+    private static final int SEARCH_STEPS = 12;
+    // Module speeds below this count as stopped
+    private static final double STOPPED = 1e-4;
+    // Slack for rounding in the acceleration limit
+    private static final double TOLERANCE = 1e-9;
+
+    private final SwerveKinematics kinematics;
+    private final int moduleCount;
+    private final double period;
+
+    // Per module limits: the tangent of the largest turn per period (infinite above a quarter turn), and the largest
+    // change of speed per period
+    private final double[] maxTurnTangent;
+    private final double[] maxSpeedChange;
+
+    // The last command, and the direction (unit vector) and signed speed of every wheel
+    private final double[] command = new double[3];
+    private final double[] directionStrafe;
+    private final double[] directionForward;
+    private final double[] speed;
+
+    // Module velocities of the last command, and the change to the requested one
+    private final double[] fromStrafe;
+    private final double[] fromForward;
+    private final double[] deltaStrafe;
+    private final double[] deltaForward;
+
+    private double lastFraction = 1;
+
+    /**
+     * Creates a generator with the same limits on every module, all wheels pointing forward and at rest.
+     * @param period the time between calls, in seconds
+     * @param maxSteerRate the fastest a wheel turns, in rotations per second
+     * @param maxAcceleration the fastest a wheel's speed changes, in full speed per second
+     */
+    public SetpointGenerator(SwerveKinematics kinematics, double period, double maxSteerRate, double maxAcceleration) {
+        assert (period > 0) : "period has to be larger than 0";
+
+        this.kinematics = kinematics;
+        this.moduleCount = kinematics.getModuleCount();
+        this.period = period;
+        this.maxTurnTangent = new double[moduleCount];
+        this.maxSpeedChange = new double[moduleCount];
+        this.directionStrafe = new double[moduleCount];
+        this.directionForward = new double[moduleCount];
+        this.speed = new double[moduleCount];
+        this.fromStrafe = new double[moduleCount];
+        this.fromForward = new double[moduleCount];
+        this.deltaStrafe = new double[moduleCount];
+        this.deltaForward = new double[moduleCount];
+
+        for (int i = 0; i < moduleCount; i++) {
+            setModuleLimits(i, maxSteerRate, maxAcceleration);
+            directionForward[i] = 1;
+        }
+    }
+
+    /**
+     * Sets the limits of one module, e.g. a slower steer motor.
+     * @param maxSteerRate the fastest the wheel turns, in rotations per second
+     * @param maxAcceleration the fastest the wheel's speed changes, in full speed per second
+     */
+    public void setModuleLimits(int module, double maxSteerRate, double maxAcceleration) {
+        assert (maxSteerRate > 0 && maxAcceleration > 0) : "limits have to be larger than 0";
+
+        double turn = maxSteerRate * period;
+        maxTurnTangent[module] = turn >= 0.25 ? Double.POSITIVE_INFINITY : Math.tan(turn * 2 * Math.PI);
+        maxSpeedChange[module] = maxAcceleration * period;
+    }
+
+    /**
+     * Calculates the command for this cycle and makes it the last one.
+     * @param fwd the requested forward component, robot-centric
+     * @param str the requested strafe component, robot-centric
+     * @param rcw the requested rotation component
+     * @param result output: fwd, str and rcw to send this cycle
+     */
+    public void calculate(double fwd, double str, double rcw, double[] result) {
+        kinematics.toModuleVelocities(fwd, str, rcw, deltaStrafe, deltaForward);
+
+        // The fastest module sets the scale, like SwerveKinematics.toModuleStates does
+        double max = 1.0;
+        for (int i = 0; i < moduleCount; i++) {
+            max = Math.max(max, Math.sqrt(deltaStrafe[i] * deltaStrafe[i] + deltaForward[i] * deltaForward[i]));
+        }
+        double scale = 1.0 / max;
+        fwd *= scale;
+        str *= scale;
+        rcw *= scale;
+
+        kinematics.toModuleVelocities(command[0], command[1], command[2], fromStrafe, fromForward);
+        for (int i = 0; i < moduleCount; i++) {
+            double toStrafe = deltaStrafe[i] * scale;
+            double toForward = deltaForward[i] * scale;
+            deltaStrafe[i] = toStrafe - fromStrafe[i];
+            deltaForward[i] = toForward - fromForward[i];
+
+            // A stopped wheel can turn in place, so it starts out pointing where it is going
+            double toSpeed = Math.sqrt(toStrafe * toStrafe + toForward * toForward);
+            if (Math.abs(speed[i]) < STOPPED && toSpeed >= STOPPED) {
+                directionStrafe[i] = toStrafe / toSpeed;
+                directionForward[i] = toForward / toSpeed;
+            }
+        }
+
+        double fraction = 1;
+        for (int i = 0; i < moduleCount; i++) {
+            if (reachable(i, fraction)) {
+                continue;
+            }
+            double low = 0;
+            double high = fraction;
+            for (int step = 0; step < SEARCH_STEPS; step++) {
+                double middle = 0.5 * (low + high);
+                if (reachable(i, middle)) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            fraction = low;
+        }
+        lastFraction = fraction;
+
+        command[0] += fraction * (fwd - command[0]);
+        command[1] += fraction * (str - command[1]);
+        command[2] += fraction * (rcw - command[2]);
+        for (int i = 0; i < moduleCount; i++) {
+            double moduleStrafe = fromStrafe[i] + fraction * deltaStrafe[i];
+            double moduleForward = fromForward[i] + fraction * deltaForward[i];
+            double moduleSpeed = Math.sqrt(moduleStrafe * moduleStrafe + moduleForward * moduleForward);
+            if (moduleSpeed < STOPPED) {
+                speed[i] = 0;
+                continue;
+            }
+            // Keep running backward rather than turning around
+            double sign = moduleStrafe * directionStrafe[i] + moduleForward * directionForward[i] < 0 ? -1 : 1;
+            directionStrafe[i] = sign * moduleStrafe / moduleSpeed;
+            directionForward[i] = sign * moduleForward / moduleSpeed;
+            speed[i] = sign * moduleSpeed;
+        }
+
+        result[0] = command[0];
+        result[1] = command[1];
+        result[2] = command[2];
+    }
+
+    /**
+     * @return true if module i can reach the given fraction of the change within one period
+     */
+    private boolean reachable(int i, double fraction) {
+        double moduleStrafe = fromStrafe[i] + fraction * deltaStrafe[i];
+        double moduleForward = fromForward[i] + fraction * deltaForward[i];
+        double moduleSpeed = Math.sqrt(moduleStrafe * moduleStrafe + moduleForward * moduleForward);
+        if (moduleSpeed < STOPPED) {
+            return Math.abs(speed[i]) <= maxSpeedChange[i] + TOLERANCE;
+        }
+
+        // Components along and across the way the wheel points now
+        double along = moduleStrafe * directionStrafe[i] + moduleForward * directionForward[i];
+        double across = moduleForward * directionStrafe[i] - moduleStrafe * directionForward[i];
+        if (Math.abs(across) > maxTurnTangent[i] * Math.abs(along)) {
+            return false;
+        }
+        double signed = along < 0 ? -moduleSpeed : moduleSpeed;
+        return Math.abs(signed - speed[i]) <= maxSpeedChange[i] + TOLERANCE;
+    }
+
+    /**
+     * Brings the last command to rest, e.g. after the drive was stopped. The wheels keep their directions.
+     */
+    public void reset() {
+        command[0] = 0;
+        command[1] = 0;
+        command[2] = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            speed[i] = 0;
+        }
+        lastFraction = 1;
+    }
+
+    /**
+     * Sets the direction of every wheel, e.g. from the encoders at startup, and brings them to rest.
+     * @param angles wheel angles in rotations, 0 being forward and positive clockwise
+     */
+    public void reset(double[] angles) {
+        reset();
+        for (int i = 0; i < moduleCount; i++) {
+            double angle = angles[i] * 2 * Math.PI;
+            directionStrafe[i] = Math.sin(angle);
+            directionForward[i] = Math.cos(angle);
+        }
+    }
+
+    /**
+     * @return the last command: fwd, str and rcw, robot-centric
+     */
+    public double getCommand(int component) {
+        return command[component];
+    }
+
+    /**
+     * @return the signed speed of a wheel in the last command, negative when running backward
+     */
+    public double getModuleSpeed(int module) {
+        return speed[module];
+    }
+
+    /**
+     * @return the angle of a wheel in the last command, in rotations (-0.5 to 0.5, positive clockwise)
+     */
+    public double getModuleAngle(int module) {
+        return Math.atan2(directionStrafe[module], directionForward[module]) / (2 * Math.PI);
+    }
+
+    /**
+     * @return the fraction of the change to the requested command that the last cycle made, 1 if it got there
+     */
+    public double getLastFraction() {
+        return lastFraction;
+    }
+
+    public double getPeriod() {
+        return period;
+    }
+}
@@ -0,0 +1,220 @@
+package frc.robot.swerve.math;
+
+/**
+ * Inverse and forward kinematics for a swerve drive with any number of modules in any layout.
+ *
+ * Module positions are given relative to the center of rotation, x to the right and y to the front. Units do not
+ * matter. The matrix that maps a chassis command (fwd, str, rcw) to the velocity of every module, and its
+ * least-squares pseudo-inverse that maps measured module velocities back to the chassis, are built once in the
+ * constructor, so each call is one small matrix-vector multiply.
+ *
+ * Rotation is scaled so that rcw = 1.0 alone drives the module farthest from the center at full speed.
+ */
+public class SwerveKinematics {
+    private static final double INV_TWO_PI = 1.0 / (2 * Math.PI);
+
+    private final int moduleCount;
+    private final double[] moduleX;
+    private final double[] moduleY;
+
+    // Distance of the farthest module from the center. rcw is in units of this radius per unit time.
+    private final double maxRadius;
+
+    // Row-major, two rows per module (strafe then forward component) and three columns (fwd, str, rcw)
+    private final double[] inverse;
+
+    // Row-major pseudo-inverse of the above: three rows (fwd, str, rcw), two columns per module
+    private final double[] forward;
+
+    // Use the FastMath approximations instead of Math for atan2/sin/cos
+    private boolean fastMath = false;
+
+    /**
+     * Constructor
+     * @param moduleX the x (right) position of each module, relative to the center of rotation
+     * @param moduleY the y (front) position of each module, relative to the center of rotation
+     */
+    public SwerveKinematics(double[] moduleX, double[] moduleY) {
+        assert (moduleX.length == moduleY.length) : "Every module needs both an x and a y position";
+        assert (moduleX.length > 0) : "At least one module is required";
+
+        this.moduleCount = moduleX.length;
+        this.moduleX = moduleX.clone();
+        this.moduleY = moduleY.clone();
+
+        double radius = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            radius = Math.max(radius, Math.hypot(moduleX[i], moduleY[i]));
+        }
+        assert (radius > 0) : "Modules cannot all be at the center of rotation";
+        this.maxRadius = radius;
+
+        // A clockwise rotation moves a module at (x, y) with velocity (y, -x) per radian
+        inverse = new double[moduleCount * 6];
+        for (int i = 0; i < moduleCount; i++) {
+            int row = i * 6;
+            inverse[row] = 0;
+            inverse[row + 1] = 1;
+            inverse[row + 2] = moduleY[i] / maxRadius;
+            inverse[row + 3] = 1;
+            inverse[row + 4] = 0;
+            inverse[row + 5] = -moduleX[i] / maxRadius;
+        }
+
+        forward = pseudoInverse(inverse, moduleCount * 2);
+    }
+
+    /**
+     * Calculates (A^T A)^-1 A^T for a row-major matrix A with three columns.
+     */
+    private static double[] pseudoInverse(double[] a, int rows) {
+        double[] ata = new double[9];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    ata[i * 3 + j] += a[r * 3 + i] * a[r * 3 + j];
+                }
+            }
+        }
+
+        double c00 = ata[4] * ata[8] - ata[5] * ata[7];
+        double c01 = ata[5] * ata[6] - ata[3] * ata[8];
+        double c02 = ata[3] * ata[7] - ata[4] * ata[6];
+        double det = ata[0] * c00 + ata[1] * c01 + ata[2] * c02;
+        if (Math.abs(det) < 1e-12) {
+            throw new IllegalArgumentException("Module layout cannot observe the chassis motion (are all modules in a line?)");
+        }
+
+        double[] inv = {
+            c00 / det, (ata[2] * ata[7] - ata[1] * ata[8]) / det, (ata[1] * ata[5] - ata[2] * ata[4]) / det,
+            c01 / det, (ata[0] * ata[8] - ata[2] * ata[6]) / det, (ata[2] * ata[3] - ata[0] * ata[5]) / det,
+            c02 / det, (ata[1] * ata[6] - ata[0] * ata[7]) / det, (ata[0] * ata[4] - ata[1] * ata[3]) / det
+        };
+
+        double[] result = new double[3 * rows];
+        for (int i = 0; i < 3; i++) {
+            for (int r = 0; r < rows; r++) {
+                result[i * rows + r] = inv[i * 3] * a[r * 3] + inv[i * 3 + 1] * a[r * 3 + 1] + inv[i * 3 + 2] * a[r * 3 + 2];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the layout of this robot's hex drive: four corner wheels on the default rectangle plus a front and a back
+     * wheel on the centerline. The modules are in the same order as the {@link SwerveMath} directives: front-left,
+     * front-right, back-right, back-left, front, back.
+     * @param widthDef the distance between the left and right corner wheels
+     * @param lengthDef the distance between the front and back corner wheels
+     * @param lengthPlus the distance between the front and back centerline wheels
+     */
+    public static SwerveKinematics hexLayout(double widthDef, double lengthDef, double lengthPlus) {
+        double x = widthDef / 2;
+        double y = lengthDef / 2;
+        double yPlus = lengthPlus / 2;
+
+        return new SwerveKinematics(
+                new double[] { -x, x, x, -x, 0, 0 },
+                new double[] { y, y, -y, -y, yPlus, -yPlus });
+    }
+
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    public double getModuleX(int module) {
+        return moduleX[module];
+    }
+
+    public double getModuleY(int module) {
+        return moduleY[module];
+    }
+
+    /**
+     * Switches between the exact trig functions and the bounded-error {@link FastMath} approximations.
+     */
+    public void setFastMath(boolean fastMath) {
+        this.fastMath = fastMath;
+    }
+
+    public boolean isFastMath() {
+        return fastMath;
+    }
+
+    /**
+     * @return the distance of the farthest module from the center, i.e. the radius that rcw is scaled by
+     */
+    public double getMaxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * Calculates the angle and speed of every module for a robot-centric chassis command. Speeds are normalized so
+     * that none is larger than 1. Nothing is allocated.
+     * @param fwd the forward component range -1.0(back) - 1.0(fwd)
+     * @param str the strafe component range -1.0(left) - 1.0(right)
+     * @param rcw the rotation component range -1.0(ccw) - 1.0(cw)
+     * @param angles output wheel angles (-0.5 to 0.5), at least {@link #getModuleCount()} long
+     * @param speeds output wheel speeds (0 to 1), at least {@link #getModuleCount()} long
+     */
+    public void toModuleStates(double fwd, double str, double rcw, double[] angles, double[] speeds) {
+        double max = 1.0;
+        for (int i = 0; i < moduleCount; i++) {
+            int row = i * 6;
+            double s = inverse[row] * fwd + inverse[row + 1] * str + inverse[row + 2] * rcw;
+            double f = inverse[row + 3] * fwd + inverse[row + 4] * str + inverse[row + 5] * rcw;
+
+            double speed = Math.sqrt(s * s + f * f);
+            speeds[i] = speed;
+            angles[i] = (fastMath ? FastMath.atan2(s, f) : Math.atan2(s, f)) * INV_TWO_PI;
+            max = Math.max(max, speed);
+        }
+
+        double scale = 1.0 / max;
+        for (int i = 0; i < moduleCount; i++) {
+            speeds[i] *= scale;
+        }
+    }
+
+    /**
+     * Calculates the velocity of every module for a robot-centric chassis command, as strafe and forward components,
+     * without normalizing. Nothing is allocated.
+     * @param strafe output strafe (right) component of every module, at least {@link #getModuleCount()} long
+     * @param forward output forward component of every module, at least {@link #getModuleCount()} long
+     */
+    public void toModuleVelocities(double fwd, double str, double rcw, double[] strafe, double[] forward) {
+        for (int i = 0; i < moduleCount; i++) {
+            int row = i * 6;
+            strafe[i] = inverse[row] * fwd + inverse[row + 1] * str + inverse[row + 2] * rcw;
+            forward[i] = inverse[row + 3] * fwd + inverse[row + 4] * str + inverse[row + 5] * rcw;
+        }
+    }
+
+    /**
+     * Calculates the chassis motion that best fits (in the least-squares sense) the measured state of every module.
+     * Nothing is allocated.
+     * @param angles measured wheel angles in rotations (0 being forward, positive clockwise), one per module
+     * @param speeds measured wheel velocities, one per module. The chassis velocity comes out in the same units.
+     * @param chassis output, at least 3 long: [0] forward velocity, [1] strafe (right) velocity and [2] rotation
+     *                (clockwise) in the same scale as rcw. Divide [2] by {@link #getMaxRadius()} for radians per unit time.
+     */
+    public void toChassisSpeeds(double[] angles, double[] speeds, double[] chassis) {
+        int columns = moduleCount * 2;
+        double fwd = 0;
+        double str = 0;
+        double rcw = 0;
+        for (int i = 0; i < moduleCount; i++) {
+            double angle = angles[i] * 2 * Math.PI;
+            double s = speeds[i] * (fastMath ? FastMath.sin(angle) : Math.sin(angle));
+            double f = speeds[i] * (fastMath ? FastMath.cos(angle) : Math.cos(angle));
+
+            int column = i * 2;
+            fwd += forward[column] * s + forward[column + 1] * f;
+            str += forward[columns + column] * s + forward[columns + column + 1] * f;
+            rcw += forward[2 * columns + column] * s + forward[2 * columns + column + 1] * f;
+        }
+        chassis[0] = fwd;
+        chassis[1] = str;
+        chassis[2] = rcw;
+    }
+}
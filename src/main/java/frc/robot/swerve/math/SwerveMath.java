@@ -28,16 +28,11 @@ import java.util.List;
  * number of degrees relative to the firld's orientation: 0 means straight ahead down the field, 90 means to the right, etc.
  */
 public class SwerveMath {
-    // Robot dimensions. Units are of no importance. Required
-    private final double lengthDef;
-    private final double widthDef;
-    private final double lengthPlus;
-    private final double widthPlus;
+    // The number of wheel modules in the hex layout
+    public static final int MODULE_COUNT = 6;
 
-
-    // The diagonal of the robot dimensions. Internal
-    private final double diagonalDef;
-    private final double diagonalPlus;
+    // The module layout. Precomputes the inverse kinematics so move() is a single matrix-vector multiply.
+    private final SwerveKinematics kinematics;
 
     // The scale factor to control robot maximum speed. Optional.
     private final double SCALE_SPEED = 1.00;
@@ -57,20 +52,34 @@ public class SwerveMath {
      */
     
     public SwerveMath(double widthDef, double lengthDef, double widthPlus, double lengthPlus) {
+        this(SwerveKinematics.hexLayout(widthDef, lengthDef, lengthPlus));
+
         assert (widthDef > 0) : "Width has to be larger than 0";
         assert (lengthDef > 0) : "Length has to be larger than 0";
         assert (widthPlus > 0) : "Width has to be larger than 0";
         assert (lengthPlus > 0) : "Length has to be larger than 0";
+    }
 
-        this.widthDef = widthDef;
-        this.lengthDef = lengthDef;
-        this.widthPlus = widthPlus;
-        this.lengthPlus = lengthPlus;
+    /**
+     * Constructor
+     * @param kinematics the module layout to calculate directives for
+     */
+    public SwerveMath(SwerveKinematics kinematics) {
+        this.kinematics = kinematics;
+    }
 
-        diagonalDef = Math.sqrt(Math.pow(this.lengthDef, 2) + Math.pow(this.widthDef, 2));
-        diagonalPlus = Math.sqrt(Math.pow(this.lengthPlus, 2) + Math.pow(this.widthPlus, 2));
+    public SwerveKinematics getKinematics() {
+        return kinematics;
     }
 
+    /**
+     * Turns the bounded-error trig approximations in {@link FastMath} on or off for the heading rotation and the wheel
+     * angles. In robot-centric mode wheel angles stay within {@link FastMath#ATAN2_MAX_ERROR} radians of the exact
+     * calculation; in field-centric mode the rotated inputs can also be off by up to {@link FastMath#SIN_COS_MAX_ERROR}.
+     */
+    public void setFastMath(boolean fastMath) {
+        kinematics.setFastMath(fastMath);
+    }
 
     public CentricMode getCentricMode() {
         return centricMode;
@@ -98,91 +107,104 @@ public class SwerveMath {
         if ((gyroValue == null) && centricMode.equals(CentricMode.FIELD)) {
             throw new IllegalStateException("Cannot use field centric mode without a Gyro value");
         }
-        
-        //Adjust for Gyro (if wanted)
+
+        int moduleCount = kinematics.getModuleCount();
+        double[] angles = new double[moduleCount];
+        double[] speeds = new double[moduleCount];
+        move(fwd, str, rcw, gyroValue == null ? 0.0 : gyroValue, angles, speeds);
+
+        SwerveDirective[] directives = new SwerveDirective[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            directives[i] = new SwerveDirective(angles[i], speeds[i]);
+        }
+        return Arrays.asList(directives);
+    }
+
+    /**
+     * move
+     * Same calculation as {@link #move(double, double, double, Double)}, but the wheel angles and speeds are written into
+     * caller-owned arrays instead of a new list of directives, so nothing is allocated per call. Use this from the
+     * control loop.
+     * @param fwd the forward power value range -1.0(back) - 1.0(fwd)
+     * @param str the strafe power value range -1.0(left) - 1.0(right)
+     * @param rcw the rotation power value range -1.0(ccw) - 1.0(cw)
+     * @param gyroValue the gyro heading in degrees. Ignored unless the robot is in field-centric mode.
+     * @param angles output wheel angles (-0.5 to 0.5), one per module. Indices follow the same wheel numbering as the list version.
+     * @param speeds output wheel speeds (0 to 1), one per module.
+     */
+    public void move(double fwd, double str, double rcw, double gyroValue, double[] angles, double[] speeds) {
+        double sin = 0;
+        double cos = 1;
         if (isFieldCentric()){
             //Convert the gyro angle (in degrees) to radians.
             double gyro = (gyroValue * Math.PI) / 180;
 
-            double temp = fwd * Math.cos(gyro) + str * Math.sin(gyro);
-            str = -fwd * Math.sin(gyro) + str * Math.cos(gyro);
-            fwd = temp;
+            if (kinematics.isFastMath()) {
+                cos = FastMath.cos(gyro);
+                sin = FastMath.sin(gyro);
+            } else {
+                cos = Math.cos(gyro);
+                sin = Math.sin(gyro);
+            }
         }
+        move(fwd, str, rcw, sin, cos, angles, speeds);
+    }
 
-        //These 8 variables are used in the swerve drive calculations.
-
-        //Default
-        double a_Def = str - rcw*(lengthDef / diagonalDef);
-        double b_Def = str + rcw*(lengthDef / diagonalDef);
-        double c_Def = fwd - rcw*(widthDef / diagonalDef);
-        double d_Def = fwd + rcw*(widthDef / diagonalDef);
-        //Plus
-        double a_Plus = str - rcw*(lengthPlus / diagonalPlus);
-        double b_Plus = str + rcw*(lengthPlus / diagonalPlus);
-        double c_Plus = fwd - rcw*(widthPlus / diagonalPlus);
-        double d_Plus = fwd + rcw*(widthPlus / diagonalPlus);
-
-
-        //These are the equations for the wheel speed, for motors 1-6.
-        
-        double wsLF =  Math.sqrt(Math.pow(((0.75 * b_Def)+(0.25 * a_Def)),2)+Math.pow((1.25 * d_Def),2));
-        double wsRF =  Math.sqrt(Math.pow(((0.75 * b_Def)+(0.25 * a_Def)),2)+Math.pow((1.25 * c_Def),2));
-        double wsRB =  Math.sqrt(Math.pow(((0.75 * a_Def)+(0.25 * b_Def)),2)+Math.pow((1.25 * c_Def),2));
-        double wsLB =  Math.sqrt(Math.pow(((0.75 * a_Def)+(0.25 * b_Def)),2)+Math.pow((1.25 * d_Def),2));
-
-        double wsF =  Math.sqrt(Math.pow(b_Plus,2)+Math.pow((d_Plus/2 + c_Plus/2),2));
-        double wsB =  Math.sqrt(Math.pow(a_Plus,2)+Math.pow((d_Plus/2 + c_Plus/2),2));
-
-        //These are the equations for the wheel angle, for motors 1-6.
-        double waLF =  Math.atan2(((0.75 * b_Def)+(0.25 * a_Def)),(1.25 * d_Def))*180/Math.PI;
-        double waRF =  Math.atan2(((0.75 * b_Def)+(0.25 * a_Def)),(1.25 * c_Def))*180/Math.PI;
-        double waRB =  Math.atan2(((0.75 * a_Def)+(0.25 * b_Def)),(1.25 * c_Def))*180/Math.PI;
-        double waLB =  Math.atan2(((0.75 * a_Def)+(0.25 * b_Def)),(1.25 * d_Def))*180/Math.PI;
-
-        double waF =  Math.atan2((1.25 * b_Def),(d_Plus/2 + c_Plus/2))*180/Math.PI;
-        double waB =  Math.atan2((1.25 * a_Def),(d_Plus/2 + c_Plus/2))*180/Math.PI;
-
-        //This is to normalize the speed (if the largest speed is greater than 1, change accordingly).
-        double max = wsLF;
-        if(wsRF>max) max = wsRF;
-        if(wsRB>max) max = wsRB;
-        if(wsLB>max) max = wsLB;
-        if(wsF>max) max = wsF;
-        if(wsB>max) max = wsB;
-        if(max>1){
-            wsLF/=max;
-            wsRF/=max;
-            wsRB/=max;
-            wsLB/=max;
-            wsF/=max;
-            wsB/=max;
-        }
+    /**
+     * move
+     * Same as {@link #move(double, double, double, double, double[], double[])}, with the sine and cosine of the gyro
+     * heading already calculated by the caller (e.g. once per cycle by the gyro service). With the exact
+     * Math.sin/Math.cos of (gyroValue * Math.PI) / 180 the results are the same.
+     * @param sin the sine of the gyro heading. Ignored unless the robot is in field-centric mode.
+     * @param cos the cosine of the gyro heading. Ignored unless the robot is in field-centric mode.
+     */
+    public void move(double fwd, double str, double rcw, double sin, double cos, double[] angles, double[] speeds) {
 
-        //Wheel angle was in the range of -180 to 180. Now its -.5 to .5
-        waLF/=360;
-        waRF/=360;
-        waRB/=360;
-        waLB/=360;
-        waF/=360;
-        waB/=360;
+        //Adjust for Gyro (if wanted)
+        if (isFieldCentric()){
+            double temp = fwd * cos + str * sin;
+            str = -fwd * sin + str * cos;
+            fwd = temp;
+        }
 
+        kinematics.toModuleStates(fwd, str, rcw, angles, speeds);
 
         //Used to scale the movement speeds for testing (so you don't crash into walls)
-        wsLF*=SCALE_SPEED;
-        wsRF*=SCALE_SPEED;
-        wsRB*=SCALE_SPEED;
-        wsLB*=SCALE_SPEED;
-        wsF*=SCALE_SPEED;
-        wsB*=SCALE_SPEED;
-
-        SwerveDirective directiveLF = new SwerveDirective(waLF, wsLF);
-        SwerveDirective directiveRF = new SwerveDirective(waRF, wsRF);
-        SwerveDirective directiveRB = new SwerveDirective(waRB, wsRB);
-        SwerveDirective directiveLB = new SwerveDirective(waLB, wsLB);
-        SwerveDirective directiveF = new SwerveDirective(waF, wsF);
-        SwerveDirective directiveB = new SwerveDirective(waB, wsB);
-
-        return Arrays.asList(directiveLF, directiveRF, directiveRB, directiveLB, directiveF, directiveB);
+        for (int i = 0; i < kinematics.getModuleCount(); i++) {
+            speeds[i] *= SCALE_SPEED;
+        }
+    }
+
+    /**
+     * Turns a command into a robot-centric one: rotated by the gyro heading in field-centric mode, unchanged otherwise.
+     * This is the first step of {@link #move(double, double, double, double, double[], double[])}.
+     * @param gyroValue the gyro heading in degrees. Ignored unless the robot is in field-centric mode.
+     * @param command output: fwd, str and rcw, robot-centric
+     */
+    public void toRobotCentric(double fwd, double str, double rcw, double gyroValue, double[] command) {
+        double gyro = (gyroValue * Math.PI) / 180;
+        if (!isFieldCentric()) {
+            toRobotCentric(fwd, str, rcw, 0, 1, command);
+        } else if (kinematics.isFastMath()) {
+            toRobotCentric(fwd, str, rcw, FastMath.sin(gyro), FastMath.cos(gyro), command);
+        } else {
+            toRobotCentric(fwd, str, rcw, Math.sin(gyro), Math.cos(gyro), command);
+        }
+    }
+
+    /**
+     * Same as {@link #toRobotCentric(double, double, double, double, double[])}, with the sine and cosine of the gyro
+     * heading already calculated.
+     */
+    public void toRobotCentric(double fwd, double str, double rcw, double sin, double cos, double[] command) {
+        if (isFieldCentric()) {
+            double temp = fwd * cos + str * sin;
+            str = -fwd * sin + str * cos;
+            fwd = temp;
+        }
+        command[0] = fwd;
+        command[1] = str;
+        command[2] = rcw;
     }
 
     private boolean isFieldCentric() {
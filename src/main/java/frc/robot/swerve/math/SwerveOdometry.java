@@ -0,0 +1,203 @@
+package frc.robot.swerve.math;
+
+import frc.robot.util.DoubleSnapshot;
+
+/**
+ * Tracks the robot's position on the field by integrating the chassis velocity from forward kinematics.
+ *
+ * The position is field-relative: x is down the field (forward at heading 0) and y is to the right, in the same
+ * units as the module velocities passed to {@link #update}. The heading comes from the gyro (degrees, clockwise).
+ *
+ * {@link #update} is meant to be called from a single fixed-rate thread. The latest pose is published through a
+ * {@link DoubleSnapshot}, so commands can read it from any thread without blocking the update.
+ *
+ * When built with a history length, every step is also kept in a {@link PoseHistory}. That allows looking up where the
+ * robot was at a past time and fusing late measurements (e.g. a vision fix taken 80ms ago): the pose at the
+ * measurement time is corrected and the steps since then are replayed in place from their stored module states.
+ */
+public class SwerveOdometry {
+    // Indices into the published pose
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int HEADING = 2;
+    public static final int TIMESTAMP = 3;
+    public static final int POSE_SIZE = 4;
+
+    private final SwerveKinematics kinematics;
+    private final DoubleSnapshot snapshot = new DoubleSnapshot(POSE_SIZE);
+    private final PoseHistory history;
+
+    // Integrator state, guarded by this
+    private final double[] chassis = new double[3];
+    private final double[] pose = new double[POSE_SIZE];
+    private final double[] replayAngles;
+    private final double[] replaySpeeds;
+    private double headingOffset = 0;
+    private boolean initialized = false;
+
+    public SwerveOdometry(SwerveKinematics kinematics) {
+        this(kinematics, 0);
+    }
+
+    /**
+     * @param kinematics the module layout
+     * @param historyLength the number of steps to keep for latency compensation, 0 for none
+     */
+    public SwerveOdometry(SwerveKinematics kinematics, int historyLength) {
+        this.kinematics = kinematics;
+        this.history = historyLength > 0 ? new PoseHistory(historyLength, kinematics.getModuleCount()) : null;
+        this.replayAngles = new double[kinematics.getModuleCount()];
+        this.replaySpeeds = new double[kinematics.getModuleCount()];
+    }
+
+    public SwerveKinematics getKinematics() {
+        return kinematics;
+    }
+
+    /**
+     * Integrates one step of odometry and publishes the new pose. Nothing is allocated.
+     * @param timestamp the time the module states were measured, in seconds
+     * @param heading the gyro heading at that time, in degrees clockwise
+     * @param angles measured wheel angles in rotations, one per module
+     * @param speeds measured wheel velocities in distance units per second, one per module
+     */
+    public synchronized void update(double timestamp, double heading, double[] angles, double[] speeds) {
+        heading += headingOffset;
+
+        if (!initialized) {
+            pose[HEADING] = heading;
+            pose[TIMESTAMP] = timestamp;
+            initialized = true;
+            record(angles, speeds);
+            return;
+        }
+
+        double dt = timestamp - pose[TIMESTAMP];
+        if (dt <= 0) {
+            return;
+        }
+
+        integrate(dt, heading, angles, speeds);
+        pose[TIMESTAMP] = timestamp;
+        record(angles, speeds);
+    }
+
+    /**
+     * Fuses a position (and heading) measured at a past time. The pose at that time is moved towards the measurement
+     * by the given weight, and every step since then is replayed from the stored module states. Nothing is allocated.
+     * @param timestamp when the measurement was taken, on the same clock as {@link #update}
+     * @param x the measured field x
+     * @param y the measured field y
+     * @param heading the measured heading in degrees clockwise
+     * @param weight how much to trust the measurement, 0 (ignore) to 1 (replace)
+     * @return false if no history is kept or the measurement is older than the history
+     */
+    public synchronized boolean addMeasurement(double timestamp, double x, double y, double heading, double weight) {
+        if (history == null) {
+            return false;
+        }
+        int first = history.floorIndex(timestamp);
+        if (first < 0) {
+            return false;
+        }
+
+        // Correct the entry at (or just before) the measurement time by the error interpolated at that time
+        history.sample(timestamp, pose);
+        double dx = weight * (x - pose[X]);
+        double dy = weight * (y - pose[Y]);
+        double dHeading = weight * angleDifference(heading, pose[HEADING]);
+
+        pose[X] = history.getX(first) + dx;
+        pose[Y] = history.getY(first) + dy;
+        pose[HEADING] = history.getHeading(first) + dHeading;
+        pose[TIMESTAMP] = history.getTimestamp(first);
+        history.setPose(first, pose[X], pose[Y], pose[HEADING]);
+
+        // Replay the newer steps on top of the corrected pose
+        for (int i = first + 1; i < history.size(); i++) {
+            double timestampI = history.getTimestamp(i);
+            history.getModuleStates(i, replayAngles, replaySpeeds);
+            integrate(timestampI - pose[TIMESTAMP], history.getHeading(i) + dHeading, replayAngles, replaySpeeds);
+            pose[TIMESTAMP] = timestampI;
+            history.setPose(i, pose[X], pose[Y], pose[HEADING]);
+        }
+
+        headingOffset += dHeading;
+        snapshot.publish(pose);
+        return true;
+    }
+
+    /**
+     * Looks up the interpolated pose at a past time.
+     * @param pose output, at least 3 long: x, y and heading
+     * @return false if no history is kept or the time is older than the history
+     */
+    public synchronized boolean getPoseAt(double timestamp, double[] pose) {
+        return history != null && history.sample(timestamp, pose);
+    }
+
+    public PoseHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Advances the pose by one step, rotating the robot-relative velocity into the field frame using the heading
+     * halfway through the step.
+     */
+    private void integrate(double dt, double heading, double[] angles, double[] speeds) {
+        kinematics.toChassisSpeeds(angles, speeds, chassis);
+
+        double midHeading = Math.toRadians(pose[HEADING] + 0.5 * angleDifference(heading, pose[HEADING]));
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+
+        pose[X] += (chassis[0] * cos - chassis[1] * sin) * dt;
+        pose[Y] += (chassis[0] * sin + chassis[1] * cos) * dt;
+        pose[HEADING] = heading;
+    }
+
+    private void record(double[] angles, double[] speeds) {
+        if (history != null) {
+            history.add(pose[TIMESTAMP], pose[X], pose[Y], pose[HEADING], angles, speeds);
+        }
+        snapshot.publish(pose);
+    }
+
+    /**
+     * Moves the robot to a known position, e.g. at the start of autonomous. The heading is still taken from the gyro.
+     */
+    public synchronized void resetPosition(double x, double y) {
+        pose[X] = x;
+        pose[Y] = y;
+        if (history != null) {
+            history.clear();
+        }
+        snapshot.publish(pose);
+    }
+
+    /**
+     * Copies the latest pose without blocking. Use the X, Y, HEADING and TIMESTAMP constants to index it.
+     * @param target the array to copy into, at least {@link #POSE_SIZE} long
+     */
+    public void getPose(double[] target) {
+        snapshot.read(target);
+    }
+
+    public double getX() {
+        return snapshot.get(X);
+    }
+
+    public double getY() {
+        return snapshot.get(Y);
+    }
+
+    /**
+     * @return the smallest signed difference a - b between two headings in degrees (-180 to 180)
+     */
+    static double angleDifference(double a, double b) {
+        double difference = (a - b) % 360;
+        if (difference > 180) difference -= 360;
+        if (difference < -180) difference += 360;
+        return difference;
+    }
+}
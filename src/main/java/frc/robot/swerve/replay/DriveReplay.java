@@ -0,0 +1,318 @@
+package frc.robot.swerve.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import frc.robot.DriveConstants;
+import frc.robot.logging.FlightLogReader;
+import frc.robot.swerve.drive.BaseEnclosure;
+import frc.robot.swerve.drive.DriveCycleRecord;
+import frc.robot.swerve.math.CentricMode;
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * Replays recorded drive cycles ({@link DriveCycleRecord} flight logs) through the current SwerveMath and
+ * BaseEnclosure code, offline, and checks that they still produce the recorded outputs.
+ *
+ * Every record's inputs (fwd, str, rcw, gyro, centric mode) go through {@link SwerveMath#move} and are compared to
+ * the recorded wheel angles and speeds; the recorded wheel commands and encoder positions then go through
+ * {@link BaseEnclosure#move(double, double, int)} on fake enclosures, with cosine scaling on or off as recorded, and
+ * are compared to the speeds and angles that were sent to the motors. Values match if they are bit for bit equal, or
+ * within the tolerance if one is given.
+ *
+ * The steer profile depends on the time between cycles and its own history rather than on the record, so it is not
+ * run again: with the profile on, the replayed angle is compared to the recorded target before the profile instead of
+ * the setpoint that was sent (which is in the log for plotting).
+ *
+ * Nothing touches the hardware or the clock, so a replay runs as fast as the CPU allows, and {@link #replayAll}
+ * replays many files in parallel, one per core.
+ *
+ * Run it directly to check a directory of logs against the robot's layout:
+ * <pre>
+ * java -cp robot.jar frc.robot.swerve.replay.DriveReplay &lt;log file or directory&gt;...
+ * </pre>
+ */
+public class DriveReplay {
+	private final double widthDef;
+	private final double lengthDef;
+	private final double widthPlus;
+	private final double lengthPlus;
+	private final double gearRatio;
+	private final double tolerance;
+
+	/**
+	 * @param gearRatio the steer encoder counts per turn the logs were recorded with
+	 * @param tolerance the largest allowed difference, 0 for bit for bit
+	 */
+	public DriveReplay(double widthDef, double lengthDef, double widthPlus, double lengthPlus, double gearRatio,
+			double tolerance) {
+		this.widthDef = widthDef;
+		this.lengthDef = lengthDef;
+		this.widthPlus = widthPlus;
+		this.lengthPlus = lengthPlus;
+		this.gearRatio = gearRatio;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Replays every record of one log. Safe to call from several threads at once.
+	 */
+	public Result replay(FlightLogReader log) throws IOException {
+		if (log.getFieldCount() != DriveCycleRecord.SIZE) {
+			throw new IOException("Not a drive cycle log (" + log.getFieldCount() + " fields): " + log.getFile());
+		}
+
+		SwerveMath swerveMath = new SwerveMath(widthDef, lengthDef, widthPlus, lengthPlus);
+		int modules = DriveCycleRecord.MODULES;
+		ReplayEnclosure[] enclosures = new ReplayEnclosure[modules];
+		for (int i = 0; i < modules; i++) {
+			enclosures[i] = new ReplayEnclosure(gearRatio);
+		}
+
+		double[] record = new double[DriveCycleRecord.SIZE];
+		double[] angles = new double[modules];
+		double[] speeds = new double[modules];
+		Result result = new Result(log.getFile());
+
+		for (int r = 0; r < log.getRecordCount(); r++) {
+			log.readRecord(r, record);
+			result.records++;
+
+			swerveMath.setCentricMode(record[DriveCycleRecord.FIELD_CENTRIC] != 0 ? CentricMode.FIELD : CentricMode.ROBOT);
+			swerveMath.move(record[DriveCycleRecord.FWD], record[DriveCycleRecord.STR], record[DriveCycleRecord.RCW],
+					record[DriveCycleRecord.GYRO], angles, speeds);
+
+			boolean match = true;
+			for (int i = 0; i < modules; i++) {
+				match &= result.compareMath(record[DriveCycleRecord.WHEEL_ANGLE + i], angles[i]);
+				match &= result.compareMath(record[DriveCycleRecord.WHEEL_SPEED + i], speeds[i]);
+
+				// Replay the recorded command so an enclosure difference is not hidden by a math difference
+				enclosures[i].setCosineScaling(record[DriveCycleRecord.COSINE_SCALING] != 0);
+				enclosures[i].move(record[DriveCycleRecord.WHEEL_SPEED + i], record[DriveCycleRecord.WHEEL_ANGLE + i],
+						(int) record[DriveCycleRecord.ENC_POSITION + i]);
+				match &= result.compareOutput(record[DriveCycleRecord.OUTPUT_SPEED + i], enclosures[i].speed);
+				// The angle is only sent when the wheel moves (with cosine scaling, when it is told to move)
+				if (enclosures[i].turned) {
+					int recorded = record[DriveCycleRecord.STEER_PROFILE] != 0
+							? DriveCycleRecord.OUTPUT_TARGET
+							: DriveCycleRecord.OUTPUT_ANGLE;
+					match &= result.compareOutput(record[recorded + i], enclosures[i].angle);
+				}
+			}
+
+			if (!match) {
+				result.mismatches++;
+				if (result.firstMismatch < 0) {
+					result.firstMismatch = r;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replays many logs in parallel, one per thread.
+	 * @param threads the number of threads, e.g. Runtime.getRuntime().availableProcessors()
+	 * @return the results, in the same order as the files
+	 */
+	public List<Result> replayAll(List<File> files, int threads) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Result>> tasks = new ArrayList<>();
+			for (File file : files) {
+				tasks.add(() -> replay(new FlightLogReader(file)));
+			}
+
+			List<Result> results = new ArrayList<>();
+			for (Future<Result> future : executor.invokeAll(tasks)) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private boolean matches(double recorded, double replayed) {
+		if (Double.doubleToLongBits(recorded) == Double.doubleToLongBits(replayed)) {
+			return true;
+		}
+		return Math.abs(recorded - replayed) <= tolerance;
+	}
+
+	/**
+	 * The outcome of replaying one log.
+	 */
+	public class Result {
+		private final File file;
+		private long records = 0;
+		private long mismatches = 0;
+		private long firstMismatch = -1;
+		private double maxMathError = 0;
+		private double maxOutputError = 0;
+
+		Result(File file) {
+			this.file = file;
+		}
+
+		private boolean compareMath(double recorded, double replayed) {
+			maxMathError = Math.max(maxMathError, Math.abs(recorded - replayed));
+			return matches(recorded, replayed);
+		}
+
+		private boolean compareOutput(double recorded, double replayed) {
+			maxOutputError = Math.max(maxOutputError, Math.abs(recorded - replayed));
+			return matches(recorded, replayed);
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getRecords() {
+			return records;
+		}
+
+		/**
+		 * @return the number of records with at least one value out of tolerance
+		 */
+		public long getMismatches() {
+			return mismatches;
+		}
+
+		/**
+		 * @return the index of the first mismatching record, or -1
+		 */
+		public long getFirstMismatch() {
+			return firstMismatch;
+		}
+
+		/**
+		 * @return the largest difference in the SwerveMath wheel angles and speeds
+		 */
+		public double getMaxMathError() {
+			return maxMathError;
+		}
+
+		/**
+		 * @return the largest difference in the speeds and angles sent by the enclosures
+		 */
+		public double getMaxOutputError() {
+			return maxOutputError;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + ": " + records + " records, " + mismatches + " mismatches"
+					+ (firstMismatch >= 0 ? " (first at " + firstMismatch + ")" : "")
+					+ ", max math error " + maxMathError + ", max output error " + maxOutputError;
+		}
+	}
+
+	/**
+	 * An enclosure without hardware that keeps what BaseEnclosure sent it.
+	 */
+	private static class ReplayEnclosure extends BaseEnclosure {
+		private int encPosition;
+		private double speed;
+		private double angle;
+		private boolean turned;
+
+		ReplayEnclosure(double gearRatio) {
+			super("replay", gearRatio);
+		}
+
+		@Override
+		public int getEncPosition() {
+			return encPosition;
+		}
+
+		@Override
+		protected void setEncPosition(int encPosition) {
+			this.encPosition = encPosition;
+		}
+
+		@Override
+		protected void setSpeed(double speed) {
+			this.speed = speed;
+		}
+
+		@Override
+		public void move(double speed, double angle, int encPosition) {
+			turned = false;
+			super.move(speed, angle, encPosition);
+		}
+
+		@Override
+		protected void setAngle(double angle) {
+			this.angle = angle;
+			turned = true;
+		}
+
+		@Override
+		public double getVelocity() {
+			return 0;
+		}
+
+		@Override
+		public void stop() {
+		}
+	}
+
+	/**
+	 * Replays the given logs (or every log in the given directories) against the robot's layout in parallel. Exits
+	 * with status 1 if any record does not match.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: DriveReplay <log file or directory>...");
+			return;
+		}
+		List<File> files = new ArrayList<>();
+		for (String arg : args) {
+			File path = new File(arg);
+			File[] found = path.isDirectory() ? path.listFiles((dir, name) -> name.endsWith(".bin")) : new File[] { path };
+			if (found != null) {
+				Arrays.sort(found);
+				files.addAll(Arrays.asList(found));
+			}
+		}
+
+		// DriveConstants, so the Drivetrain (and WPILib) is never loaded
+		DriveReplay replay = new DriveReplay(DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.W_Plus,
+				DriveConstants.L_Plus, DriveConstants.GEAR_RATIO, 0);
+
+		long start = System.nanoTime();
+		List<Result> results = replay.replayAll(files, Runtime.getRuntime().availableProcessors());
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long records = 0;
+		long mismatches = 0;
+		for (Result result : results) {
+			System.out.println(result);
+			records += result.getRecords();
+			mismatches += result.getMismatches();
+		}
+		System.out.printf("%d records from %d files in %.2fs, %d mismatches%n", records, results.size(), seconds,
+				mismatches);
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+}
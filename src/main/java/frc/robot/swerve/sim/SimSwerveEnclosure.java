@@ -0,0 +1,223 @@
+package frc.robot.swerve.sim;
+
+import frc.robot.swerve.drive.BaseEnclosure;
+import frc.robot.swerve.drive.DriveFeedforward;
+import frc.robot.swerve.drive.SwerveEnclosure;
+
+/**
+ * An implementation of the SwerveEnclosure that simulates the module instead of talking to hardware, so the drive code
+ * can run and be benchmarked off the robot.
+ *
+ * - The steer motor is a first-order position loop: the wheel closes the distance to its setpoint with a time
+ *   constant, limited to a maximum turn rate. With {@link #setSteerMotor} it is instead a motor with inertia (kS, kV,
+ *   kA) under a Talon PD loop running every millisecond, which overshoots and rings like the real one.
+ * - The drive motor is a first-order velocity response: the wheel approaches (output * top speed) with a time constant.
+ * - The steer encoder reads whole counts (gearRatio counts per turn), and the velocity is quantized to the Talon's
+ *   counts per 100ms, so the control code sees the same resolution as on the robot.
+ *
+ * Nothing moves until {@link #step(double)} is called, which makes the simulation independent of wall-clock time.
+ */
+public class SimSwerveEnclosure extends BaseEnclosure implements SwerveEnclosure {
+
+	private final double maxSpeed;
+
+	private double steerTimeConstant = 0.05;
+	// Rotations per second
+	private double maxSteerRate = 2.5;
+	private double driveTimeConstant = 0.1;
+	private double driveDistancePerCount = 1.0;
+
+	// Steer motor model, instead of the first-order loop if not null
+	private DriveFeedforward steerMotor = null;
+	// Volts per rotation of error, volts per rotation per second, and the output limit
+	private double steerGain;
+	private double steerDamping;
+	private double maxSteerVolts;
+	// Feedforward of profiled setpoints, none if null
+	private DriveFeedforward steerFeedforward = null;
+	private double steerFeedforwardVolts = 0;
+	// Rotations per second
+	private double steerVelocity = 0;
+
+	// The Talon closes its loops every millisecond
+	private static final double TALON_LOOP_PERIOD = 0.001;
+
+	// Physical steer position in encoder counts, and the sensor offset set by setEncPosition
+	private double steerPosition = 0;
+	private double encoderOffset = 0;
+	// Steer setpoint in sensor counts
+	private double steerSetpoint = 0;
+
+	private double driveOutput = 0;
+	private double wheelVelocity = 0;
+
+	/**
+	 * @param name the name of the enclosure
+	 * @param gearRatio the steer encoder counts per turn of the wheel
+	 * @param maxSpeed the wheel velocity at full output, in distance units per second
+	 */
+	public SimSwerveEnclosure(String name, double gearRatio, double maxSpeed) {
+		super(name, gearRatio);
+		this.maxSpeed = maxSpeed;
+	}
+
+	/**
+	 * Advances the motor models.
+	 * @param dt the time step, in seconds
+	 */
+	public void step(double dt) {
+		if (steerMotor != null) {
+			stepSteerMotor(dt);
+		} else {
+			// Exact discretization of the first-order responses, so large steps stay stable
+			double steerError = steerSetpoint - (steerPosition + encoderOffset);
+			double maxTurn = maxSteerRate * gearRatio * dt;
+			double turn = steerError * (1 - Math.exp(-dt / steerTimeConstant));
+			steerPosition += Math.max(-maxTurn, Math.min(maxTurn, turn));
+		}
+
+		double targetVelocity = driveOutput * maxSpeed;
+		wheelVelocity += (targetVelocity - wheelVelocity) * (1 - Math.exp(-dt / driveTimeConstant));
+	}
+
+	/**
+	 * Advances the steer motor model, one Talon loop at a time.
+	 */
+	private void stepSteerMotor(double dt) {
+		int loops = Math.max(1, (int) Math.round(dt / TALON_LOOP_PERIOD));
+		double h = dt / loops;
+		for (int i = 0; i < loops; i++) {
+			// The Talon sees whole encoder counts
+			double error = (steerSetpoint - getEncPosition()) / gearRatio;
+			double volts = steerGain * error - steerDamping * steerVelocity + steerFeedforwardVolts;
+			volts = Math.max(-maxSteerVolts, Math.min(maxSteerVolts, volts));
+
+			// Static friction holds a resting wheel until the voltage overcomes it
+			if (steerVelocity == 0 && Math.abs(volts) <= steerMotor.getS()) {
+				continue;
+			}
+			double direction = steerVelocity != 0 ? Math.signum(steerVelocity) : Math.signum(volts);
+			double acceleration = (volts - steerMotor.getS() * direction - steerMotor.getV() * steerVelocity)
+					/ steerMotor.getA();
+			double velocity = steerVelocity + acceleration * h;
+			// Friction stops the wheel rather than turning it around
+			if (steerVelocity != 0 && Math.signum(velocity) != Math.signum(steerVelocity)) {
+				velocity = 0;
+			}
+			steerVelocity = velocity;
+			steerPosition += velocity * h * gearRatio;
+		}
+	}
+
+	@Override
+	public void stop() {
+		driveOutput = 0;
+		steerSetpoint = steerPosition + encoderOffset;
+		steerFeedforwardVolts = 0;
+		resetSteerProfile();
+	}
+
+	@Override
+	protected void setSpeed(double speed) {
+		driveOutput = Math.max(-1, Math.min(1, speed));
+	}
+
+	@Override
+	protected void setAngle(double angle) {
+		steerSetpoint = angle * gearRatio;
+		steerFeedforwardVolts = 0;
+	}
+
+	@Override
+	protected void setAngle(double angle, double velocity, double acceleration) {
+		steerSetpoint = angle * gearRatio;
+		steerFeedforwardVolts = steerFeedforward != null ? steerFeedforward.calculate(velocity, acceleration) : 0;
+	}
+
+	@Override
+	public int getEncPosition() {
+		return (int) Math.round(steerPosition + encoderOffset);
+	}
+
+	@Override
+	protected void setEncPosition(int encPosition) {
+		encoderOffset = encPosition - steerPosition;
+	}
+
+	@Override
+	public double getVelocity() {
+		// The Talon reports whole counts per 100ms
+		double countsPer100ms = Math.round(wheelVelocity / driveDistancePerCount / 10);
+		return countsPer100ms * 10 * driveDistancePerCount;
+	}
+
+	/**
+	 * @return the actual angle of the wheel in rotations (not quantized, unaffected by setEncPosition), positive
+	 *         clockwise. Keeps counting past one turn.
+	 */
+	public double getTrueAngle() {
+		return steerPosition / gearRatio;
+	}
+
+	/**
+	 * @return the actual velocity of the wheel in distance units per second (not quantized)
+	 */
+	public double getTrueVelocity() {
+		return wheelVelocity;
+	}
+
+	/**
+	 * @param timeConstant the time for the steer motor to close 63% of the distance to its setpoint, in seconds
+	 * @param maxRate the fastest the wheel can turn, in rotations per second
+	 */
+	public void setSteerModel(double timeConstant, double maxRate) {
+		this.steerTimeConstant = timeConstant;
+		this.maxSteerRate = maxRate;
+	}
+
+	/**
+	 * Simulates the steer motor with inertia under a Talon PD position loop, instead of the first-order loop.
+	 * @param motor the motor's feedforward, velocity in rotations per second; kA has to be larger than 0
+	 * @param gain the loop's proportional gain, in volts per rotation of error
+	 * @param damping the loop's derivative gain, in volts per rotation per second
+	 * @param maxVolts the largest voltage the loop applies
+	 */
+	public void setSteerMotor(DriveFeedforward motor, double gain, double damping, double maxVolts) {
+		assert (motor.getA() > 0) : "the steer motor needs inertia";
+		this.steerMotor = motor;
+		this.steerGain = gain;
+		this.steerDamping = damping;
+		this.maxSteerVolts = maxVolts;
+		this.steerVelocity = 0;
+	}
+
+	/**
+	 * @param feedforward the steer feedforward sent with profiled setpoints (velocity in rotations per second), or null
+	 *                    for none. Only used with {@link #setSteerMotor}.
+	 */
+	public void setSteerFeedforward(DriveFeedforward feedforward) {
+		this.steerFeedforward = feedforward;
+	}
+
+	/**
+	 * @return the actual turn rate of the wheel in rotations per second, with {@link #setSteerMotor}
+	 */
+	public double getTrueSteerVelocity() {
+		return steerVelocity;
+	}
+
+	/**
+	 * @param timeConstant the time for the wheel to reach 63% of a new velocity, in seconds
+	 */
+	public void setDriveModel(double timeConstant) {
+		this.driveTimeConstant = timeConstant;
+	}
+
+	/**
+	 * @param driveDistancePerCount the distance the wheel travels per drive encoder count, used to quantize
+	 *                              {@link #getVelocity()}
+	 */
+	public void setDriveDistancePerCount(double driveDistancePerCount) {
+		this.driveDistancePerCount = driveDistancePerCount;
+	}
+}
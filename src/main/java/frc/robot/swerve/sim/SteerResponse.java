@@ -0,0 +1,207 @@
+package frc.robot.swerve.sim;
+
+import java.io.File;
+
+import frc.robot.DriveConstants;
+import frc.robot.characterization.DriveCharacterization;
+import frc.robot.swerve.drive.DriveFeedforward;
+import frc.robot.swerve.drive.SteerProfile;
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * Measures how the modules respond to a change in the chassis command on the {@link SwerveSimulator}, with the steer
+ * motors simulated under their Talon position loop: how long until every wheel settles at its new angle, how far the
+ * wheels overshoot, and how far the robot drifts off the new direction while they turn.
+ *
+ * Run it directly to compare the steer options on the robot's layout (plain setpoints, cosine scaling, the steer
+ * profile, and both), optionally with the measured steer constants of the first module:
+ * <pre>
+ * java -cp robot.jar frc.robot.swerve.sim.SteerResponse [drive-characterization.properties]
+ * </pre>
+ */
+public class SteerResponse {
+	/** A wheel has settled once it stays within this many degrees of its final angle. */
+	public static final double SETTLE_TOLERANCE = 2.0;
+	// Time on the first command before the change, and after it
+	private static final double LEAD_TIME = 1.0;
+	private static final double RESPONSE_TIME = 1.0;
+
+	// A steer motor as assumed until one is characterized: volts, rotations of the wheel and seconds
+	private static final DriveFeedforward DEFAULT_STEER_MOTOR = new DriveFeedforward(0.4, 4.0, 0.15);
+
+	// The Talon closed loop: full output is 1023, the loop runs every millisecond
+	private static final double TALON_FULL_OUTPUT = 1023;
+	private static final double TALON_LOOPS_PER_SECOND = 1000;
+
+	/**
+	 * The response to one change of command.
+	 */
+	public static class Response {
+		private final double settleTime;
+		private final double overshoot;
+		private final double drift;
+
+		Response(double settleTime, double overshoot, double drift) {
+			this.settleTime = settleTime;
+			this.overshoot = overshoot;
+			this.drift = drift;
+		}
+
+		/**
+		 * @return the time from the change until the last wheel settled, in seconds
+		 */
+		public double getSettleTime() {
+			return settleTime;
+		}
+
+		/**
+		 * @return how far the worst wheel went past its final angle, in degrees
+		 */
+		public double getOvershoot() {
+			return overshoot;
+		}
+
+		/**
+		 * @return how far the robot moved across the new direction of travel after the change, in inches
+		 */
+		public double getDrift() {
+			return drift;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("settles in %3.0f ms, overshoot %4.1f deg, drift %4.2f in", settleTime * 1000,
+					overshoot, drift);
+		}
+	}
+
+	private final SwerveSimulator simulator;
+
+	/**
+	 * @param simulator the simulated drive, with its steer options already set
+	 */
+	public SteerResponse(SwerveSimulator simulator) {
+		this.simulator = simulator;
+	}
+
+	/**
+	 * Builds the simulated drive with the robot's layout and steer loop, at the drive loop rate.
+	 * @param steerMotor the steer motor model, velocity in rotations per second
+	 * @param gain the Talon P gain of the steer loop
+	 * @param damping the Talon D gain of the steer loop
+	 * @param profile true to move the steer setpoints along a profile, with the motor's feedforward
+	 * @param cosineScaling true to scale the drive speed by the cosine of the steer error
+	 */
+	public static SteerResponse forRobot(DriveFeedforward steerMotor, double gain, double damping, boolean profile,
+			boolean cosineScaling) {
+		SwerveSimulator simulator = SwerveSimulator.hexDrive(DriveConstants.GEAR_RATIO, DriveConstants.MAX_SPEED,
+				DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.W_Plus, DriveConstants.L_Plus,
+				DriveConstants.DRIVE_LOOP_PERIOD);
+		// Talon units to volts per rotation, and per rotation per second
+		double scale = DriveConstants.GEAR_RATIO / TALON_FULL_OUTPUT * DriveConstants.NOMINAL_VOLTAGE;
+		for (int i = 0; i < SwerveMath.MODULE_COUNT; i++) {
+			SimSwerveEnclosure module = simulator.getModule(i);
+			module.setSteerMotor(steerMotor, gain * scale, damping * scale * TALON_LOOPS_PER_SECOND,
+					DriveConstants.NOMINAL_VOLTAGE);
+			if (profile) {
+				module.setSteerProfile(new SteerProfile(DriveConstants.STEER_CRUISE_VELOCITY,
+						DriveConstants.STEER_ACCELERATION, simulator::getTime));
+				module.setSteerFeedforward(steerMotor);
+			}
+			module.setCosineScaling(cosineScaling);
+		}
+		return new SteerResponse(simulator);
+	}
+
+	/**
+	 * Drives with one command until the wheels are steady, then switches to another and measures the response.
+	 * @param before the first command: fwd, str and rcw
+	 * @param after the command to switch to
+	 */
+	public Response measure(double[] before, double[] after) {
+		simulator.run(LEAD_TIME, (time, command) -> System.arraycopy(before, 0, command, 0, 3));
+
+		int modules = SwerveMath.MODULE_COUNT;
+		double[] start = new double[modules];
+		for (int i = 0; i < modules; i++) {
+			start[i] = simulator.getModule(i).getTrueAngle();
+		}
+		double x = simulator.getX();
+		double y = simulator.getY();
+
+		int cycles = (int) Math.round(RESPONSE_TIME / simulator.getPeriod());
+		double[][] angles = new double[cycles][modules];
+		for (int c = 0; c < cycles; c++) {
+			simulator.step(after[0], after[1], after[2]);
+			for (int i = 0; i < modules; i++) {
+				angles[c][i] = simulator.getModule(i).getTrueAngle();
+			}
+		}
+
+		// The wheels have long settled by the end; measure against where they are then
+		int settled = 0;
+		double overshoot = 0;
+		for (int i = 0; i < modules; i++) {
+			double end = angles[cycles - 1][i];
+			double direction = Math.signum(end - start[i]);
+			for (int c = 0; c < cycles; c++) {
+				double error = (angles[c][i] - end) * 360;
+				if (Math.abs(error) > SETTLE_TOLERANCE) {
+					settled = Math.max(settled, c + 1);
+				}
+				overshoot = Math.max(overshoot, error * direction);
+			}
+		}
+
+		// Movement across the new direction of travel, or any movement if there is none
+		double dx = simulator.getX() - x;
+		double dy = simulator.getY() - y;
+		double travel = Math.hypot(after[0], after[1]);
+		double drift = travel > 0
+				? Math.abs(dx * after[1] - dy * after[0]) / travel
+				: Math.hypot(dx, dy);
+		return new Response(settled * simulator.getPeriod(), overshoot, drift);
+	}
+
+	public SwerveSimulator getSimulator() {
+		return simulator;
+	}
+
+	/**
+	 * Prints the response to a few command changes with every combination of the steer options. args[0], if given,
+	 * is a characterization file to take the steer motor and gains of the first module from.
+	 */
+	public static void main(String[] args) {
+		DriveFeedforward steerMotor = DEFAULT_STEER_MOTOR;
+		double gain = DriveConstants.STEER_P;
+		double damping = DriveConstants.STEER_D;
+		if (args.length > 0) {
+			DriveCharacterization characterization = DriveCharacterization.load(new File(args[0]),
+					DriveConstants.getModuleNames());
+			if (characterization == null || characterization.getSteerFeedforward(0) == null) {
+				System.err.println("No steer characterization in " + args[0]);
+				System.exit(1);
+			}
+			steerMotor = characterization.getSteerFeedforward(0);
+			gain = characterization.getSteerP(0);
+			damping = characterization.getSteerD(0);
+		}
+		System.out.printf("Steer motor %s, P %.3f, D %.3f%n", steerMotor, gain, damping);
+
+		String[] names = { "strafe from rest", "forward to strafe", "forward to diagonal", "forward to spin" };
+		double[][][] changes = {
+			{ { 0, 0, 0 }, { 0, 0.5, 0 } },
+			{ { 0.5, 0, 0 }, { 0, 0.5, 0 } },
+			{ { 0.5, 0, 0 }, { 0.35, 0.35, 0 } },
+			{ { 0.5, 0, 0 }, { 0, 0, 0.5 } }
+		};
+		String[] options = { "plain", "cosine", "profile", "profile + cosine" };
+		for (int n = 0; n < names.length; n++) {
+			System.out.println(names[n] + ":");
+			for (int o = 0; o < options.length; o++) {
+				SteerResponse response = forRobot(steerMotor, gain, damping, o >= 2, o % 2 == 1);
+				System.out.printf("  %-17s %s%n", options[o], response.measure(changes[n][0], changes[n][1]));
+			}
+		}
+	}
+}
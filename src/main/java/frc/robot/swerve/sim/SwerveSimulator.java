@@ -0,0 +1,195 @@
+package frc.robot.swerve.sim;
+
+import frc.robot.swerve.drive.SwerveDrive;
+import frc.robot.swerve.math.SwerveKinematics;
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * Runs a {@link SwerveDrive} on simulated modules in simulated time, as fast as the CPU allows.
+ *
+ * Every {@link #step} is one control cycle: the sensors are sampled, SwerveDrive.move runs exactly as on the robot,
+ * the module models advance by one period and the chassis pose is integrated from the true (unquantized) wheel states
+ * through the forward kinematics. The heading fed back to the drive is the true heading, i.e. a perfect gyro.
+ *
+ * The pose uses the same frame as {@link frc.robot.swerve.math.SwerveOdometry}: x down the field, y to the right,
+ * heading in degrees clockwise. Nothing is allocated per cycle.
+ *
+ * In I/O mode the drive goes through its {@link frc.robot.swerve.drive.SwerveModuleIO} like on the robot, but the I/O
+ * cycle runs inline after every move instead of on its own thread, so runs stay deterministic.
+ */
+public class SwerveSimulator {
+
+	/**
+	 * Supplies the chassis command for every cycle of {@link #run}.
+	 */
+	public interface Driver {
+		/**
+		 * @param time the simulated time, in seconds
+		 * @param command output: fwd, str and rcw, -1 to 1
+		 */
+		void command(double time, double[] command);
+	}
+
+	private final SimSwerveEnclosure[] modules;
+	private final SwerveDrive swerveDrive;
+	private final SwerveKinematics kinematics;
+	private final double period;
+
+	private final double[] trueAngles;
+	private final double[] trueSpeeds;
+	private final double[] chassis = new double[3];
+	private final double[] command = new double[3];
+
+	private double time = 0;
+	private double x = 0;
+	private double y = 0;
+	private double heading = 0;
+	private long cycles = 0;
+
+	/**
+	 * @param modules the simulated modules in the same order as the SwerveMath directives: front-left, front-right,
+	 *                back-right, back-left, front, back
+	 * @param period the control period, in seconds
+	 */
+	public SwerveSimulator(SimSwerveEnclosure[] modules, double widthDef, double lengthDef, double widthPlus,
+			double lengthPlus, double period) {
+		assert (modules.length == SwerveMath.MODULE_COUNT) : "the hex drive has " + SwerveMath.MODULE_COUNT + " modules";
+		assert (period > 0) : "period has to be larger than 0";
+
+		this.modules = modules;
+		this.period = period;
+		// SwerveDrive drives its enclosures in the order they are passed, which has to be the directive order (like the
+		// Drivetrain does), whatever its parameter names say
+		this.swerveDrive = new SwerveDrive(modules[0], modules[1], modules[2], modules[3], modules[4], modules[5],
+				widthDef, lengthDef, widthPlus, lengthPlus);
+		this.kinematics = swerveDrive.getKinematics();
+		this.trueAngles = new double[modules.length];
+		this.trueSpeeds = new double[modules.length];
+	}
+
+	/**
+	 * Builds a simulator with six identical modules.
+	 * @param gearRatio the steer encoder counts per turn of the wheel
+	 * @param maxSpeed the wheel velocity at full output, in distance units per second
+	 */
+	public static SwerveSimulator hexDrive(double gearRatio, double maxSpeed, double widthDef, double lengthDef,
+			double widthPlus, double lengthPlus, double period) {
+		SimSwerveEnclosure[] modules = {
+			new SimSwerveEnclosure("sim NW", gearRatio, maxSpeed),
+			new SimSwerveEnclosure("sim NE", gearRatio, maxSpeed),
+			new SimSwerveEnclosure("sim SE", gearRatio, maxSpeed),
+			new SimSwerveEnclosure("sim SW", gearRatio, maxSpeed),
+			new SimSwerveEnclosure("sim N", gearRatio, maxSpeed),
+			new SimSwerveEnclosure("sim S", gearRatio, maxSpeed)
+		};
+		return new SwerveSimulator(modules, widthDef, lengthDef, widthPlus, lengthPlus, period);
+	}
+
+	/**
+	 * Runs one control cycle.
+	 * @param fwd the forward component, -1 to 1
+	 * @param str the strafe component, -1 to 1
+	 * @param rcw the rotation component, -1 to 1
+	 */
+	public void step(double fwd, double str, double rcw) {
+		swerveDrive.sampleSensors(heading, time);
+		swerveDrive.move(fwd, str, rcw, heading);
+		if (swerveDrive.isIoMode()) {
+			swerveDrive.getModuleIO().cycle();
+		}
+
+		for (int i = 0; i < modules.length; i++) {
+			modules[i].step(period);
+			trueAngles[i] = modules[i].getTrueAngle();
+			trueSpeeds[i] = modules[i].getTrueVelocity();
+		}
+		integrate();
+
+		time += period;
+		cycles++;
+	}
+
+	/**
+	 * Runs control cycles until the simulated time has advanced by the given duration.
+	 * @return the number of cycles run
+	 */
+	public int run(double duration, Driver driver) {
+		int count = (int) Math.round(duration / period);
+		for (int i = 0; i < count; i++) {
+			driver.command(time, command);
+			step(command[0], command[1], command[2]);
+		}
+		return count;
+	}
+
+	/**
+	 * Moves the chassis by one period, rotating the robot-relative velocity into the field frame at the heading
+	 * halfway through the step.
+	 */
+	private void integrate() {
+		kinematics.toChassisSpeeds(trueAngles, trueSpeeds, chassis);
+
+		double headingChange = Math.toDegrees(chassis[2] / kinematics.getMaxRadius()) * period;
+		double midHeading = Math.toRadians(heading + 0.5 * headingChange);
+		double cos = Math.cos(midHeading);
+		double sin = Math.sin(midHeading);
+
+		x += (chassis[0] * cos - chassis[1] * sin) * period;
+		y += (chassis[0] * sin + chassis[1] * cos) * period;
+		heading += headingChange;
+	}
+
+	/**
+	 * Moves the robot to a pose without changing the module states.
+	 */
+	public void resetPose(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+	}
+
+	/**
+	 * Routes the drive through its I/O layer (sensors read and commands flushed one cycle apart), or inline.
+	 */
+	public void setIoMode(boolean ioMode) {
+		swerveDrive.setIoMode(ioMode);
+	}
+
+	public SwerveDrive getSwerveDrive() {
+		return swerveDrive;
+	}
+
+	public SimSwerveEnclosure getModule(int module) {
+		return modules[module];
+	}
+
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return the simulated time, in seconds
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @return the true heading in degrees clockwise (keeps counting past one turn, like the gyro)
+	 */
+	public double getHeading() {
+		return heading;
+	}
+}
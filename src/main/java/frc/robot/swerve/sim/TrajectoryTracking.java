@@ -0,0 +1,117 @@
+package frc.robot.swerve.sim;
+
+import java.io.File;
+import java.util.Map;
+
+import frc.robot.DriveConstants;
+import frc.robot.swerve.math.CentricMode;
+import frc.robot.swerve.math.SwerveOdometry;
+import frc.robot.swerve.trajectory.Trajectory;
+import frc.robot.swerve.trajectory.TrajectoryFollower;
+
+/**
+ * Drives trajectories with a {@link TrajectoryFollower} on the {@link SwerveSimulator}, headless and in simulated
+ * time, and reports how closely they were tracked. The follower sees the true pose, so the error is that of the
+ * follower and the drive response alone.
+ *
+ * Run it directly to check every trajectory in a directory on the robot's layout:
+ * <pre>
+ * java -cp robot.jar frc.robot.swerve.sim.TrajectoryTracking &lt;trajectory directory&gt;
+ * </pre>
+ */
+public class TrajectoryTracking {
+	// Time to keep simulating after the end, for the drive to come to rest
+	private static final double SETTLE_TIME = 0.5;
+
+	private final SwerveSimulator simulator;
+	private final TrajectoryFollower follower;
+
+	/**
+	 * @param simulator the simulated drive; it is switched to field-centric mode
+	 * @param trajectory the trajectory to follow
+	 * @param maxSpeed the wheel velocity at full output of the simulated modules
+	 */
+	public TrajectoryTracking(SwerveSimulator simulator, Trajectory trajectory, double maxSpeed) {
+		this.simulator = simulator;
+		this.follower = new TrajectoryFollower(trajectory, this::getPose, maxSpeed,
+				simulator.getSwerveDrive().getKinematics().getMaxRadius());
+		simulator.getSwerveDrive().setCentricMode(CentricMode.FIELD);
+	}
+
+	/**
+	 * Builds the simulated drive with the robot's layout, at the drive loop rate.
+	 */
+	public static TrajectoryTracking forRobot(Trajectory trajectory) {
+		SwerveSimulator simulator = SwerveSimulator.hexDrive(DriveConstants.GEAR_RATIO, DriveConstants.MAX_SPEED,
+				DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.W_Plus, DriveConstants.L_Plus,
+				DriveConstants.DRIVE_LOOP_PERIOD);
+		return new TrajectoryTracking(simulator, trajectory, DriveConstants.MAX_SPEED);
+	}
+
+	private void getPose(double[] target) {
+		target[SwerveOdometry.X] = simulator.getX();
+		target[SwerveOdometry.Y] = simulator.getY();
+		target[SwerveOdometry.HEADING] = simulator.getHeading();
+		target[SwerveOdometry.TIMESTAMP] = simulator.getTime();
+	}
+
+	/**
+	 * Puts the robot at the start of the trajectory and drives it to the end.
+	 * @return the follower, with the tracking error
+	 */
+	public TrajectoryFollower run() {
+		Trajectory trajectory = follower.getTrajectory();
+		simulator.resetPose(trajectory.get(0, Trajectory.X), trajectory.get(0, Trajectory.Y),
+				trajectory.get(0, Trajectory.HEADING));
+		follower.start(simulator.getTime());
+		simulator.run(trajectory.getDuration() + SETTLE_TIME, (time, command) -> {
+			if (!follower.calculate(time, command)) {
+				command[0] = 0;
+				command[1] = 0;
+				command[2] = 0;
+			}
+		});
+		return follower;
+	}
+
+	/**
+	 * @return how far the robot came to rest from the end of the trajectory, in inches
+	 */
+	public double getEndError() {
+		Trajectory trajectory = follower.getTrajectory();
+		int last = trajectory.getSampleCount() - 1;
+		return Math.hypot(simulator.getX() - trajectory.get(last, Trajectory.X),
+				simulator.getY() - trajectory.get(last, Trajectory.Y));
+	}
+
+	public SwerveSimulator getSimulator() {
+		return simulator;
+	}
+
+	public TrajectoryFollower getFollower() {
+		return follower;
+	}
+
+	/**
+	 * Drives every trajectory in a directory (args[0]) and prints the tracking error.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: TrajectoryTracking <trajectory directory>");
+			System.exit(2);
+		}
+		Map<String, Trajectory> trajectories = Trajectory.mapDirectory(new File(args[0]));
+		if (trajectories.isEmpty()) {
+			System.out.println("No trajectories in " + args[0]);
+			return;
+		}
+		for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+			TrajectoryTracking tracking = forRobot(entry.getValue());
+			long start = System.nanoTime();
+			TrajectoryFollower follower = tracking.run();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%s: %s; at rest %.2f in from the end (%.0f ms)%n", entry.getKey(), follower,
+					tracking.getEndError(), seconds * 1000);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package frc.robot.swerve.sim;
+
+import java.util.Arrays;
+
+import frc.robot.DriveConstants;
+import frc.robot.swerve.math.SetpointGenerator;
+import frc.robot.swerve.math.SwerveKinematics;
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * Measures how much the wheels fight each other after a change in the chassis command on the
+ * {@link SwerveSimulator}: every cycle the true wheel velocities are fitted to a chassis motion, and the disagreement
+ * is the RMS difference between each wheel's velocity and the one that motion asks of it. Wheels that agree describe
+ * one rigid motion; wheels that don't scrub.
+ *
+ * Run it directly to compare the drive with and without the {@link SetpointGenerator} on the robot's layout and
+ * limits:
+ * <pre>
+ * java -cp robot.jar frc.robot.swerve.sim.WheelDisagreement
+ * </pre>
+ */
+public class WheelDisagreement {
+	// Time on the first command before the change, and after it
+	private static final double LEAD_TIME = 1.0;
+	private static final double RESPONSE_TIME = 1.5;
+
+	/**
+	 * The disagreement after one change of command.
+	 */
+	public static class Result {
+		private final double worst;
+		private final double mean;
+
+		Result(double worst, double mean) {
+			this.worst = worst;
+			this.mean = mean;
+		}
+
+		/**
+		 * @return the largest RMS disagreement of any cycle, in inches per second
+		 */
+		public double getWorst() {
+			return worst;
+		}
+
+		/**
+		 * @return the RMS disagreement averaged over the cycles after the change, in inches per second
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("worst %5.1f in/s, mean %5.2f in/s", worst, mean);
+		}
+	}
+
+	private final SwerveSimulator simulator;
+
+	/**
+	 * @param simulator the simulated drive, with its setpoint generator (if any) already set
+	 */
+	public WheelDisagreement(SwerveSimulator simulator) {
+		this.simulator = simulator;
+	}
+
+	/**
+	 * Builds the simulated drive with the robot's layout, at the drive loop rate.
+	 * @param setpointGenerator true to limit the commands like the Drivetrain does
+	 */
+	public static WheelDisagreement forRobot(boolean setpointGenerator) {
+		SwerveSimulator simulator = SwerveSimulator.hexDrive(DriveConstants.GEAR_RATIO, DriveConstants.MAX_SPEED,
+				DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.W_Plus, DriveConstants.L_Plus,
+				DriveConstants.DRIVE_LOOP_PERIOD);
+		if (setpointGenerator) {
+			simulator.getSwerveDrive().setSetpointGenerator(new SetpointGenerator(
+					simulator.getSwerveDrive().getKinematics(), simulator.getPeriod(),
+					DriveConstants.STEER_CRUISE_VELOCITY,
+					DriveConstants.MAX_DRIVE_ACCELERATION / DriveConstants.MAX_SPEED));
+		}
+		return new WheelDisagreement(simulator);
+	}
+
+	/**
+	 * Drives with one command until the wheels are steady, then switches to another and measures the disagreement.
+	 * @param before the first command: fwd, str and rcw
+	 * @param after the command to switch to
+	 */
+	public Result measure(double[] before, double[] after) {
+		simulator.run(LEAD_TIME, (time, command) -> System.arraycopy(before, 0, command, 0, 3));
+
+		SwerveKinematics kinematics = simulator.getSwerveDrive().getKinematics();
+		int modules = SwerveMath.MODULE_COUNT;
+		double[] angles = new double[modules];
+		double[] speeds = new double[modules];
+		double[] chassis = new double[3];
+		double[] fitStrafe = new double[modules];
+		double[] fitForward = new double[modules];
+
+		int cycles = (int) Math.round(RESPONSE_TIME / simulator.getPeriod());
+		double worst = 0;
+		double sum = 0;
+		for (int c = 0; c < cycles; c++) {
+			simulator.step(after[0], after[1], after[2]);
+			for (int i = 0; i < modules; i++) {
+				angles[i] = simulator.getModule(i).getTrueAngle();
+				speeds[i] = simulator.getModule(i).getTrueVelocity();
+			}
+			kinematics.toChassisSpeeds(angles, speeds, chassis);
+			kinematics.toModuleVelocities(chassis[0], chassis[1], chassis[2], fitStrafe, fitForward);
+
+			double squares = 0;
+			for (int i = 0; i < modules; i++) {
+				double angle = angles[i] * 2 * Math.PI;
+				double strafe = speeds[i] * Math.sin(angle) - fitStrafe[i];
+				double forward = speeds[i] * Math.cos(angle) - fitForward[i];
+				squares += strafe * strafe + forward * forward;
+			}
+			double rms = Math.sqrt(squares / modules);
+			worst = Math.max(worst, rms);
+			sum += rms;
+		}
+		return new Result(worst, sum / cycles);
+	}
+
+	public SwerveSimulator getSimulator() {
+		return simulator;
+	}
+
+	/**
+	 * Prints the disagreement after a few command changes, with and without the setpoint generator.
+	 */
+	public static void main(String[] args) {
+		double[][][] changes = {
+			{ { 1, 0, 0 }, { -1, 0, 0 } },
+			{ { 0.7, 0, 0 }, { 0, 0, 1 } },
+			{ { 0.7, 0, 0.5 }, { -0.7, 0, 0.5 } },
+			{ { 0.5, 0.5, 0.3 }, { -0.5, -0.2, -0.5 } },
+			{ { 0, 1, 0.6 }, { 0.3, -1, 0 } }
+		};
+		for (double[][] change : changes) {
+			System.out.println(Arrays.toString(change[0]) + " -> " + Arrays.toString(change[1]) + ":");
+			System.out.println("  plain      " + forRobot(false).measure(change[0], change[1]));
+			System.out.println("  generator  " + forRobot(true).measure(change[0], change[1]));
+		}
+	}
+}
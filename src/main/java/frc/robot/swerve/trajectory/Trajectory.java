@@ -0,0 +1,259 @@
+package frc.robot.swerve.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+import frc.robot.swerve.math.SwerveMath;
+
+/**
+ * A time-indexed holonomic trajectory: the chassis state and the state of every module at each sample time.
+ *
+ * Trajectories are made on the desktop by {@link TrajectoryGenerator} and stored in a compact binary file: a header
+ * followed by SIZE floats per sample. On the robot the file is memory-mapped and read in place, so loading one costs
+ * no parsing and no allocation per sample.
+ *
+ * Field units are inches, seconds and degrees. x is downfield, y is to the right, heading is clockwise (the same as
+ * the gyro and {@link frc.robot.swerve.math.SwerveOdometry}). On the robot this is the drivers' frame: +x is where
+ * the stick pushed forward drives in field-centric mode. The Drivetrain converts its poses and controller commands to
+ * and from it (see Drivetrain.getPose).
+ */
+public class Trajectory {
+	static final int MAGIC = 0x48585452; // "HXTR"
+	static final int VERSION = 1;
+	static final int FIELD_COUNT_OFFSET = 8;
+	static final int SAMPLE_COUNT_OFFSET = 12;
+	static final int PERIOD_OFFSET = 16;
+	static final int HEADER_SIZE = 24;
+
+	/** The file name extension of trajectory files. */
+	public static final String EXTENSION = ".traj";
+
+	// Sample layout
+	public static final int TIME = 0;
+	public static final int X = 1;
+	public static final int Y = 2;
+	/** Heading in degrees, continuous past 360 */
+	public static final int HEADING = 3;
+	/** Field velocity, inches per second */
+	public static final int VX = 4;
+	public static final int VY = 5;
+	/** Turn rate, degrees per second clockwise */
+	public static final int OMEGA = 6;
+	/** Field acceleration, inches per second squared */
+	public static final int AX = 7;
+	public static final int AY = 8;
+	/** Angular acceleration, degrees per second squared */
+	public static final int ALPHA = 9;
+	/** Wheel angles in rotations (-0.5 to 0.5), one per module in the SwerveMath directive order */
+	public static final int MODULE_ANGLE = 10;
+	/** Wheel speeds in inches per second, one per module */
+	public static final int MODULE_SPEED = MODULE_ANGLE + SwerveMath.MODULE_COUNT;
+	public static final int SIZE = MODULE_SPEED + SwerveMath.MODULE_COUNT;
+
+	private static final int SAMPLE_BYTES = SIZE * Float.BYTES;
+
+	private final ByteBuffer buffer;
+	private final int sampleCount;
+	private final double period;
+
+	/**
+	 * Wraps a buffer in the trajectory file format.
+	 * @throws IOException if the buffer does not hold a trajectory
+	 */
+	Trajectory(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a trajectory");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported trajectory version " + buffer.getInt(4));
+		}
+		if (buffer.getInt(FIELD_COUNT_OFFSET) != SIZE) {
+			throw new IOException("Trajectory has " + buffer.getInt(FIELD_COUNT_OFFSET) + " fields, expected " + SIZE);
+		}
+		this.buffer = buffer;
+		this.sampleCount = buffer.getInt(SAMPLE_COUNT_OFFSET);
+		this.period = buffer.getDouble(PERIOD_OFFSET);
+		if (sampleCount < 1 || buffer.limit() < HEADER_SIZE + (long) sampleCount * SAMPLE_BYTES) {
+			throw new IOException("Trajectory is cut short");
+		}
+	}
+
+	/**
+	 * Memory-maps a trajectory file and loads it into memory, so reading it later never waits on the disk.
+	 */
+	public static Trajectory map(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.load();
+		try {
+			return new Trajectory(buffer);
+		} catch (IOException e) {
+			throw new IOException(e.getMessage() + ": " + file);
+		}
+	}
+
+	/**
+	 * Maps every trajectory file in a directory. Files that cannot be read are reported and skipped.
+	 * @return the trajectories by file name without the extension, or none if the directory does not exist
+	 */
+	public static Map<String, Trajectory> mapDirectory(File directory) {
+		Map<String, Trajectory> trajectories = new TreeMap<>();
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (files == null) {
+			return trajectories;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			try {
+				trajectories.put(name.substring(0, name.length() - EXTENSION.length()), map(file));
+			} catch (IOException e) {
+				System.out.println("Could not load trajectory " + file + ": " + e.getMessage());
+			}
+		}
+		return trajectories;
+	}
+
+	/**
+	 * Builds a trajectory in memory.
+	 * @param samples SIZE values per sample, in time order
+	 * @param period the nominal time between samples, in seconds
+	 */
+	static Trajectory fromSamples(double[][] samples, double period) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + samples.length * SAMPLE_BYTES);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(SIZE);
+		buffer.putInt(samples.length);
+		buffer.putDouble(period);
+		for (double[] sample : samples) {
+			for (int field = 0; field < SIZE; field++) {
+				buffer.putFloat((float) sample[field]);
+			}
+		}
+		buffer.flip();
+		try {
+			return new Trajectory(buffer);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the trajectory file.
+	 */
+	public void write(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+			ByteBuffer bytes = buffer.duplicate();
+			bytes.position(0);
+			bytes.limit(getByteSize());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		}
+	}
+
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * @return the nominal time between samples, in seconds. The last sample may be closer to the one before it.
+	 */
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return the time of the last sample, in seconds
+	 */
+	public double getDuration() {
+		return getTime(sampleCount - 1);
+	}
+
+	/**
+	 * @return the size of the trajectory file, in bytes
+	 */
+	public int getByteSize() {
+		return HEADER_SIZE + sampleCount * SAMPLE_BYTES;
+	}
+
+	public double getTime(int sample) {
+		return get(sample, TIME);
+	}
+
+	/**
+	 * @param field one of the sample layout constants
+	 */
+	public double get(int sample, int field) {
+		return buffer.getFloat(HEADER_SIZE + sample * SAMPLE_BYTES + field * Float.BYTES);
+	}
+
+	/**
+	 * Interpolates the state at a time between two samples. The samples around it are found by binary search, so
+	 * this works for any time order of calls. Nothing is allocated.
+	 * @param time the time since the start of the trajectory, in seconds. Before the start (after the end) the first
+	 *             (last) sample is returned.
+	 * @param target at least SIZE long
+	 */
+	public void sample(double time, double[] target) {
+		if (time <= getTime(0)) {
+			getSample(0, target);
+			return;
+		}
+		if (time >= getDuration()) {
+			getSample(sampleCount - 1, target);
+			return;
+		}
+
+		// The last sample at or before the time
+		int low = 0;
+		int high = sampleCount - 1;
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (getTime(middle) <= time) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+
+		double t0 = getTime(low);
+		double f = (time - t0) / (getTime(high) - t0);
+		int position0 = HEADER_SIZE + low * SAMPLE_BYTES;
+		int position1 = position0 + SAMPLE_BYTES;
+		for (int field = 0; field < SIZE; field++) {
+			double a = buffer.getFloat(position0 + field * Float.BYTES);
+			double b = buffer.getFloat(position1 + field * Float.BYTES);
+			if (field >= MODULE_ANGLE && field < MODULE_SPEED) {
+				// Wheel angles wrap around at +-0.5; go the short way
+				double change = b - a;
+				change -= Math.rint(change);
+				double angle = a + change * f;
+				target[field] = angle - Math.rint(angle);
+			} else {
+				target[field] = a + (b - a) * f;
+			}
+		}
+		target[TIME] = time;
+	}
+
+	/**
+	 * Copies one sample. Nothing is allocated.
+	 * @param target at least SIZE long
+	 */
+	public void getSample(int sample, double[] target) {
+		int position = HEADER_SIZE + sample * SAMPLE_BYTES;
+		for (int field = 0; field < SIZE; field++) {
+			target[field] = buffer.getFloat(position + field * Float.BYTES);
+		}
+	}
+}
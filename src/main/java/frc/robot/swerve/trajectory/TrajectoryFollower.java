@@ -0,0 +1,191 @@
+package frc.robot.swerve.trajectory;
+
+import java.util.function.Consumer;
+
+import frc.robot.swerve.drive.ChassisController;
+import frc.robot.swerve.math.SwerveOdometry;
+
+/**
+ * Follows a {@link Trajectory} with a holonomic drive in field-centric mode.
+ *
+ * Every cycle the trajectory is sampled at the time since {@link #start}, and the command is its chassis velocity
+ * (feedforward) plus a correction proportional to the position and heading errors (feedback):
+ * <pre>
+ * vx = ref.vx + kPosition * (ref.x - x)
+ * vy = ref.vy + kPosition * (ref.y - y)
+ * omega = ref.omega + kHeading * (ref.heading - heading)
+ * </pre>
+ * The command is in the field frame, so the drive has to be field-centric, with the same heading as the pose.
+ *
+ * The follower also keeps the tracking error (how far the pose is from the reference), to judge the gains and the
+ * drive on the robot or in the simulator. Nothing is allocated per cycle.
+ */
+public class TrajectoryFollower implements ChassisController {
+	/** Default position gain: inches per second of correction per inch of error. */
+	public static final double DEFAULT_POSITION_GAIN = 4.0;
+	/** Default heading gain: degrees per second of correction per degree of error. */
+	public static final double DEFAULT_HEADING_GAIN = 4.0;
+
+	private final Trajectory trajectory;
+	private final Consumer<double[]> poseSource;
+	private final double maxSpeed;
+	private final double maxRadius;
+	private double positionGain = DEFAULT_POSITION_GAIN;
+	private double headingGain = DEFAULT_HEADING_GAIN;
+
+	// Only used by the thread that calls calculate
+	private final double[] reference = new double[Trajectory.SIZE];
+	private final double[] pose = new double[SwerveOdometry.POSE_SIZE];
+
+	private volatile double startTime = Double.NaN;
+	private volatile boolean finished = false;
+
+	// Tracking error
+	private volatile double maxPositionError;
+	private volatile double maxHeadingError;
+	private volatile double finalPositionError;
+	private volatile double finalHeadingError;
+	private double squaredPositionErrorSum;
+	private volatile int cycles;
+
+	/**
+	 * @param trajectory the trajectory to follow
+	 * @param poseSource copies the current field pose, in the {@link SwerveOdometry} layout
+	 * @param maxSpeed the wheel speed at full output, in inches per second
+	 * @param maxRadius the distance of the farthest module from the center of rotation, in inches (see
+	 *                  {@link frc.robot.swerve.math.SwerveKinematics#getMaxRadius()})
+	 */
+	public TrajectoryFollower(Trajectory trajectory, Consumer<double[]> poseSource, double maxSpeed, double maxRadius) {
+		this.trajectory = trajectory;
+		this.poseSource = poseSource;
+		this.maxSpeed = maxSpeed;
+		this.maxRadius = maxRadius;
+	}
+
+	/**
+	 * @param position inches per second of correction per inch of position error
+	 * @param heading degrees per second of correction per degree of heading error
+	 */
+	public void setGains(double position, double heading) {
+		this.positionGain = position;
+		this.headingGain = heading;
+	}
+
+	/**
+	 * Starts the trajectory and clears the tracking error.
+	 * @param time the current time in seconds, on the same clock as {@link #calculate}
+	 */
+	public void start(double time) {
+		maxPositionError = 0;
+		maxHeadingError = 0;
+		finalPositionError = 0;
+		finalHeadingError = 0;
+		squaredPositionErrorSum = 0;
+		cycles = 0;
+		finished = false;
+		startTime = time;
+	}
+
+	@Override
+	public boolean calculate(double time, double[] command) {
+		double elapsed = time - startTime;
+		if (finished || !(elapsed >= 0)) {
+			command[0] = 0;
+			command[1] = 0;
+			command[2] = 0;
+			return !finished;
+		}
+		if (elapsed > trajectory.getDuration()) {
+			finished = true;
+			return false;
+		}
+
+		trajectory.sample(elapsed, reference);
+		poseSource.accept(pose);
+
+		double xError = reference[Trajectory.X] - pose[SwerveOdometry.X];
+		double yError = reference[Trajectory.Y] - pose[SwerveOdometry.Y];
+		// The short way around
+		double headingError = ((reference[Trajectory.HEADING] - pose[SwerveOdometry.HEADING]) % 360 + 540) % 360 - 180;
+		record(Math.hypot(xError, yError), headingError);
+
+		double vx = reference[Trajectory.VX] + positionGain * xError;
+		double vy = reference[Trajectory.VY] + positionGain * yError;
+		double omega = reference[Trajectory.OMEGA] + headingGain * headingError;
+
+		command[0] = vx / maxSpeed;
+		command[1] = vy / maxSpeed;
+		command[2] = Math.toRadians(omega) * maxRadius / maxSpeed;
+		return true;
+	}
+
+	private void record(double positionError, double headingError) {
+		squaredPositionErrorSum += positionError * positionError;
+		maxPositionError = Math.max(maxPositionError, positionError);
+		maxHeadingError = Math.max(maxHeadingError, Math.abs(headingError));
+		finalPositionError = positionError;
+		finalHeadingError = headingError;
+		cycles++;
+	}
+
+	/**
+	 * @return true once the end of the trajectory has been reached
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public Trajectory getTrajectory() {
+		return trajectory;
+	}
+
+	/**
+	 * @return the largest distance from the reference position so far, in inches
+	 */
+	public double getMaxPositionError() {
+		return maxPositionError;
+	}
+
+	/**
+	 * @return the root mean square distance from the reference position so far, in inches
+	 */
+	public double getRmsPositionError() {
+		int count = cycles;
+		return count == 0 ? 0 : Math.sqrt(squaredPositionErrorSum / count);
+	}
+
+	/**
+	 * @return the largest heading error so far, in degrees
+	 */
+	public double getMaxHeadingError() {
+		return maxHeadingError;
+	}
+
+	/**
+	 * @return the distance from the reference position in the last cycle, in inches
+	 */
+	public double getFinalPositionError() {
+		return finalPositionError;
+	}
+
+	/**
+	 * @return the heading error in the last cycle, in degrees
+	 */
+	public double getFinalHeadingError() {
+		return finalHeadingError;
+	}
+
+	/**
+	 * @return the number of cycles followed so far
+	 */
+	public int getCycles() {
+		return cycles;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d cycles, position error max %.2f in, rms %.2f in, final %.2f in; "
+				+ "heading error max %.2f deg, final %.2f deg", getCycles(), getMaxPositionError(),
+				getRmsPositionError(), getFinalPositionError(), getMaxHeadingError(), getFinalHeadingError());
+	}
+}
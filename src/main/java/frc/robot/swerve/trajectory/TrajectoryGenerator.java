@@ -0,0 +1,454 @@
+package frc.robot.swerve.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import frc.robot.DriveConstants;
+import frc.robot.swerve.math.SwerveKinematics;
+
+/**
+ * Generates holonomic trajectories for the drive from waypoints, on the desktop.
+ *
+ * The path through the waypoints is a Catmull-Rom spline, so it passes through every waypoint with a continuous
+ * direction. The heading turns from one waypoint's heading to the next in proportion to the distance travelled,
+ * independent of the direction of travel. The speed along the path is the fastest that respects, at every point:
+ * <ul>
+ * <li>the maximum velocity and acceleration (forward and backward passes, starting and ending at rest),</li>
+ * <li>the maximum acceleration around curves (v^2 * curvature),</li>
+ * <li>the maximum module speed: translating and turning at once, the fastest of the six modules moves faster than
+ * the chassis, so the chassis slows down until that module is at the limit.</li>
+ * </ul>
+ * The result is sampled at a fixed period, with the state of every module from {@link SwerveKinematics}.
+ *
+ * Run it directly to compile every path file in a directory into trajectory files:
+ * <pre>
+ * java -cp robot.jar frc.robot.swerve.trajectory.TrajectoryGenerator &lt;path directory&gt; &lt;output directory&gt;
+ * </pre>
+ * A path file holds one setting or waypoint per line (inches, seconds and degrees; # starts a comment):
+ * <pre>
+ * maxVelocity 100
+ * maxAcceleration 60
+ * waypoint 0 0 0
+ * waypoint 60 24 90
+ * </pre>
+ */
+public class TrajectoryGenerator {
+	/** The file name extension of path files. */
+	public static final String PATH_EXTENSION = ".path";
+	public static final double DEFAULT_PERIOD = 0.01;
+
+	// Arc length between the points the speed is planned at, in inches
+	private static final double STEP = 0.25;
+
+	private final SwerveKinematics kinematics;
+	private final double maxModuleSpeed;
+	private final double period;
+
+	/**
+	 * @param kinematics the module layout, in inches
+	 * @param maxModuleSpeed the fastest a wheel can go, in inches per second
+	 * @param period the time between samples, in seconds
+	 */
+	public TrajectoryGenerator(SwerveKinematics kinematics, double maxModuleSpeed, double period) {
+		this.kinematics = kinematics;
+		this.maxModuleSpeed = maxModuleSpeed;
+		this.period = period;
+	}
+
+	/**
+	 * @param waypoints x, y and heading of every waypoint, at least two
+	 * @param maxVelocity the fastest the chassis may go, in inches per second
+	 * @param maxAcceleration the fastest the chassis may accelerate, in inches per second squared
+	 */
+	public Trajectory generate(double[][] waypoints, double maxVelocity, double maxAcceleration) {
+		if (waypoints.length < 2) {
+			throw new IllegalArgumentException("A path needs at least two waypoints");
+		}
+		for (int i = 1; i < waypoints.length; i++) {
+			if (Math.hypot(waypoints[i][0] - waypoints[i - 1][0], waypoints[i][1] - waypoints[i - 1][1]) < STEP) {
+				throw new IllegalArgumentException("Waypoints " + (i - 1) + " and " + i + " are in the same place");
+			}
+		}
+
+		Path path = new Path(waypoints);
+		planSpeeds(path, maxVelocity, maxAcceleration);
+		return Trajectory.fromSamples(sample(path), period);
+	}
+
+	/**
+	 * The points along the path, STEP apart, and everything the speed planning needs at each.
+	 */
+	private static class Path {
+		int count = 0;
+		double[] s = new double[256];
+		double[] x = new double[256];
+		double[] y = new double[256];
+		// Heading in degrees, continuous
+		double[] heading = new double[256];
+		// Unit direction of travel
+		double[] tx = new double[256];
+		double[] ty = new double[256];
+		double[] curvature = new double[256];
+		// Heading change per inch travelled, in radians
+		double[] turn = new double[256];
+		double[] maxSpeed = new double[256];
+		double[] speed = new double[256];
+		double[] time = new double[256];
+
+		Path(double[][] waypoints) {
+			int n = waypoints.length;
+			double[][] tangents = new double[n][2];
+			for (int i = 0; i < n; i++) {
+				double[] before = waypoints[Math.max(i - 1, 0)];
+				double[] after = waypoints[Math.min(i + 1, n - 1)];
+				double scale = (i == 0 || i == n - 1) ? 1 : 0.5;
+				tangents[i][0] = (after[0] - before[0]) * scale;
+				tangents[i][1] = (after[1] - before[1]) * scale;
+			}
+
+			double startHeading = waypoints[0][2];
+			for (int i = 0; i < n - 1; i++) {
+				double[] p0 = waypoints[i];
+				double[] p1 = waypoints[i + 1];
+				double[] m0 = tangents[i];
+				double[] m1 = tangents[i + 1];
+				// The shortest way around to the next heading
+				double headingChange = ((p1[2] - p0[2]) % 360 + 540) % 360 - 180;
+
+				// Arc length of the segment, to spread the heading change over it
+				double chord = Math.hypot(p1[0] - p0[0], p1[1] - p0[1]);
+				int steps = Math.max(8, (int) Math.ceil(4 * chord / STEP));
+				double length = 0;
+				double lastX = p0[0];
+				double lastY = p0[1];
+				for (int k = 1; k <= steps; k++) {
+					double u = (double) k / steps;
+					double px = hermite(p0[0], m0[0], p1[0], m1[0], u);
+					double py = hermite(p0[1], m0[1], p1[1], m1[1], u);
+					length += Math.hypot(px - lastX, py - lastY);
+					lastX = px;
+					lastY = py;
+				}
+				double turnRate = Math.toRadians(headingChange) / length;
+
+				// Walk the segment again, keeping a point every STEP inches
+				double segmentStart = count == 0 ? 0 : s[count - 1];
+				double travelled = 0;
+				double nextPoint = 0;
+				lastX = p0[0];
+				lastY = p0[1];
+				for (int k = 0; k <= steps; k++) {
+					double u = (double) k / steps;
+					double px = hermite(p0[0], m0[0], p1[0], m1[0], u);
+					double py = hermite(p0[1], m0[1], p1[1], m1[1], u);
+					travelled += Math.hypot(px - lastX, py - lastY);
+					lastX = px;
+					lastY = py;
+					// Skip the first point of every segment but the first (it ended the last one), keep the last
+					boolean first = k == 0;
+					if ((first && count > 0) || (!first && travelled < nextPoint && k < steps)) {
+						continue;
+					}
+					nextPoint = travelled + STEP;
+
+					double dx = hermiteSlope(p0[0], m0[0], p1[0], m1[0], u);
+					double dy = hermiteSlope(p0[1], m0[1], p1[1], m1[1], u);
+					double ddx = hermiteCurve(p0[0], m0[0], p1[0], m1[0], u);
+					double ddy = hermiteCurve(p0[1], m0[1], p1[1], m1[1], u);
+					double norm = Math.hypot(dx, dy);
+
+					ensureCapacity();
+					s[count] = segmentStart + travelled;
+					x[count] = px;
+					y[count] = py;
+					heading[count] = startHeading + headingChange * Math.min(travelled / length, 1);
+					tx[count] = dx / norm;
+					ty[count] = dy / norm;
+					curvature[count] = (dx * ddy - dy * ddx) / (norm * norm * norm);
+					turn[count] = turnRate;
+					count++;
+				}
+				startHeading += headingChange;
+			}
+		}
+
+		private void ensureCapacity() {
+			if (count < s.length) {
+				return;
+			}
+			int capacity = s.length * 2;
+			s = Arrays.copyOf(s, capacity);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			heading = Arrays.copyOf(heading, capacity);
+			tx = Arrays.copyOf(tx, capacity);
+			ty = Arrays.copyOf(ty, capacity);
+			curvature = Arrays.copyOf(curvature, capacity);
+			turn = Arrays.copyOf(turn, capacity);
+			maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			time = Arrays.copyOf(time, capacity);
+		}
+	}
+
+	private static double hermite(double p0, double m0, double p1, double m1, double u) {
+		double u2 = u * u;
+		double u3 = u2 * u;
+		return (2 * u3 - 3 * u2 + 1) * p0 + (u3 - 2 * u2 + u) * m0 + (-2 * u3 + 3 * u2) * p1 + (u3 - u2) * m1;
+	}
+
+	private static double hermiteSlope(double p0, double m0, double p1, double m1, double u) {
+		double u2 = u * u;
+		return (6 * u2 - 6 * u) * p0 + (3 * u2 - 4 * u + 1) * m0 + (-6 * u2 + 6 * u) * p1 + (3 * u2 - 2 * u) * m1;
+	}
+
+	private static double hermiteCurve(double p0, double m0, double p1, double m1, double u) {
+		return (12 * u - 6) * p0 + (6 * u - 4) * m0 + (-12 * u + 6) * p1 + (6 * u - 2) * m1;
+	}
+
+	/**
+	 * Finds the fastest speed at every point within the limits, then the time each point is reached.
+	 */
+	private void planSpeeds(Path path, double maxVelocity, double maxAcceleration) {
+		int n = path.count;
+		for (int i = 0; i < n; i++) {
+			double limit = maxVelocity;
+			if (path.curvature[i] != 0) {
+				limit = Math.min(limit, Math.sqrt(maxAcceleration / Math.abs(path.curvature[i])));
+			}
+			limit = Math.min(limit, maxModuleSpeed / fastestModule(path.tx[i], path.ty[i], path.heading[i], path.turn[i]));
+			path.maxSpeed[i] = limit;
+		}
+
+		// Start and end at rest; accelerate forward, decelerate backward
+		path.speed[0] = 0;
+		for (int i = 1; i < n; i++) {
+			double ds = path.s[i] - path.s[i - 1];
+			double reachable = Math.sqrt(path.speed[i - 1] * path.speed[i - 1] + 2 * maxAcceleration * ds);
+			path.speed[i] = Math.min(path.maxSpeed[i], reachable);
+		}
+		path.speed[n - 1] = 0;
+		for (int i = n - 2; i >= 0; i--) {
+			double ds = path.s[i + 1] - path.s[i];
+			double reachable = Math.sqrt(path.speed[i + 1] * path.speed[i + 1] + 2 * maxAcceleration * ds);
+			path.speed[i] = Math.min(path.speed[i], reachable);
+		}
+
+		path.time[0] = 0;
+		for (int i = 1; i < n; i++) {
+			double ds = path.s[i] - path.s[i - 1];
+			path.time[i] = path.time[i - 1] + 2 * ds / (path.speed[i - 1] + path.speed[i]);
+		}
+	}
+
+	/**
+	 * @return how much faster than the chassis the fastest module moves, travelling in direction (tx, ty) and turning
+	 *         by turn radians per inch
+	 */
+	private double fastestModule(double tx, double ty, double heading, double turn) {
+		double radians = Math.toRadians(heading);
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+		double fwd = tx * cos + ty * sin;
+		double str = -tx * sin + ty * cos;
+
+		double fastest = 0;
+		for (int m = 0; m < kinematics.getModuleCount(); m++) {
+			double s = str + turn * kinematics.getModuleY(m);
+			double f = fwd - turn * kinematics.getModuleX(m);
+			fastest = Math.max(fastest, Math.hypot(s, f));
+		}
+		return fastest;
+	}
+
+	/**
+	 * Samples the planned path at the fixed period, plus a last sample at the end.
+	 */
+	private double[][] sample(Path path) {
+		int n = path.count;
+		double duration = path.time[n - 1];
+		int count = (int) Math.ceil(duration / period - 1e-9) + 1;
+		double[][] samples = new double[count][Trajectory.SIZE];
+
+		int k = 0;
+		for (int j = 0; j < count; j++) {
+			double t = Math.min(j * period, duration);
+			while (k < n - 2 && path.time[k + 1] <= t) {
+				k++;
+			}
+
+			// Constant acceleration between two points
+			double ds = path.s[k + 1] - path.s[k];
+			double v0 = path.speed[k];
+			double v1 = path.speed[k + 1];
+			double a = (v1 * v1 - v0 * v0) / (2 * ds);
+			double tau = t - path.time[k];
+			double travelled = Math.min(Math.max(v0 * tau + 0.5 * a * tau * tau, 0), ds);
+			double v = Math.max(v0 + a * tau, 0);
+			double f = travelled / ds;
+
+			double[] sample = samples[j];
+			sample[Trajectory.TIME] = t;
+			sample[Trajectory.X] = lerp(path.x[k], path.x[k + 1], f);
+			sample[Trajectory.Y] = lerp(path.y[k], path.y[k + 1], f);
+			sample[Trajectory.HEADING] = lerp(path.heading[k], path.heading[k + 1], f);
+			double tx = lerp(path.tx[k], path.tx[k + 1], f);
+			double ty = lerp(path.ty[k], path.ty[k + 1], f);
+			double norm = Math.hypot(tx, ty);
+			sample[Trajectory.VX] = v * tx / norm;
+			sample[Trajectory.VY] = v * ty / norm;
+			sample[Trajectory.OMEGA] = Math.toDegrees(v * path.turn[k + 1]);
+		}
+
+		// Accelerations from the velocities, at rest at both ends
+		for (int j = 0; j < count; j++) {
+			int before = Math.max(j - 1, 0);
+			int after = Math.min(j + 1, count - 1);
+			double dt = samples[after][Trajectory.TIME] - samples[before][Trajectory.TIME];
+			if (dt <= 0) {
+				continue;
+			}
+			samples[j][Trajectory.AX] = (samples[after][Trajectory.VX] - samples[before][Trajectory.VX]) / dt;
+			samples[j][Trajectory.AY] = (samples[after][Trajectory.VY] - samples[before][Trajectory.VY]) / dt;
+			samples[j][Trajectory.ALPHA] = (samples[after][Trajectory.OMEGA] - samples[before][Trajectory.OMEGA]) / dt;
+		}
+
+		fillModuleStates(samples);
+		return samples;
+	}
+
+	private static double lerp(double a, double b, double f) {
+		return a + (b - a) * f;
+	}
+
+	/**
+	 * Runs the inverse kinematics for every sample. Wheels at rest keep the angle of the nearest moving sample, so they
+	 * are already pointing the right way when the robot starts and do not turn back when it stops.
+	 */
+	private void fillModuleStates(double[][] samples) {
+		int modules = kinematics.getModuleCount();
+		double[] angles = new double[modules];
+		double[] speeds = new double[modules];
+		boolean[] moving = new boolean[samples.length];
+
+		for (int j = 0; j < samples.length; j++) {
+			double[] sample = samples[j];
+			double radians = Math.toRadians(sample[Trajectory.HEADING]);
+			double cos = Math.cos(radians);
+			double sin = Math.sin(radians);
+			double fwd = sample[Trajectory.VX] * cos + sample[Trajectory.VY] * sin;
+			double str = -sample[Trajectory.VX] * sin + sample[Trajectory.VY] * cos;
+			double rcw = Math.toRadians(sample[Trajectory.OMEGA]) * kinematics.getMaxRadius();
+
+			kinematics.toModuleStates(fwd / maxModuleSpeed, str / maxModuleSpeed, rcw / maxModuleSpeed, angles, speeds);
+			for (int m = 0; m < modules; m++) {
+				sample[Trajectory.MODULE_ANGLE + m] = angles[m];
+				sample[Trajectory.MODULE_SPEED + m] = speeds[m] * maxModuleSpeed;
+				moving[j] |= speeds[m] > 0;
+			}
+		}
+
+		int first = 0;
+		while (first < samples.length && !moving[first]) {
+			first++;
+		}
+		if (first == samples.length) {
+			return;
+		}
+		int last = samples.length - 1;
+		while (!moving[last]) {
+			last--;
+		}
+		for (int j = 0; j < first; j++) {
+			System.arraycopy(samples[first], Trajectory.MODULE_ANGLE, samples[j], Trajectory.MODULE_ANGLE, modules);
+		}
+		for (int j = last + 1; j < samples.length; j++) {
+			System.arraycopy(samples[last], Trajectory.MODULE_ANGLE, samples[j], Trajectory.MODULE_ANGLE, modules);
+		}
+	}
+
+	/**
+	 * Reads a path file and generates its trajectory.
+	 */
+	public Trajectory generate(File pathFile) throws IOException {
+		double maxVelocity = Double.NaN;
+		double maxAcceleration = Double.NaN;
+		List<double[]> waypoints = new ArrayList<>();
+
+		int lineNumber = 0;
+		for (String line : Files.readAllLines(pathFile.toPath())) {
+			lineNumber++;
+			int comment = line.indexOf('#');
+			String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+			if (words[0].isEmpty()) {
+				continue;
+			}
+			try {
+				switch (words[0]) {
+				case "maxVelocity":
+					maxVelocity = Double.parseDouble(words[1]);
+					break;
+				case "maxAcceleration":
+					maxAcceleration = Double.parseDouble(words[1]);
+					break;
+				case "waypoint":
+					waypoints.add(new double[] { Double.parseDouble(words[1]), Double.parseDouble(words[2]),
+							Double.parseDouble(words[3]) });
+					break;
+				default:
+					throw new IOException("Unknown setting '" + words[0] + "'");
+				}
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException(pathFile + ":" + lineNumber + ": cannot read '" + line.trim() + "'");
+			} catch (IOException e) {
+				throw new IOException(pathFile + ":" + lineNumber + ": " + e.getMessage());
+			}
+		}
+
+		if (Double.isNaN(maxVelocity) || Double.isNaN(maxAcceleration)) {
+			throw new IOException(pathFile + ": maxVelocity and maxAcceleration are required");
+		}
+		try {
+			return generate(waypoints.toArray(new double[0][]), maxVelocity, maxAcceleration);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(pathFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Compiles every path file in a directory (args[0]) into a trajectory file in another (args[1]), for this robot.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: TrajectoryGenerator <path directory> <output directory>");
+			System.exit(2);
+		}
+		File pathDirectory = new File(args[0]);
+		File outputDirectory = new File(args[1]);
+		File[] pathFiles = pathDirectory.listFiles((dir, name) -> name.endsWith(PATH_EXTENSION));
+		if (pathFiles == null) {
+			System.out.println("No paths in " + pathDirectory);
+			return;
+		}
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			throw new IOException("Cannot create " + outputDirectory);
+		}
+
+		TrajectoryGenerator generator = new TrajectoryGenerator(
+				SwerveKinematics.hexLayout(DriveConstants.W_Default, DriveConstants.L_Default, DriveConstants.L_Plus),
+				DriveConstants.MAX_SPEED, DEFAULT_PERIOD);
+		Arrays.sort(pathFiles);
+		for (File pathFile : pathFiles) {
+			String name = pathFile.getName();
+			name = name.substring(0, name.length() - PATH_EXTENSION.length());
+			Trajectory trajectory = generator.generate(pathFile);
+			trajectory.write(new File(outputDirectory, name + Trajectory.EXTENSION));
+			System.out.printf("%s: %.2f s, %d samples, %d bytes%n", name, trajectory.getDuration(),
+					trajectory.getSampleCount(), trajectory.getByteSize());
+		}
+	}
+}
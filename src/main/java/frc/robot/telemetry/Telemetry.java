@@ -0,0 +1,240 @@
+package frc.robot.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.util.LoopProfiler;
+
+/**
+ * Publishes dashboard values in batches at a lower rate than the robot loop, instead of a put per value per loop.
+ *
+ * Signals are registered once with their key: the NetworkTableEntry is looked up at registration, so publishing
+ * never hashes or builds a key string. On every publish the signals are sampled into primitive buffers and only the
+ * ones that changed since the last publish are sent. Groups of values (e.g. one per module) are packed into one
+ * double array entry.
+ *
+ * When the loop that calls {@link #periodic()} has already used most of its budget, the publish is shed and retried
+ * on the next loop, so telemetry never pushes the control loop over its budget.
+ */
+public class Telemetry {
+	private final long periodNanos;
+	private final LoopProfiler loopProfiler;
+	private final long shedNanos;
+	private final List<Signal> signals = new ArrayList<>();
+
+	private long nextPublish = System.nanoTime();
+	private long publishCount = 0;
+	private long shedCount = 0;
+	private long valuesSent = 0;
+
+	/**
+	 * @param period the time between publishes, in seconds
+	 * @param loopProfiler the profiler of the loop calling {@link #periodic()}, to see how much of the loop is used
+	 * @param shedAfter shed the publish if the loop has already run this long, in seconds
+	 */
+	public Telemetry(double period, LoopProfiler loopProfiler, double shedAfter) {
+		this.periodNanos = (long) (period * 1e9);
+		this.loopProfiler = loopProfiler;
+		this.shedNanos = (long) (shedAfter * 1e9);
+	}
+
+	public void addNumber(String key, DoubleSupplier supplier) {
+		signals.add(new NumberSignal(SmartDashboard.getEntry(key), supplier));
+	}
+
+	public void addBoolean(String key, BooleanSupplier supplier) {
+		signals.add(new BooleanSignal(SmartDashboard.getEntry(key), supplier));
+	}
+
+	/**
+	 * @param supplier should return one of a fixed set of strings (e.g. precomputed labels), so nothing is built
+	 *                 per sample
+	 */
+	public void addString(String key, Supplier<String> supplier) {
+		signals.add(new StringSignal(SmartDashboard.getEntry(key), supplier));
+	}
+
+	/**
+	 * @param size the number of values
+	 * @param sampler fills the array it is given with the current values
+	 */
+	public void addArray(String key, int size, Consumer<double[]> sampler) {
+		signals.add(new ArraySignal(SmartDashboard.getEntry(key), size, sampler));
+	}
+
+	/**
+	 * Call every loop. Publishes the changed signals if a publish is due and the loop has time left.
+	 */
+	public void periodic() {
+		long now = System.nanoTime();
+		if (now - nextPublish < 0) {
+			return;
+		}
+		if (loopProfiler != null && loopProfiler.getLoopElapsed() > shedNanos) {
+			shedCount++;
+			return;
+		}
+
+		nextPublish = now + periodNanos;
+		for (int i = 0; i < signals.size(); i++) {
+			Signal signal = signals.get(i);
+			if (signal.sample()) {
+				signal.publish();
+				valuesSent++;
+			}
+		}
+		publishCount++;
+	}
+
+	public long getPublishCount() {
+		return publishCount;
+	}
+
+	/**
+	 * @return the number of publishes put off because the loop was near its budget
+	 */
+	public long getShedCount() {
+		return shedCount;
+	}
+
+	/**
+	 * @return the number of entries sent, i.e. signals that had changed when published
+	 */
+	public long getValuesSent() {
+		return valuesSent;
+	}
+
+	private abstract static class Signal {
+		final NetworkTableEntry entry;
+		// Publish the first sample even if it matches the initial buffer values
+		boolean published = false;
+
+		Signal(NetworkTableEntry entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * Samples the current value into the buffer.
+		 * @return true if it needs publishing
+		 */
+		abstract boolean sample();
+
+		abstract void publish();
+	}
+
+	private static class NumberSignal extends Signal {
+		private final DoubleSupplier supplier;
+		private double value;
+
+		NumberSignal(NetworkTableEntry entry, DoubleSupplier supplier) {
+			super(entry);
+			this.supplier = supplier;
+		}
+
+		@Override
+		boolean sample() {
+			double sample = supplier.getAsDouble();
+			if (published && Double.doubleToLongBits(sample) == Double.doubleToLongBits(value)) {
+				return false;
+			}
+			value = sample;
+			return true;
+		}
+
+		@Override
+		void publish() {
+			entry.setDouble(value);
+			published = true;
+		}
+	}
+
+	private static class BooleanSignal extends Signal {
+		private final BooleanSupplier supplier;
+		private boolean value;
+
+		BooleanSignal(NetworkTableEntry entry, BooleanSupplier supplier) {
+			super(entry);
+			this.supplier = supplier;
+		}
+
+		@Override
+		boolean sample() {
+			boolean sample = supplier.getAsBoolean();
+			if (published && sample == value) {
+				return false;
+			}
+			value = sample;
+			return true;
+		}
+
+		@Override
+		void publish() {
+			entry.setBoolean(value);
+			published = true;
+		}
+	}
+
+	private static class StringSignal extends Signal {
+		private final Supplier<String> supplier;
+		private String value;
+
+		StringSignal(NetworkTableEntry entry, Supplier<String> supplier) {
+			super(entry);
+			this.supplier = supplier;
+		}
+
+		@Override
+		boolean sample() {
+			String sample = supplier.get();
+			if (published && (sample == value || (sample != null && sample.equals(value)))) {
+				return false;
+			}
+			value = sample;
+			return true;
+		}
+
+		@Override
+		void publish() {
+			entry.setString(value == null ? "" : value);
+			published = true;
+		}
+	}
+
+	private static class ArraySignal extends Signal {
+		private final Consumer<double[]> sampler;
+		private final double[] sample;
+		private final double[] value;
+
+		ArraySignal(NetworkTableEntry entry, int size, Consumer<double[]> sampler) {
+			super(entry);
+			this.sampler = sampler;
+			this.sample = new double[size];
+			this.value = new double[size];
+		}
+
+		@Override
+		boolean sample() {
+			sampler.accept(sample);
+			boolean changed = !published;
+			for (int i = 0; i < sample.length; i++) {
+				if (Double.doubleToLongBits(sample[i]) != Double.doubleToLongBits(value[i])) {
+					value[i] = sample[i];
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		@Override
+		void publish() {
+			entry.setDoubleArray(value);
+			published = true;
+		}
+	}
+}
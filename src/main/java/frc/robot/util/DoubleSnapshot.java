@@ -0,0 +1,70 @@
+package frc.robot.util;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed-size group of doubles that one thread publishes and any number of threads read without locking.
+ *
+ * Publishing uses a sequence counter (a seqlock): the writer makes the counter odd, copies the values and makes it
+ * even again. A reader copies the values and retries if the counter was odd or changed while it was copying, so it
+ * always gets a consistent set and never blocks the writer. Only one thread may publish at a time.
+ */
+public class DoubleSnapshot {
+	private final double[] values;
+	private volatile long sequence = 0;
+
+	public DoubleSnapshot(int size) {
+		values = new double[size];
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * Publishes a new set of values. Must not be called from more than one thread at a time.
+	 * @param source the values to publish, at least {@link #size()} long
+	 */
+	public void publish(double[] source) {
+		long seq = sequence;
+		sequence = seq + 1;
+		VarHandle.storeStoreFence();
+		System.arraycopy(source, 0, values, 0, values.length);
+		sequence = seq + 2;
+	}
+
+	/**
+	 * Copies the latest published values. Never blocks; retries only if a publish happened during the copy.
+	 * @param target the array to copy into, at least {@link #size()} long
+	 */
+	public void read(double[] target) {
+		while (true) {
+			long seq = sequence;
+			if ((seq & 1) == 0) {
+				System.arraycopy(values, 0, target, 0, values.length);
+				VarHandle.loadLoadFence();
+				if (sequence == seq) {
+					return;
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * @return a single value from the latest published set
+	 */
+	public double get(int index) {
+		while (true) {
+			long seq = sequence;
+			if ((seq & 1) == 0) {
+				double value = values[index];
+				VarHandle.loadLoadFence();
+				if (sequence == seq) {
+					return value;
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package frc.robot.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Runs a task on its own daemon thread at a fixed rate, independent of the TimedRobot loop.
+ * If the task runs longer than one period the schedule restarts from the current time instead of trying to catch up.
+ *
+ * The thread keeps overrun statistics (runs that took longer than the period, the longest run and the latest start),
+ * so it is easy to see whether the chosen rate is achievable. They are written only by the thread and can be read
+ * from any thread.
+ *
+ * An exception thrown by the task does not end the thread: it is counted, reported to the Driver Station (the first
+ * one with its stack trace, then at most once a second) and the next run goes ahead on schedule. If the thread ends
+ * anyway, {@link #isRunning()} turns false and {@link #start()} starts a new one.
+ */
+public class FixedRateThread {
+	// Repeated task errors are reported at most this often
+	private static final long ERROR_REPORT_NANOS = 1_000_000_000L;
+
+	private final String name;
+	private final long periodNanos;
+	private final Runnable task;
+
+	// The thread currently allowed to run the task. Cleared (or replaced) to make an old thread exit.
+	private volatile Thread thread;
+
+	// Statistics, in nanoseconds
+	private volatile long runCount = 0;
+	private volatile long overrunCount = 0;
+	private volatile long lastRunNanos = 0;
+	private volatile long maxRunNanos = 0;
+	private volatile long maxLateNanos = 0;
+	private volatile long errorCount = 0;
+
+	/**
+	 * @param name the name of the thread (shows up in stack traces and profilers)
+	 * @param period the time between runs, in seconds
+	 * @param task the work to do every period
+	 */
+	public FixedRateThread(String name, double period, Runnable task) {
+		assert (period > 0) : "period has to be larger than 0";
+		this.name = name;
+		this.periodNanos = (long) (period * 1e9);
+		this.task = task;
+	}
+
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		Thread newThread = new Thread(this::loop, name);
+		newThread.setDaemon(true);
+		newThread.setPriority(Thread.MAX_PRIORITY);
+		thread = newThread;
+		newThread.start();
+	}
+
+	public synchronized void stop() {
+		Thread oldThread = thread;
+		thread = null;
+		if (oldThread != null) {
+			LockSupport.unpark(oldThread);
+		}
+	}
+
+	/**
+	 * Stops the thread and waits for a run in progress to finish, so another thread can take over what the task was
+	 * using. From inside the task it only stops, since the run cannot finish while it waits.
+	 * @param timeout the longest time to wait, in seconds
+	 * @return false if the run did not finish in time (or the wait was interrupted)
+	 */
+	public boolean stopAndWait(double timeout) {
+		Thread oldThread;
+		synchronized (this) {
+			oldThread = thread;
+			stop();
+		}
+		if (oldThread == null || oldThread == Thread.currentThread()) {
+			return true;
+		}
+		try {
+			oldThread.join(Math.max(1, (long) (timeout * 1000)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return !oldThread.isAlive();
+	}
+
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * @return the time between runs, in seconds
+	 */
+	public double getPeriod() {
+		return periodNanos / 1e9;
+	}
+
+	/**
+	 * @return the number of times the task ran
+	 */
+	public long getRunCount() {
+		return runCount;
+	}
+
+	/**
+	 * @return the number of runs that did not finish before the next one was due
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/**
+	 * @return the number of runs that ended with an exception
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return how long the last run took, in seconds
+	 */
+	public double getLastRunTime() {
+		return lastRunNanos / 1e9;
+	}
+
+	/**
+	 * @return the longest run since the last {@link #resetStats()}, in seconds
+	 */
+	public double getMaxRunTime() {
+		return maxRunNanos / 1e9;
+	}
+
+	/**
+	 * @return the latest a run started after it was due since the last {@link #resetStats()}, in seconds
+	 */
+	public double getMaxLateness() {
+		return maxLateNanos / 1e9;
+	}
+
+	/**
+	 * Clears the maximums and counts, e.g. at the start of a match. Races with the thread are harmless: at worst one
+	 * run is counted against the old values.
+	 */
+	public void resetStats() {
+		runCount = 0;
+		overrunCount = 0;
+		errorCount = 0;
+		maxRunNanos = 0;
+		maxLateNanos = 0;
+	}
+
+	private void loop() {
+		Thread self = Thread.currentThread();
+		try {
+			runLoop(self);
+		} finally {
+			synchronized (this) {
+				if (thread == self) {
+					thread = null;
+				}
+			}
+		}
+	}
+
+	private void runLoop(Thread self) {
+		long next = System.nanoTime();
+		boolean reported = false;
+		long lastErrorReport = 0;
+		long unreportedErrors = 0;
+		while (thread == self) {
+			long start = System.nanoTime();
+			long late = start - next;
+			if (late > maxLateNanos) {
+				maxLateNanos = late;
+			}
+
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				errorCount++;
+				unreportedErrors++;
+				if (!reported || start - lastErrorReport >= ERROR_REPORT_NANOS) {
+					String message = unreportedErrors > 1
+							? name + ": " + unreportedErrors + " runs failed, the last with " + e
+							: name + ": run failed with " + e;
+					DriverStation.reportError(message, !reported);
+					reported = true;
+					lastErrorReport = start;
+					unreportedErrors = 0;
+				}
+			}
+
+			long end = System.nanoTime();
+			long runNanos = end - start;
+			lastRunNanos = runNanos;
+			if (runNanos > maxRunNanos) {
+				maxRunNanos = runNanos;
+			}
+			runCount++;
+
+			next += periodNanos;
+			if (next - end <= 0) {
+				overrunCount++;
+				next = System.nanoTime();
+				continue;
+			}
+
+			long wait;
+			while (thread == self && (wait = next - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package frc.robot.util;
+
+/**
+ * Joystick shaping functions used by {@link frc.robot.OI}. They live here, away from the controller objects, so they
+ * can be used and benchmarked without the robot hardware.
+ */
+public final class InputShaping {
+
+	private InputShaping() {
+	}
+
+	/**
+	 * Adds a deadzone to, for example, a joystick input that does not completely
+	 * zero itself mechanically.
+	 * 
+	 * @param input  the input value (any double between -1 and 1, inclusively).
+	 * @param radius how far from zero the input can be for the output to still be
+	 *               zero. This must be greated than 0 and less than 1.
+	 * @return the value after application of the deadzone (between -1 and 1,
+	 *         inclusively).
+	 */
+	public static double deadBand(double input) {
+		double output;
+		double radius = 0.2;
+		assert (-1 <= input && input <= 1) : "input is less than -1 or greater than 1";
+		assert (radius < 1) : "deadband radius is greater than or equal to the maximum output";
+
+		if (input >= radius) {
+			output = ((1 * (input - 1)) / (1 - radius)) + 1;
+		} else if (input < -radius) {
+			output = ((1 * (input + 1)) / (1 - radius)) - 1;
+		} else {
+			output = 0;
+		}
+
+		assert (Math.abs(output) <= 1) : "expected to output a smaller number than the 1 of " + 1;
+		return output;
+	}
+
+	/**
+	 * @return a double[] with the x output in [0] and the y output in [1]
+	 */
+	public static double[] circularExpDeadBand(double x, double y) {
+		assert (-1 <= x && x <= 1) : "a is less than -1 or greater than 1";
+		assert (-1 <= y && y <= 1) : "b is less than -1 or greater than 1";
+		double[] output = { 0, 0 };
+
+		double radius = 0.15;
+		double inputVectMag = Math.sqrt(x * x + y * y);
+
+		if (inputVectMag > radius) {
+			double scaledMag = ((Math.min(inputVectMag, 1) - 1) / (1 - radius)) + 1;
+			// Raise to the power of 1.5
+			double outputVectMag = scaledMag * Math.sqrt(scaledMag);
+			// Keep the input direction: the unit vector is just (x, y) / magnitude, no trig needed
+			output[0] = outputVectMag * x / inputVectMag;
+			output[1] = outputVectMag * y / inputVectMag;
+		}
+
+		assert (Math.abs(output[0]) <= 1) : "x output is too large! (expected less than 1; got " + output[0] + ")";
+		assert (Math.abs(output[1]) <= 1) : "y output is too large! (expected less than 1; got " + output[1] + ")";
+		return output;
+	}
+}
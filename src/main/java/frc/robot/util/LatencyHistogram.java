@@ -0,0 +1,126 @@
+package frc.robot.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations in nanoseconds with fixed logarithmic buckets, over a rolling window.
+ *
+ * Every power of two is split into 4 buckets, so a percentile is reported to within 25% of the true value, from
+ * nanoseconds up to about two minutes, in 144 buckets. The window is a ring of sub-windows: {@link #rotate()} starts a
+ * new one and drops the oldest, so percentiles always cover the last few rotations. Recording is a few shifts and an
+ * increment and never allocates. Not thread-safe: record, rotate and query from the same thread.
+ */
+public class LatencyHistogram {
+	public static final int BUCKETS = 144;
+
+	private final int[][] counts;
+	private final long[] max;
+	private int current = 0;
+
+	/**
+	 * @param windows the number of sub-windows in the rolling window
+	 */
+	public LatencyHistogram(int windows) {
+		assert (windows > 0) : "windows has to be larger than 0";
+		counts = new int[windows][BUCKETS];
+		max = new long[windows];
+	}
+
+	/**
+	 * Adds a duration to the current sub-window.
+	 */
+	public void record(long nanos) {
+		counts[current][bucketOf(nanos)]++;
+		if (nanos > max[current]) {
+			max[current] = nanos;
+		}
+	}
+
+	/**
+	 * Starts a new sub-window, dropping the oldest one.
+	 */
+	public void rotate() {
+		current = (current + 1 == counts.length) ? 0 : current + 1;
+		Arrays.fill(counts[current], 0);
+		max[current] = 0;
+	}
+
+	public void clear() {
+		for (int[] window : counts) {
+			Arrays.fill(window, 0);
+		}
+		Arrays.fill(max, 0);
+	}
+
+	/**
+	 * @return the number of durations in the rolling window
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int[] window : counts) {
+			for (int c : window) {
+				count += c;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the longest duration in the rolling window, in nanoseconds (exact)
+	 */
+	public long getMax() {
+		long result = 0;
+		for (long m : max) {
+			result = Math.max(result, m);
+		}
+		return result;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return the upper bound of the bucket holding the percentile, in nanoseconds (never more than the maximum), or 0
+	 *         if the window is empty
+	 */
+	public long getPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			for (int[] window : counts) {
+				seen += window[bucket];
+			}
+			if (seen >= rank) {
+				return Math.min(upperBound(bucket), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return the bucket of a duration: the first 4 hold 0-3ns, after that every power of two has 4 buckets
+	 */
+	static int bucketOf(long nanos) {
+		if (nanos < 4) {
+			return nanos < 0 ? 0 : (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int bucket = exponent * 4 + (int) ((nanos >>> (exponent - 2)) & 3) - 4;
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	/**
+	 * @return the largest duration that falls in a bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < 4) {
+			return bucket;
+		}
+		int exponent = (bucket + 4) >> 2;
+		int sub = (bucket + 4) & 3;
+		return ((5L + sub) << (exponent - 2)) - 1;
+	}
+}
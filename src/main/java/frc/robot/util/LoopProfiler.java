@@ -0,0 +1,158 @@
+package frc.robot.util;
+
+/**
+ * Lightweight, allocation-free timing of a control loop and its stages, cheap enough to leave on in matches.
+ *
+ * Each stage (and the whole loop) feeds a {@link LatencyHistogram} over a rolling window. Loops that take longer than
+ * the budget are counted. At a low rate (every window period) the p50, p99 and max of every histogram are computed on
+ * the loop's own thread and published through a {@link DoubleSnapshot}, so a dashboard on any thread can read them
+ * without touching the histograms.
+ *
+ * Usage, all from the thread that runs the loop:
+ * <pre>
+ * long t = profiler.startLoop();
+ * ... stage 0 ...
+ * t = profiler.record(0, t);
+ * ... stage 1 ...
+ * t = profiler.record(1, t);
+ * profiler.endLoop();
+ * </pre>
+ */
+public class LoopProfiler {
+	// Summary layout: p50, p99 and max in milliseconds for the loop, then for every stage, then the counts
+	public static final int P50 = 0;
+	public static final int P99 = 1;
+	public static final int MAX = 2;
+	public static final int STAT_SIZE = 3;
+
+	// The rolling window is WINDOWS sub-windows of the publish period
+	private static final int WINDOWS = 4;
+
+	private final String[] stageNames;
+	private final LatencyHistogram loop = new LatencyHistogram(WINDOWS);
+	private final LatencyHistogram[] stages;
+	private final long budgetNanos;
+	private final long publishNanos;
+
+	private final DoubleSnapshot summary;
+	private final double[] summaryOut;
+
+	private long loopStart;
+	private long lastPublish = System.nanoTime();
+	private long loops = 0;
+	private long overBudget = 0;
+
+	/**
+	 * @param stageNames the names of the stages, indexed like {@link #record}
+	 * @param budget the time one loop is allowed to take, in seconds
+	 * @param publishPeriod the time between summaries (and sub-window rotations), in seconds
+	 */
+	public LoopProfiler(String[] stageNames, double budget, double publishPeriod) {
+		this.stageNames = stageNames.clone();
+		this.budgetNanos = (long) (budget * 1e9);
+		this.publishNanos = (long) (publishPeriod * 1e9);
+
+		stages = new LatencyHistogram[stageNames.length];
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new LatencyHistogram(WINDOWS);
+		}
+		summary = new DoubleSnapshot((stageNames.length + 1) * STAT_SIZE + 2);
+		summaryOut = new double[summary.size()];
+	}
+
+	/**
+	 * Marks the start of a loop.
+	 * @return the current time in nanoseconds, to pass to the first {@link #record}
+	 */
+	public long startLoop() {
+		loopStart = System.nanoTime();
+		return loopStart;
+	}
+
+	/**
+	 * @return the time since {@link #startLoop()}, in nanoseconds. From the loop's own thread.
+	 */
+	public long getLoopElapsed() {
+		return System.nanoTime() - loopStart;
+	}
+
+	/**
+	 * Records the time since {@code start} against a stage.
+	 * @return the current time in nanoseconds, the start of the next stage
+	 */
+	public long record(int stage, long start) {
+		long now = System.nanoTime();
+		stages[stage].record(now - start);
+		return now;
+	}
+
+	/**
+	 * Marks the end of a loop: records its total time, counts it if it went over budget and publishes a new summary
+	 * if one is due.
+	 */
+	public void endLoop() {
+		long now = System.nanoTime();
+		long loopNanos = now - loopStart;
+		loop.record(loopNanos);
+		loops++;
+		if (loopNanos > budgetNanos) {
+			overBudget++;
+		}
+
+		if (now - lastPublish >= publishNanos) {
+			lastPublish = now;
+			publish();
+		}
+	}
+
+	private void publish() {
+		summarize(loop, 0);
+		for (int i = 0; i < stages.length; i++) {
+			summarize(stages[i], (i + 1) * STAT_SIZE);
+		}
+		summaryOut[getLoopCountIndex()] = loops;
+		summaryOut[getOverBudgetIndex()] = overBudget;
+		summary.publish(summaryOut);
+
+		loop.rotate();
+		for (LatencyHistogram stage : stages) {
+			stage.rotate();
+		}
+	}
+
+	private void summarize(LatencyHistogram histogram, int offset) {
+		summaryOut[offset + P50] = histogram.getPercentile(50) / 1e6;
+		summaryOut[offset + P99] = histogram.getPercentile(99) / 1e6;
+		summaryOut[offset + MAX] = histogram.getMax() / 1e6;
+	}
+
+	/**
+	 * Copies the latest summary without blocking; can be called from any thread.
+	 * @param target at least {@link #getSummarySize()} long. The loop's p50, p99 and max (milliseconds) are at 0,
+	 *               stage i's at (i + 1) * STAT_SIZE, then the loop count and over-budget count at
+	 *               {@link #getLoopCountIndex()} and {@link #getOverBudgetIndex()}.
+	 */
+	public void getSummary(double[] target) {
+		summary.read(target);
+	}
+
+	public int getSummarySize() {
+		return summary.size();
+	}
+
+	public int getLoopCountIndex() {
+		return (stageNames.length + 1) * STAT_SIZE;
+	}
+
+	public int getOverBudgetIndex() {
+		return getLoopCountIndex() + 1;
+	}
+
+	public int getStageCount() {
+		return stageNames.length;
+	}
+
+	public String getStageName(int stage) {
+		return stageNames[stage];
+	}
+}
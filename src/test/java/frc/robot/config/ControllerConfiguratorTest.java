@@ -0,0 +1,191 @@
+package frc.robot.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+
+import org.junit.Test;
+
+/**
+ * Checks what {@link ControllerConfigurator} writes, skips and counts, on {@link MockController}s.
+ */
+public class ControllerConfiguratorTest {
+	private static final int TIMEOUT_MS = 30;
+
+	private final ControllerConfigurator configurator = new ControllerConfigurator(TIMEOUT_MS);
+
+	/**
+	 * A steer controller config: analog sensor, voltage compensation and gains in slot 0 (P, D and F; I left alone).
+	 */
+	private static ControllerConfig steerConfig() {
+		ControllerConfig config = new ControllerConfig(true);
+		config.setNeutralMode(NeutralMode.Brake);
+		config.setFeedbackDevice(FeedbackDevice.Analog);
+		config.setVoltageCompensation(12.0);
+		config.setGains(0, 10.0, Double.NaN, 0.5, 0.0);
+		return config;
+	}
+
+	private ControllerConfigurator.Report configure(MockController controller, ControllerConfig config) {
+		return configurator.configure(new ConfigurableController[] { controller }, new ControllerConfig[] { config });
+	}
+
+	@Test
+	public void firstRunWritesEveryParameter() {
+		MockController controller = new MockController("steer");
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		// Sensor, voltage, P, D and F
+		assertEquals(5, report.getSet());
+		assertEquals(0, report.getUnchanged());
+		assertEquals(0, report.getFailed());
+		assertEquals(FeedbackDevice.Analog.value, controller.stored(ParamEnum.eFeedbackSensorType, 0), 0);
+		assertEquals(12.0, controller.stored(ParamEnum.eNominalBatteryVoltage, 0), 0);
+		assertEquals(10.0, controller.stored(ParamEnum.eProfileParamSlot_P, 0), 0);
+		assertEquals(0, controller.writes(ParamEnum.eProfileParamSlot_I, 0));
+		assertTrue(Double.isNaN(controller.stored(ParamEnum.eProfileParamSlot_I, 0)));
+
+		// The settings that are not read back are always applied
+		assertTrue(controller.isInverted());
+		assertEquals(NeutralMode.Brake, controller.getNeutralMode());
+		assertEquals(0, controller.getProfileSlot());
+		assertTrue(controller.isVoltageCompensationEnabled());
+	}
+
+	@Test
+	public void secondRunOnlyReads() {
+		MockController controller = new MockController("steer");
+		configure(controller, steerConfig());
+		int reads = controller.reads();
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		assertEquals(0, report.getSet());
+		assertEquals(5, report.getUnchanged());
+		assertEquals(5, controller.reads() - reads);
+		assertEquals(1, controller.writes(ParamEnum.eProfileParamSlot_P, 0));
+	}
+
+	@Test
+	public void gainWithinToleranceIsSkipped() {
+		MockController controller = new MockController("steer");
+		// Gains come back from the Talon's fixed point slightly off
+		controller.store(ParamEnum.eProfileParamSlot_P, 0, 10.0004);
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		assertEquals(0, controller.writes(ParamEnum.eProfileParamSlot_P, 0));
+		assertEquals(10.0004, controller.stored(ParamEnum.eProfileParamSlot_P, 0), 0);
+		assertEquals(1, report.getUnchanged());
+		assertEquals(4, report.getSet());
+	}
+
+	@Test
+	public void gainOutsideToleranceIsWritten() {
+		MockController controller = new MockController("steer");
+		controller.store(ParamEnum.eProfileParamSlot_P, 0, 10.01);
+		controller.store(ParamEnum.eProfileParamSlot_D, 0, 0.5);
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		assertEquals(1, controller.writes(ParamEnum.eProfileParamSlot_P, 0));
+		assertEquals(10.0, controller.stored(ParamEnum.eProfileParamSlot_P, 0), 0);
+		assertEquals(0, controller.writes(ParamEnum.eProfileParamSlot_D, 0));
+		assertEquals(1, report.getUnchanged());
+		assertEquals(4, report.getSet());
+	}
+
+	@Test
+	public void gainsGoToTheConfiguredSlot() {
+		MockController controller = new MockController("drive");
+		controller.store(ParamEnum.eProfileParamSlot_P, 0, 0.2);
+		ControllerConfig config = new ControllerConfig(false);
+		config.setGains(1, 0.2, Double.NaN, Double.NaN, Double.NaN);
+		ControllerConfigurator.Report report = configure(controller, config);
+
+		// The same value in slot 0 does not count for slot 1
+		assertEquals(1, report.getSet());
+		assertEquals(0.2, controller.stored(ParamEnum.eProfileParamSlot_P, 1), 0);
+		assertEquals(1, controller.getProfileSlot());
+	}
+
+	@Test
+	public void sensorPhaseIsOnlySetWhenConfigured() {
+		MockController drive = new MockController("drive");
+		ControllerConfig config = new ControllerConfig(false);
+		configure(drive, config);
+		assertNull(drive.getSensorPhase());
+
+		config.setSensorPhase(true);
+		ControllerConfigurator.Report report = configure(drive, config);
+		assertEquals(Boolean.TRUE, drive.getSensorPhase());
+		// Not a stored parameter: nothing is read or counted
+		assertEquals(0, report.getSet() + report.getUnchanged());
+		assertEquals(0, drive.reads());
+	}
+
+	@Test
+	public void unreadableParameterIsWritten() {
+		MockController controller = new MockController("steer");
+		configure(controller, steerConfig());
+		controller.setReadsFail(true);
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		assertEquals(5, report.getSet());
+		assertEquals(0, report.getUnchanged());
+		assertEquals(2, controller.writes(ParamEnum.eProfileParamSlot_P, 0));
+	}
+
+	@Test
+	public void failedWritesAreCounted() {
+		MockController good = new MockController("good");
+		MockController bad = new MockController("bad");
+		bad.setWriteError(ErrorCode.CAN_MSG_NOT_FOUND);
+		ControllerConfigurator.Report report = configurator.configure(new ConfigurableController[] { good, bad },
+				new ControllerConfig[] { steerConfig(), steerConfig() });
+
+		assertEquals(2, report.getControllers());
+		assertEquals(5, report.getSet());
+		assertEquals(5, report.getFailed());
+		assertEquals(0, report.getUnchanged());
+		assertTrue(Double.isNaN(bad.stored(ParamEnum.eProfileParamSlot_P, 0)));
+	}
+
+	@Test
+	public void failedWriteIsRetriedNextRun() {
+		MockController controller = new MockController("steer");
+		controller.setWriteError(ErrorCode.CAN_MSG_NOT_FOUND);
+		configure(controller, steerConfig());
+		controller.setWriteError(ErrorCode.OK);
+		ControllerConfigurator.Report report = configure(controller, steerConfig());
+
+		assertEquals(5, report.getSet());
+		assertEquals(0, report.getFailed());
+	}
+
+	@Test
+	public void sensorPositionsAreAlwaysWritten() {
+		MockController[] controllers = new MockController[6];
+		for (int i = 0; i < controllers.length; i++) {
+			controllers[i] = new MockController("steer " + i);
+		}
+		controllers[2].setWriteError(ErrorCode.CAN_MSG_NOT_FOUND);
+		ControllerConfigurator.Report report = configurator.setSensorPositions(controllers, 0);
+		assertEquals(6, report.getControllers());
+		assertEquals(5, report.getSet());
+		assertEquals(1, report.getFailed());
+
+		controllers[2].setWriteError(ErrorCode.OK);
+		report = configurator.setSensorPositions(controllers, 42);
+		assertEquals(6, report.getSet());
+		assertEquals(42, controllers[4].getSensorPosition());
+		assertEquals(0, controllers[0].reads());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void needsOneConfigPerController() {
+		configurator.configure(new ConfigurableController[] { new MockController("steer") }, new ControllerConfig[0]);
+	}
+}
@@ -0,0 +1,166 @@
+package frc.robot.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+
+/**
+ * A motor controller without hardware for testing {@link ControllerConfigurator}: it keeps the stored parameters in a
+ * map and counts the reads and writes. Reads can be made to time out and writes to fail.
+ */
+class MockController implements ConfigurableController {
+	private final String name;
+	private final Map<String, Double> parameters = new HashMap<>();
+	private final Map<String, Integer> writes = new HashMap<>();
+	private int reads = 0;
+	private boolean readsFail = false;
+	private ErrorCode writeError = ErrorCode.OK;
+
+	private boolean inverted = false;
+	private NeutralMode neutralMode = null;
+	private Boolean sensorPhase = null;
+	private int profileSlot = -1;
+	private boolean voltageCompensation = false;
+	private int sensorPosition = 0;
+
+	MockController(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Sets a stored parameter, as if an earlier run had written it.
+	 */
+	synchronized void store(ParamEnum param, int ordinal, double value) {
+		parameters.put(key(param, ordinal), value);
+	}
+
+	/**
+	 * @return the stored value, or NaN if it was never set
+	 */
+	synchronized double stored(ParamEnum param, int ordinal) {
+		return parameters.getOrDefault(key(param, ordinal), Double.NaN);
+	}
+
+	/**
+	 * @return the number of times the parameter was written
+	 */
+	synchronized int writes(ParamEnum param, int ordinal) {
+		return writes.getOrDefault(key(param, ordinal), 0);
+	}
+
+	synchronized int reads() {
+		return reads;
+	}
+
+	/**
+	 * @param readsFail true to answer every read with NaN, like a read that timed out
+	 */
+	synchronized void setReadsFail(boolean readsFail) {
+		this.readsFail = readsFail;
+	}
+
+	/**
+	 * @param writeError the error every write returns; writes only take effect with OK
+	 */
+	synchronized void setWriteError(ErrorCode writeError) {
+		this.writeError = writeError;
+	}
+
+	synchronized boolean isInverted() {
+		return inverted;
+	}
+
+	synchronized NeutralMode getNeutralMode() {
+		return neutralMode;
+	}
+
+	/**
+	 * @return the sensor phase set, or null if it was never set
+	 */
+	synchronized Boolean getSensorPhase() {
+		return sensorPhase;
+	}
+
+	synchronized int getProfileSlot() {
+		return profileSlot;
+	}
+
+	synchronized boolean isVoltageCompensationEnabled() {
+		return voltageCompensation;
+	}
+
+	synchronized int getSensorPosition() {
+		return sensorPosition;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public synchronized void setInverted(boolean inverted) {
+		this.inverted = inverted;
+	}
+
+	@Override
+	public synchronized void setNeutralMode(NeutralMode neutralMode) {
+		this.neutralMode = neutralMode;
+	}
+
+	@Override
+	public synchronized void setSensorPhase(boolean sensorPhase) {
+		this.sensorPhase = sensorPhase;
+	}
+
+	@Override
+	public synchronized void selectProfileSlot(int slot, int pidIdx) {
+		this.profileSlot = slot;
+	}
+
+	@Override
+	public synchronized void enableVoltageCompensation(boolean enable) {
+		this.voltageCompensation = enable;
+	}
+
+	@Override
+	public synchronized double getParameter(ParamEnum param, int ordinal, int timeoutMs) {
+		reads++;
+		return readsFail ? Double.NaN : stored(param, ordinal);
+	}
+
+	@Override
+	public synchronized ErrorCode setParameter(ParamEnum param, double value, int ordinal, int timeoutMs) {
+		return write(param, ordinal, value);
+	}
+
+	@Override
+	public synchronized ErrorCode configFeedbackSensor(FeedbackDevice feedbackDevice, int pidIdx, int timeoutMs) {
+		return write(ParamEnum.eFeedbackSensorType, pidIdx, feedbackDevice.value);
+	}
+
+	@Override
+	public synchronized ErrorCode setSensorPosition(int position, int pidIdx, int timeoutMs) {
+		if (writeError == ErrorCode.OK) {
+			sensorPosition = position;
+		}
+		return writeError;
+	}
+
+	private ErrorCode write(ParamEnum param, int ordinal, double value) {
+		String key = key(param, ordinal);
+		writes.merge(key, 1, Integer::sum);
+		if (writeError == ErrorCode.OK) {
+			parameters.put(key, value);
+		}
+		return writeError;
+	}
+
+	private static String key(ParamEnum param, int ordinal) {
+		return param + "/" + ordinal;
+	}
+}
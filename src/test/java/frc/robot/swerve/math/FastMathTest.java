@@ -0,0 +1,103 @@
+package frc.robot.swerve.math;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that SwerveMath with fast math stays close to the exact calculation over a sweep of commands and headings.
+ *
+ * The tolerance applies to wheel angles (in rotations, compared the short way around) and to wheel speeds (full speed
+ * is 1). It defaults to {@link #DEFAULT_TOLERANCE} and can be set with the system property
+ * {@value #TOLERANCE_PROPERTY} (./gradlew test -PfastMathTolerance=...), e.g. to see how far a cheaper approximation
+ * would get.
+ */
+public class FastMathTest {
+    public static final String TOLERANCE_PROPERTY = "fastMath.tolerance";
+    /** The largest difference the documented FastMath errors allow, with some room for rounding. */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    // Sweep steps: commands from -1 to 1, headings from 0 to 360 degrees
+    private static final int COMMAND_STEPS = 16;
+    private static final int HEADING_STEPS = 72;
+    // The heading rotation is off by a fixed amount, which turns the angle of a slow wheel by that amount over its
+    // speed; below this speed only the speed is compared
+    private static final double MIN_SPEED = 0.05;
+
+    private final double tolerance = Double.parseDouble(
+            System.getProperty(TOLERANCE_PROPERTY, Double.toString(DEFAULT_TOLERANCE)));
+
+    @Test
+    public void robotCentricStaysWithinTolerance() {
+        sweep(CentricMode.ROBOT, 1);
+    }
+
+    @Test
+    public void fieldCentricStaysWithinTolerance() {
+        sweep(CentricMode.FIELD, HEADING_STEPS);
+    }
+
+    private void sweep(CentricMode centricMode, int headingSteps) {
+        SwerveMath exact = new SwerveMath(31.18, 18, 25.5, 25.5);
+        SwerveMath fast = new SwerveMath(31.18, 18, 25.5, 25.5);
+        exact.setCentricMode(centricMode);
+        fast.setCentricMode(centricMode);
+        fast.setFastMath(true);
+
+        int modules = SwerveMath.MODULE_COUNT;
+        double[] exactAngles = new double[modules];
+        double[] exactSpeeds = new double[modules];
+        double[] fastAngles = new double[modules];
+        double[] fastSpeeds = new double[modules];
+        double maxAngleError = 0;
+        double maxSpeedError = 0;
+        String worst = "";
+
+        for (int f = 0; f <= COMMAND_STEPS; f++) {
+            for (int s = 0; s <= COMMAND_STEPS; s++) {
+                for (int r = 0; r <= COMMAND_STEPS; r++) {
+                    for (int h = 0; h < headingSteps; h++) {
+                        double fwd = 2.0 * f / COMMAND_STEPS - 1;
+                        double str = 2.0 * s / COMMAND_STEPS - 1;
+                        double rcw = 2.0 * r / COMMAND_STEPS - 1;
+                        // Off the table entries, so the interpolation is exercised
+                        double gyro = 360.0 * h / headingSteps + 0.37;
+                        exact.move(fwd, str, rcw, gyro, exactAngles, exactSpeeds);
+                        fast.move(fwd, str, rcw, gyro, fastAngles, fastSpeeds);
+
+                        for (int i = 0; i < modules; i++) {
+                            double speedError = Math.abs(fastSpeeds[i] - exactSpeeds[i]);
+                            double angleError = exactSpeeds[i] < MIN_SPEED
+                                    ? 0
+                                    : Math.abs(angleDifference(fastAngles[i], exactAngles[i]));
+                            if (Math.max(speedError, angleError) > Math.max(maxSpeedError, maxAngleError)) {
+                                worst = String.format("fwd %.3f, str %.3f, rcw %.3f, gyro %.2f, module %d", fwd, str,
+                                        rcw, gyro, i);
+                            }
+                            maxSpeedError = Math.max(maxSpeedError, speedError);
+                            maxAngleError = Math.max(maxAngleError, angleError);
+                        }
+                    }
+                }
+            }
+        }
+
+        assertTrue("wheel angle off by " + maxAngleError + " rotations (worst at " + worst + "), tolerance "
+                + tolerance, maxAngleError <= tolerance);
+        assertTrue("wheel speed off by " + maxSpeedError + " (worst at " + worst + "), tolerance " + tolerance,
+                maxSpeedError <= tolerance);
+    }
+
+    /**
+     * @return a - b in rotations, the short way around: -0.5 to 0.5
+     */
+    private static double angleDifference(double a, double b) {
+        double difference = (a - b) % 1.0;
+        if (difference > 0.5) {
+            difference -= 1.0;
+        } else if (difference < -0.5) {
+            difference += 1.0;
+        }
+        return difference;
+    }
+}
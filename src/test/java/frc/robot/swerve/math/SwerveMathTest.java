@@ -0,0 +1,69 @@
+package frc.robot.swerve.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+/**
+ * Checks that the array version of SwerveMath.move allocates nothing once warmed up, in every mode the control loop
+ * can run it in.
+ */
+public class SwerveMathTest {
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int MEASURED_CALLS = 100_000;
+
+    private final double[] angles = new double[SwerveMath.MODULE_COUNT];
+    private final double[] speeds = new double[SwerveMath.MODULE_COUNT];
+
+    @Test
+    public void robotCentricMoveDoesNotAllocate() {
+        assertNoAllocation(CentricMode.ROBOT, false);
+    }
+
+    @Test
+    public void fieldCentricMoveDoesNotAllocate() {
+        assertNoAllocation(CentricMode.FIELD, false);
+    }
+
+    @Test
+    public void fastMathMoveDoesNotAllocate() {
+        assertNoAllocation(CentricMode.FIELD, true);
+    }
+
+    private void assertNoAllocation(CentricMode centricMode, boolean fastMath) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("per-thread allocation counting is not available", bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue("per-thread allocation counting is not available", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        SwerveMath swerveMath = new SwerveMath(31.18, 18, 25.5, 25.5);
+        swerveMath.setCentricMode(centricMode);
+        swerveMath.setFastMath(fastMath);
+        moveMany(swerveMath, WARMUP_CALLS);
+
+        // What reading the counter itself costs, if anything
+        long before = threads.getThreadAllocatedBytes(thread);
+        long after = threads.getThreadAllocatedBytes(thread);
+        long overhead = after - before;
+
+        before = threads.getThreadAllocatedBytes(thread);
+        moveMany(swerveMath, MEASURED_CALLS);
+        after = threads.getThreadAllocatedBytes(thread);
+        assertEquals("bytes allocated by " + MEASURED_CALLS + " moves", overhead, after - before);
+    }
+
+    private void moveMany(SwerveMath swerveMath, int calls) {
+        for (int i = 0; i < calls; i++) {
+            // Inputs vary with i, so nothing is folded into a constant
+            double fwd = ((i * 7) % 201 - 100) / 100.0;
+            double str = ((i * 13) % 201 - 100) / 100.0;
+            double rcw = ((i * 31) % 201 - 100) / 100.0;
+            swerveMath.move(fwd, str, rcw, i % 360, angles, speeds);
+        }
+    }
+}